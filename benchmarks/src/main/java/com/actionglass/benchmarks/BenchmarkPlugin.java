@@ -0,0 +1,118 @@
+package com.actionglass.benchmarks;
+
+import com.actionglass.ActionGlass;
+import com.actionglass.benchmarks.fake.FakeServer;
+import com.actionglass.benchmarks.fake.Fakes;
+import com.actionglass.scheduler.TaskScheduler;
+import org.bukkit.Server;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginLoader;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.objenesis.ObjenesisStd;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * The plugin, enabled on the {@link FakeServer} the way a server would
+ *
+ * It runs the real {@link ActionGlass#onEnable()}: the same managers and
+ * listeners are created from the default configuration, with a few settings
+ * changed by the benchmark. Only the scheduler differs, so that the
+ * benchmark decides when a tick happens.
+ *
+ * JavaPlugin only lets a server's plugin class loader construct a plugin, so
+ * the plugin is created without running a constructor and then given its
+ * server, description and folders the way that class loader would.
+ */
+public final class BenchmarkPlugin extends ActionGlass {
+    
+    private InlineTaskScheduler scheduler;
+    
+    /**
+     * Enable the plugin in a new data folder, after the worlds of the server have been set up
+     *
+     * @param settings configuration paths to change from their defaults
+     */
+    public static BenchmarkPlugin enable(FakeServer server, Map<String, Object> settings) throws IOException {
+        File dataFolder = Files.createTempDirectory("actionglass-benchmark").toFile();
+        YamlConfiguration config;
+        try (InputStream defaults = ActionGlass.class.getResourceAsStream("/config.yml")) {
+            if (defaults == null) {
+                throw new IOException("config.yml is missing from the plugin jar");
+            }
+            config = YamlConfiguration.loadConfiguration(new InputStreamReader(defaults, StandardCharsets.UTF_8));
+        }
+        settings.forEach(config::set);
+        config.save(new File(dataFolder, "config.yml"));
+        
+        PluginDescriptionFile description = new PluginDescriptionFile("ActionGlass", "benchmark", ActionGlass.class.getName());
+        BenchmarkPlugin plugin = new ObjenesisStd().newInstance(BenchmarkPlugin.class);
+        plugin.scheduler = new InlineTaskScheduler();
+        try {
+            Method init = JavaPlugin.class.getDeclaredMethod("init", PluginLoader.class, Server.class, PluginDescriptionFile.class,
+                    File.class, File.class, ClassLoader.class);
+            init.setAccessible(true);
+            init.invoke(plugin, Fakes.create(PluginLoader.class), server, description, dataFolder,
+                    new File(dataFolder, "ActionGlass.jar"), BenchmarkPlugin.class.getClassLoader());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot initialize the plugin", e);
+        }
+        plugin.getLogger().setLevel(Level.WARNING);
+        plugin.onEnable();
+        
+        // Index the glass of the chunks loaded at enable
+        plugin.tick();
+        return plugin;
+    }
+    
+    /**
+     * Run one server tick of the plugin: regeneration, queued block changes and effects
+     */
+    public void tick() {
+        scheduler.tick();
+    }
+    
+    /**
+     * Disable the plugin, restoring all broken glass, and delete its data folder
+     */
+    public void disable() throws IOException {
+        onDisable();
+        try (Stream<Path> files = Files.walk(getDataFolder().toPath())) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+    
+    @Override
+    public TaskScheduler getTaskScheduler() {
+        return scheduler;
+    }
+    
+    @Override
+    public PluginCommand getCommand(String name) {
+        // Commands are registered by the server from plugin.yml, which is not read here
+        try {
+            Constructor<PluginCommand> constructor = PluginCommand.class.getDeclaredConstructor(String.class, Plugin.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(name, this);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create command " + name, e);
+        }
+    }
+}
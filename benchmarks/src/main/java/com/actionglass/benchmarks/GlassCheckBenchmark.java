@@ -0,0 +1,108 @@
+package com.actionglass.benchmarks;
+
+import com.actionglass.benchmarks.fake.FakeServer;
+import com.actionglass.benchmarks.fake.FakeWorld;
+import com.actionglass.managers.GlassManager;
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The checks made for every block a movement or projectile reaches: whether
+ * a material is breakable glass, and whether glass can be broken, which is
+ * mostly the single thickness check
+ *
+ * The thickness of a block is cached for a few seconds. The cached variant
+ * checks the same few blocks over and over; the probed one walks a wall of
+ * more blocks than the cache holds, so every check looks at the neighbours.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GlassCheckBenchmark {
+    
+    // Large enough to hold more windows than the thickness cache has entries
+    private static final int WALL_WIDTH = 768;
+    private static final int WALL_HEIGHT = 288;
+    private static final int WALL_Y = -64;
+    private static final int CACHED_BLOCKS = 64;
+    
+    private BenchmarkPlugin plugin;
+    private FakeWorld world;
+    private GlassManager glassManager;
+    private Material[] materials;
+    private int[] glassX;
+    private int[] glassY;
+    private int nextMaterial;
+    private int nextCached;
+    private int nextProbed;
+    
+    @Setup
+    public void setup() throws IOException {
+        FakeServer server = FakeServer.get();
+        server.reset();
+        world = FakeWorld.create("world");
+        Structures.windowWall(world, 0, WALL_Y, 0, WALL_WIDTH, WALL_HEIGHT);
+        server.addWorld(world);
+        plugin = BenchmarkPlugin.enable(server, Map.of("performance.load-shedding.enabled", false));
+        glassManager = plugin.getGlassManager();
+        
+        materials = Material.values();
+        int count = 0;
+        glassX = new int[WALL_WIDTH * WALL_HEIGHT];
+        glassY = new int[WALL_WIDTH * WALL_HEIGHT];
+        for (int y = 0; y < WALL_HEIGHT; y++) {
+            for (int x = 0; x < WALL_WIDTH; x++) {
+                if (Structures.isWindow(x, y)) {
+                    glassX[count] = x;
+                    glassY[count++] = WALL_Y + y;
+                }
+            }
+        }
+        glassX = Arrays.copyOf(glassX, count);
+        glassY = Arrays.copyOf(glassY, count);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        plugin.disable();
+    }
+    
+    @Benchmark
+    public boolean isBreakableGlass() {
+        int i = nextMaterial;
+        nextMaterial = i + 1 == materials.length ? 0 : i + 1;
+        return glassManager.isBreakableGlass(materials[i]);
+    }
+    
+    @Benchmark
+    public boolean canBreakGlassCached() {
+        int i = nextCached;
+        nextCached = i + 1 == CACHED_BLOCKS ? 0 : i + 1;
+        return glassManager.canBreakGlass(world.getBlockAt(glassX[i], glassY[i], 0), null);
+    }
+    
+    @Benchmark
+    public boolean canBreakGlassProbed() {
+        int i = nextProbed;
+        nextProbed = i + 1 == glassX.length ? 0 : i + 1;
+        return glassManager.canBreakGlass(world.getBlockAt(glassX[i], glassY[i], 0), null);
+    }
+}
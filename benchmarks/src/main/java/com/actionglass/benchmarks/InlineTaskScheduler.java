@@ -0,0 +1,110 @@
+package com.actionglass.benchmarks;
+
+import com.actionglass.scheduler.TaskScheduler;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs everything on the benchmark thread
+ *
+ * Work for a chunk and async work run right away, so a benchmark measures
+ * the whole cost of what it calls. Timers and next-tick tasks run when the
+ * benchmark calls {@link #tick()}. Tasks for entities never run, since the
+ * fake entities never move.
+ */
+final class InlineTaskScheduler implements TaskScheduler {
+    
+    private final List<Timer> timers = new ArrayList<>();
+    private List<Runnable> nextTick = new ArrayList<>();
+    private long now;
+    
+    private final class Timer implements Task {
+        final Runnable task;
+        final long period;
+        long next;
+        
+        Timer(Runnable task, long delay, long period) {
+            this.task = task;
+            this.period = Math.max(1, period);
+            this.next = now + Math.max(1, delay);
+        }
+        
+        @Override
+        public void cancel() {
+            timers.remove(this);
+        }
+    }
+    
+    /**
+     * Advance one tick, running the tasks that are due
+     */
+    void tick() {
+        now++;
+        List<Runnable> due = nextTick;
+        nextTick = new ArrayList<>();
+        for (Runnable task : due) {
+            task.run();
+        }
+        for (Timer timer : timers.toArray(new Timer[0])) {
+            if (timer.next <= now && timers.contains(timer)) {
+                timer.next += timer.period;
+                timer.task.run();
+            }
+        }
+    }
+    
+    @Override
+    public boolean isRegionized() {
+        return false;
+    }
+    
+    @Override
+    public int getRegionChunkShift() {
+        return 0;
+    }
+    
+    @Override
+    public Task runGlobalTimer(Runnable task, long delay, long period) {
+        Timer timer = new Timer(task, delay, period);
+        timers.add(timer);
+        return timer;
+    }
+    
+    @Override
+    public Task runRegionTimer(World world, int chunkX, int chunkZ, Runnable task, long delay, long period) {
+        return runGlobalTimer(task, delay, period);
+    }
+    
+    @Override
+    public void runAt(World world, int chunkX, int chunkZ, Runnable task) {
+        task.run();
+    }
+    
+    @Override
+    public void runLater(Entity entity, Runnable task, long delay) {
+    }
+    
+    @Override
+    public void runGlobal(Runnable task) {
+        nextTick.add(task);
+    }
+    
+    @Override
+    public void runAsync(Runnable task) {
+        task.run();
+    }
+    
+    @Override
+    public boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ) {
+        return true;
+    }
+    
+    @Override
+    public void cancelAll() {
+        timers.clear();
+        nextTick.clear();
+    }
+}
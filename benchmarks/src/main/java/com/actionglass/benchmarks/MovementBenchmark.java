@@ -0,0 +1,108 @@
+package com.actionglass.benchmarks;
+
+import com.actionglass.benchmarks.fake.FakePlayer;
+import com.actionglass.benchmarks.fake.FakeServer;
+import com.actionglass.benchmarks.fake.FakeWorld;
+import com.actionglass.config.ConfigManager;
+import com.actionglass.listeners.MovementListener;
+import com.actionglass.managers.BreakCause;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Breaking glass in the cube around a moving player, at the configured
+ * radius of each movement, with the glass found on the calling thread or
+ * from chunk snapshots
+ *
+ * The player stands between three parallel walls of windows, so the larger
+ * the radius the more glass breaks. After every call the broken glass is
+ * applied to the world and restored again, outside the measured time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovementBenchmark {
+    
+    // Fast enough for every movement and material
+    private static final double SPEED = 10.0;
+    private static final int WALL_SIZE = 33;
+    
+    @Param({"ELYTRA", "FALL", "SPRINT"})
+    public BreakCause cause;
+    
+    @Param({"false", "true"})
+    public boolean async;
+    
+    private BenchmarkPlugin plugin;
+    private MovementListener listener;
+    private MethodHandle breakGlassInRadius;
+    private Player player;
+    private Location center;
+    private int radius;
+    
+    @Setup
+    public void setup() throws IOException, ReflectiveOperationException {
+        FakeServer server = FakeServer.get();
+        server.reset();
+        FakeWorld world = FakeWorld.create("world");
+        for (int z = -Structures.PERIOD; z <= Structures.PERIOD; z += Structures.PERIOD) {
+            Structures.windowWall(world, -WALL_SIZE / 2, 64 - WALL_SIZE / 2, z, WALL_SIZE, WALL_SIZE);
+        }
+        server.addWorld(world);
+        plugin = BenchmarkPlugin.enable(server, Map.of(
+                "performance.load-shedding.enabled", false,
+                "performance.enable-async-processing", async));
+        listener = server.getPluginManager().getListener(MovementListener.class);
+        
+        // The radius the movement would use, as MovementListener.breakGlass rounds it
+        ConfigManager config = plugin.getConfigManager();
+        double configured = cause == BreakCause.ELYTRA ? config.getElytraBreakRadius()
+                : cause == BreakCause.FALL ? config.getFallingBreakRadius() : config.getSprintingBreakRadius();
+        radius = (int) Math.round(configured);
+        
+        breakGlassInRadius = MethodHandles.privateLookupIn(MovementListener.class, MethodHandles.lookup())
+                .findVirtual(MovementListener.class, "breakGlassInRadius", MethodType.methodType(void.class,
+                        Player.class, Location.class, int.class, double.class, BreakCause.class));
+        player = FakePlayer.create("Benchmark", world);
+        center = new Location(world, 0.5, 64, 0.5);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        plugin.disable();
+    }
+    
+    @TearDown(Level.Invocation)
+    public void restore() {
+        plugin.tick();
+        plugin.getGlassManager().regenerateAllGlass();
+    }
+    
+    @Benchmark
+    public void breakGlassInRadius() throws Throwable {
+        breakGlassInRadius.invokeExact(listener, player, center, radius, SPEED, cause);
+    }
+}
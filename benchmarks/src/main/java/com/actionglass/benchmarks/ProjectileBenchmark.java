@@ -0,0 +1,88 @@
+package com.actionglass.benchmarks;
+
+import com.actionglass.benchmarks.fake.FakeArrow;
+import com.actionglass.benchmarks.fake.FakePlayer;
+import com.actionglass.benchmarks.fake.FakeServer;
+import com.actionglass.benchmarks.fake.FakeWorld;
+import com.actionglass.listeners.ProjectileListener;
+import org.bukkit.block.BlockFace;
+import org.bukkit.event.entity.ProjectileHitEvent;
+import org.bukkit.util.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An arrow hitting the middle of a square window of glass panes, which finds
+ * the connected glass and breaks it, with the window found on the calling
+ * thread or from chunk snapshots
+ *
+ * Windows wider than two panes are too thick to break, so for those this
+ * measures how quickly the hit is turned down. After every call the broken
+ * glass is applied to the world and restored again, outside the measured time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectileBenchmark {
+    
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int size;
+    
+    @Param({"false", "true"})
+    public boolean async;
+    
+    private BenchmarkPlugin plugin;
+    private ProjectileListener listener;
+    private ProjectileHitEvent hit;
+    
+    @Setup
+    public void setup() throws IOException {
+        FakeServer server = FakeServer.get();
+        server.reset();
+        FakeWorld world = FakeWorld.create("world");
+        Structures.window(world, 0, 64, 0, size);
+        server.addWorld(world);
+        plugin = BenchmarkPlugin.enable(server, Map.of(
+                "performance.load-shedding.enabled", false,
+                "performance.enable-async-processing", async,
+                "performance.max-chain-break-size", size * size));
+        listener = server.getPluginManager().getListener(ProjectileListener.class);
+        
+        FakeArrow arrow = FakeArrow.create(FakePlayer.create("Benchmark", world), new Vector(0, 0, 3));
+        hit = new ProjectileHitEvent(arrow, null, world.getBlockAt(size / 2, 64 + size / 2, 0), BlockFace.NORTH);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        plugin.disable();
+    }
+    
+    @TearDown(Level.Invocation)
+    public void restore() {
+        plugin.tick();
+        plugin.getGlassManager().regenerateAllGlass();
+    }
+    
+    @Benchmark
+    public void onProjectileHit() {
+        listener.onProjectileHit(hit);
+    }
+}
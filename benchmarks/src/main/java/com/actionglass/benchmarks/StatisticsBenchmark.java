@@ -0,0 +1,131 @@
+package com.actionglass.benchmarks;
+
+import com.actionglass.benchmarks.fake.FakePlayer;
+import com.actionglass.benchmarks.fake.FakeServer;
+import com.actionglass.benchmarks.fake.FakeWorld;
+import com.actionglass.managers.BreakCause;
+import com.actionglass.managers.StatisticsManager;
+import com.actionglass.storage.BinaryStatisticsStore;
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the statistics of every player when the plugin starts, and saving
+ * them all after every player changed, for servers of 1k to 1M players
+ *
+ * Each call is timed once, since loading and saving change the file.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StatisticsBenchmark {
+    
+    /**
+     * A statistics file holding the players, in the data folder of an enabled plugin
+     */
+    @State(Scope.Benchmark)
+    public static class Players {
+        
+        @Param({"1000", "10000", "100000", "1000000"})
+        public int players;
+        
+        BenchmarkPlugin plugin;
+        FakeWorld world;
+        FakePlayer player;
+        UUID[] uuids;
+        
+        @Setup
+        public void setup() throws IOException {
+            FakeServer server = FakeServer.get();
+            server.reset();
+            world = FakeWorld.create("world");
+            server.addWorld(world);
+            plugin = BenchmarkPlugin.enable(server, Map.of(
+                    "performance.load-shedding.enabled", false,
+                    "statistics.autosave-interval", 0));
+            player = FakePlayer.create("Benchmark", world);
+            
+            // Let go of the plugin's own statistics, then write the players straight into the file
+            plugin.getStatisticsManager().saveStatistics();
+            Random random = new Random(players);
+            Map<UUID, Integer> counts = new HashMap<>();
+            uuids = new UUID[players];
+            for (int i = 0; i < players; i++) {
+                uuids[i] = new UUID(random.nextLong(), random.nextLong());
+                counts.put(uuids[i], 1 + random.nextInt(10_000));
+            }
+            BinaryStatisticsStore store = new BinaryStatisticsStore(new File(plugin.getDataFolder(), "statistics.dat"), plugin.getLogger());
+            store.open();
+            store.saveBatch(counts, false);
+            store.close();
+        }
+        
+        @TearDown
+        public void tearDown() throws IOException {
+            plugin.disable();
+        }
+    }
+    
+    /**
+     * Statistics loaded by the benchmark, closed after each call
+     */
+    @State(Scope.Thread)
+    public static class Loaded {
+        StatisticsManager statistics;
+        
+        @TearDown(Level.Invocation)
+        public void close() {
+            statistics.saveStatistics();
+        }
+    }
+    
+    /**
+     * Statistics in which every player broke one more block since the last save
+     */
+    @State(Scope.Thread)
+    public static class Changed {
+        StatisticsManager statistics;
+        
+        @Setup(Level.Invocation)
+        public void change(Players players) {
+            statistics = new StatisticsManager(players.plugin);
+            for (UUID uuid : players.uuids) {
+                players.player.setUniqueId(uuid);
+                statistics.addGlassBreak(players.player, BreakCause.PROJECTILE, players.world, Material.GLASS);
+            }
+        }
+    }
+    
+    @Benchmark
+    public StatisticsManager loadStatistics(Players players, Loaded loaded) {
+        loaded.statistics = new StatisticsManager(players.plugin);
+        return loaded.statistics;
+    }
+    
+    @Benchmark
+    public void saveStatistics(Changed changed) {
+        changed.statistics.saveStatistics();
+    }
+}
@@ -0,0 +1,47 @@
+package com.actionglass.benchmarks;
+
+import com.actionglass.benchmarks.fake.FakeWorld;
+import org.bukkit.Material;
+
+/**
+ * Glass to break in the fake worlds
+ *
+ * Glass only breaks where it is not two blocks deep in any direction, so a
+ * wall of windows that all break is made of 2x2 windows in a stone frame.
+ */
+final class Structures {
+    
+    // Windows repeat every this many blocks: two panes and a frame
+    static final int PERIOD = 3;
+    
+    private Structures() {
+    }
+    
+    /**
+     * Build a wall in the x-y plane of 2x2 glass pane windows in a stone frame
+     */
+    static void windowWall(FakeWorld world, int minX, int minY, int z, int width, int height) {
+        world.fill(minX, minY, z, minX + width - 1, minY + height - 1, z, Material.GLASS_PANE);
+        for (int x = minX; x < minX + width; x++) {
+            for (int y = minY; y < minY + height; y++) {
+                if (!isWindow(x - minX, y - minY)) {
+                    world.setType(x, y, z, Material.STONE);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Check if a position relative to the corner of a window wall is glass
+     */
+    static boolean isWindow(int x, int y) {
+        return x % PERIOD != PERIOD - 1 && y % PERIOD != PERIOD - 1;
+    }
+    
+    /**
+     * Build a single square window of glass panes in the x-y plane
+     */
+    static void window(FakeWorld world, int minX, int minY, int z, int size) {
+        world.fill(minX, minY, z, minX + size - 1, minY + size - 1, z, Material.GLASS_PANE);
+    }
+}
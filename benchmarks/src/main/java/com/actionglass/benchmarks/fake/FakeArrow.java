@@ -0,0 +1,41 @@
+package com.actionglass.benchmarks.fake;
+
+import org.bukkit.entity.Arrow;
+import org.bukkit.projectiles.ProjectileSource;
+import org.bukkit.util.Vector;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * An arrow in flight; it never lands, so tasks for it never run
+ */
+public abstract class FakeArrow implements Arrow {
+    
+    private static final MethodHandle NEW = Fakes.constructor(FakeArrow.class, ProjectileSource.class, Vector.class);
+    
+    private final ProjectileSource shooter;
+    private final Vector velocity;
+    
+    public FakeArrow(ProjectileSource shooter, Vector velocity) {
+        this.shooter = shooter;
+        this.velocity = velocity;
+    }
+    
+    public static FakeArrow create(ProjectileSource shooter, Vector velocity) {
+        try {
+            return (FakeArrow) NEW.invokeExact(shooter, velocity);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @Override
+    public ProjectileSource getShooter() {
+        return shooter;
+    }
+    
+    @Override
+    public Vector getVelocity() {
+        return velocity.clone();
+    }
+}
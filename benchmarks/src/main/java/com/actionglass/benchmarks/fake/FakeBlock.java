@@ -0,0 +1,126 @@
+package com.actionglass.benchmarks.fake;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * A position in a {@link FakeWorld}; like a server's blocks it reads and writes through to the world
+ */
+public abstract class FakeBlock implements Block {
+    
+    private final FakeWorld world;
+    private final int x;
+    private final int y;
+    private final int z;
+    
+    public FakeBlock(FakeWorld world, int x, int y, int z) {
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+    
+    @Override
+    public Material getType() {
+        return world.getType(x, y, z);
+    }
+    
+    @Override
+    public BlockData getBlockData() {
+        return world.getBlockData(x, y, z);
+    }
+    
+    @Override
+    public void setBlockData(BlockData data) {
+        world.setBlockData(x, y, z, data);
+    }
+    
+    @Override
+    public void setBlockData(BlockData data, boolean applyPhysics) {
+        world.setBlockData(x, y, z, data);
+    }
+    
+    @Override
+    public void setType(Material type) {
+        world.setType(x, y, z, type);
+    }
+    
+    @Override
+    public void setType(Material type, boolean applyPhysics) {
+        world.setType(x, y, z, type);
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return getType().isAir();
+    }
+    
+    @Override
+    public Block getRelative(int modX, int modY, int modZ) {
+        return world.getBlockAt(x + modX, y + modY, z + modZ);
+    }
+    
+    @Override
+    public Block getRelative(BlockFace face) {
+        return getRelative(face.getModX(), face.getModY(), face.getModZ());
+    }
+    
+    @Override
+    public Block getRelative(BlockFace face, int distance) {
+        return getRelative(face.getModX() * distance, face.getModY() * distance, face.getModZ() * distance);
+    }
+    
+    @Override
+    public World getWorld() {
+        return world;
+    }
+    
+    @Override
+    public int getX() {
+        return x;
+    }
+    
+    @Override
+    public int getY() {
+        return y;
+    }
+    
+    @Override
+    public int getZ() {
+        return z;
+    }
+    
+    @Override
+    public Location getLocation() {
+        return new Location(world, x, y, z);
+    }
+    
+    @Override
+    public Chunk getChunk() {
+        return world.getChunkAt(x >> 4, z >> 4);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FakeBlock)) {
+            return false;
+        }
+        FakeBlock other = (FakeBlock) o;
+        return other.world == world && other.x == x && other.y == y && other.z == z;
+    }
+    
+    @Override
+    public int hashCode() {
+        return (y * 31 + x) * 31 + z;
+    }
+    
+    @Override
+    public String toString() {
+        return "FakeBlock{" + world.getName() + "," + x + "," + y + "," + z + "}";
+    }
+}
@@ -0,0 +1,68 @@
+package com.actionglass.benchmarks.fake;
+
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Block data holding just a material
+ */
+public abstract class FakeBlockData implements BlockData, Cloneable {
+    
+    private static final MethodHandle NEW = Fakes.constructor(FakeBlockData.class, Material.class);
+    
+    private final Material material;
+    
+    public FakeBlockData(Material material) {
+        this.material = material;
+    }
+    
+    /**
+     * Create the block data of a material; panes and bars connect on no side yet
+     */
+    public static BlockData of(Material material) {
+        try {
+            if (material.name().endsWith("_PANE") || material == Material.IRON_BARS) {
+                return FakeFacingData.create(material);
+            }
+            return (FakeBlockData) NEW.invokeExact(material);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @Override
+    public Material getMaterial() {
+        return material;
+    }
+    
+    @Override
+    public String getAsString() {
+        return material.getKey().toString();
+    }
+    
+    @Override
+    public String getAsString(boolean hideUnspecified) {
+        return getAsString();
+    }
+    
+    @Override
+    public boolean matches(BlockData data) {
+        return data != null && data.getMaterial() == material;
+    }
+    
+    @Override
+    public BlockData clone() {
+        try {
+            return (BlockData) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return getAsString();
+    }
+}
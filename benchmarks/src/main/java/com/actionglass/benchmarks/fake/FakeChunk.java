@@ -0,0 +1,111 @@
+package com.actionglass.benchmarks.fake;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.persistence.PersistentDataContainer;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * A chunk of a {@link FakeWorld}, storing the block data of each section once it holds anything
+ */
+public abstract class FakeChunk implements Chunk {
+    
+    private static final MethodHandle NEW_SNAPSHOT = Fakes.constructor(FakeChunkSnapshot.class, FakeChunk.class);
+    private static final BlockData AIR = FakeBlockData.of(Material.AIR);
+    
+    private final FakeWorld world;
+    private final int x;
+    private final int z;
+    private final BlockData[][] sections;
+    private final PersistentDataContainer container = Fakes.create(PersistentDataContainer.class);
+    
+    public FakeChunk(FakeWorld world, int x, int z) {
+        this.world = world;
+        this.x = x;
+        this.z = z;
+        this.sections = new BlockData[(world.getMaxHeight() - world.getMinHeight()) >> 4][];
+    }
+    
+    BlockData getData(int localX, int y, int localZ) {
+        int index = y - world.getMinHeight();
+        if (index < 0 || index >= sections.length << 4) {
+            return AIR;
+        }
+        BlockData[] section = sections[index >> 4];
+        BlockData data = section == null ? null : section[(index & 15) << 8 | localZ << 4 | localX];
+        return data == null ? AIR : data;
+    }
+    
+    Material getType(int localX, int y, int localZ) {
+        return getData(localX, y, localZ).getMaterial();
+    }
+    
+    void setData(int localX, int y, int localZ, BlockData data) {
+        int index = y - world.getMinHeight();
+        if (index < 0 || index >= sections.length << 4) {
+            return;
+        }
+        BlockData[] section = sections[index >> 4];
+        if (section == null) {
+            section = sections[index >> 4] = new BlockData[4096];
+        }
+        section[(index & 15) << 8 | localZ << 4 | localX] = data.getMaterial() == Material.AIR ? null : data;
+    }
+    
+    BlockData[][] copySections() {
+        BlockData[][] copy = new BlockData[sections.length][];
+        for (int i = 0; i < sections.length; i++) {
+            copy[i] = sections[i] == null ? null : sections[i].clone();
+        }
+        return copy;
+    }
+    
+    @Override
+    public int getX() {
+        return x;
+    }
+    
+    @Override
+    public int getZ() {
+        return z;
+    }
+    
+    @Override
+    public World getWorld() {
+        return world;
+    }
+    
+    @Override
+    public Block getBlock(int x, int y, int z) {
+        return world.getBlockAt(this.x << 4 | x, y, this.z << 4 | z);
+    }
+    
+    @Override
+    public ChunkSnapshot getChunkSnapshot() {
+        return getChunkSnapshot(true, false, false);
+    }
+    
+    @Override
+    public ChunkSnapshot getChunkSnapshot(boolean includeMaxblocky, boolean includeBiome, boolean includeBiomeTempRain) {
+        try {
+            return (FakeChunkSnapshot) NEW_SNAPSHOT.invokeExact(this);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @Override
+    public boolean isLoaded() {
+        return true;
+    }
+    
+    @Override
+    public PersistentDataContainer getPersistentDataContainer() {
+        return container;
+    }
+}
@@ -0,0 +1,74 @@
+package com.actionglass.benchmarks.fake;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * A copy of the blocks of a {@link FakeChunk}; the block data is shared, as it is never changed in place
+ */
+public abstract class FakeChunkSnapshot implements ChunkSnapshot {
+    
+    private final int x;
+    private final int z;
+    private final String worldName;
+    private final int minHeight;
+    private final BlockData[][] sections;
+    
+    public FakeChunkSnapshot(FakeChunk chunk) {
+        this.x = chunk.getX();
+        this.z = chunk.getZ();
+        this.worldName = chunk.getWorld().getName();
+        this.minHeight = chunk.getWorld().getMinHeight();
+        this.sections = chunk.copySections();
+    }
+    
+    private BlockData data(int x, int y, int z) {
+        int index = y - minHeight;
+        if (index < 0 || index >= sections.length << 4) {
+            return null;
+        }
+        BlockData[] section = sections[index >> 4];
+        return section == null ? null : section[(index & 15) << 8 | z << 4 | x];
+    }
+    
+    @Override
+    public int getX() {
+        return x;
+    }
+    
+    @Override
+    public int getZ() {
+        return z;
+    }
+    
+    @Override
+    public String getWorldName() {
+        return worldName;
+    }
+    
+    @Override
+    public Material getBlockType(int x, int y, int z) {
+        BlockData data = data(x, y, z);
+        return data == null ? Material.AIR : data.getMaterial();
+    }
+    
+    @Override
+    public BlockData getBlockData(int x, int y, int z) {
+        BlockData data = data(x, y, z);
+        return data == null ? FakeBlockData.of(Material.AIR) : data.clone();
+    }
+    
+    @Override
+    public boolean isSectionEmpty(int sy) {
+        BlockData[] section = sy >= 0 && sy < sections.length ? sections[sy] : null;
+        if (section != null) {
+            for (BlockData data : section) {
+                if (data != null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
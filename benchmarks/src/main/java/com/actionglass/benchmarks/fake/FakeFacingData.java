@@ -0,0 +1,65 @@
+package com.actionglass.benchmarks.fake;
+
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.MultipleFacing;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Block data of panes and bars, which connect to their horizontal neighbours
+ */
+public abstract class FakeFacingData extends FakeBlockData implements MultipleFacing {
+    
+    private static final MethodHandle NEW = Fakes.constructor(FakeFacingData.class, Material.class);
+    private static final Set<BlockFace> ALLOWED = Collections.unmodifiableSet(
+            EnumSet.of(BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST));
+    
+    private EnumSet<BlockFace> faces = EnumSet.noneOf(BlockFace.class);
+    
+    public FakeFacingData(Material material) {
+        super(material);
+    }
+    
+    static FakeFacingData create(Material material) throws Throwable {
+        return (FakeFacingData) NEW.invokeExact(material);
+    }
+    
+    @Override
+    public boolean hasFace(BlockFace face) {
+        return faces.contains(face);
+    }
+    
+    @Override
+    public void setFace(BlockFace face, boolean has) {
+        if (!ALLOWED.contains(face)) {
+            throw new IllegalArgumentException("Cannot connect to " + face);
+        }
+        if (has) {
+            faces.add(face);
+        } else {
+            faces.remove(face);
+        }
+    }
+    
+    @Override
+    public Set<BlockFace> getFaces() {
+        return Collections.unmodifiableSet(faces);
+    }
+    
+    @Override
+    public Set<BlockFace> getAllowedFaces() {
+        return ALLOWED;
+    }
+    
+    @Override
+    public BlockData clone() {
+        FakeFacingData copy = (FakeFacingData) super.clone();
+        copy.faces = EnumSet.copyOf(faces);
+        return copy;
+    }
+}
@@ -0,0 +1,67 @@
+package com.actionglass.benchmarks.fake;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * An online player standing in a world
+ */
+public abstract class FakePlayer implements Player {
+    
+    private static final MethodHandle NEW = Fakes.constructor(FakePlayer.class, String.class, World.class);
+    
+    private final String name;
+    private final World world;
+    private UUID uniqueId;
+    
+    public FakePlayer(String name, World world) {
+        this.name = name;
+        this.world = world;
+        this.uniqueId = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public static FakePlayer create(String name, World world) {
+        try {
+            return (FakePlayer) NEW.invokeExact(name, world);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Let the player stand in for another one, e.g. to add statistics for many players
+     */
+    public void setUniqueId(UUID uniqueId) {
+        this.uniqueId = uniqueId;
+    }
+    
+    @Override
+    public UUID getUniqueId() {
+        return uniqueId;
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public boolean isOnline() {
+        return true;
+    }
+    
+    @Override
+    public World getWorld() {
+        return world;
+    }
+    
+    @Override
+    public Location getLocation() {
+        return new Location(world, 0, 0, 0);
+    }
+}
@@ -0,0 +1,37 @@
+package com.actionglass.benchmarks.fake;
+
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the listeners the plugin registers, so benchmarks can call them directly
+ */
+public abstract class FakePluginManager implements PluginManager {
+    
+    private final List<Listener> listeners = new ArrayList<>();
+    
+    @Override
+    public void registerEvents(Listener listener, Plugin plugin) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Get the registered listener of a class
+     */
+    public <T extends Listener> T getListener(Class<T> type) {
+        for (Listener listener : listeners) {
+            if (type.isInstance(listener)) {
+                return type.cast(listener);
+            }
+        }
+        throw new IllegalStateException("No " + type.getSimpleName() + " registered");
+    }
+    
+    void clear() {
+        listeners.clear();
+    }
+}
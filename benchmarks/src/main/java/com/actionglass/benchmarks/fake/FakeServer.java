@@ -0,0 +1,139 @@
+package com.actionglass.benchmarks.fake;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The server behind {@link Bukkit}, holding the fake worlds
+ *
+ * Bukkit only takes a server once, so every benchmark in a JVM shares it and
+ * starts by calling {@link #reset()}.
+ */
+public abstract class FakeServer implements Server {
+    
+    private final Logger logger = Logger.getLogger("ActionGlass-Benchmark");
+    private final List<World> worlds = new ArrayList<>();
+    private final FakePluginManager pluginManager = Fakes.create(FakePluginManager.class);
+    private final BukkitScheduler scheduler = Fakes.create(BukkitScheduler.class);
+    
+    public FakeServer() {
+        // Keep the plugin's info logging out of the measurements
+        logger.setLevel(Level.WARNING);
+    }
+    
+    /**
+     * Get the server, installing it into Bukkit on first use
+     */
+    public static synchronized FakeServer get() {
+        if (Bukkit.getServer() == null) {
+            Bukkit.setServer(Fakes.create(FakeServer.class));
+        }
+        return (FakeServer) Bukkit.getServer();
+    }
+    
+    /**
+     * Drop the worlds and listeners of the previous benchmark
+     */
+    public void reset() {
+        worlds.clear();
+        pluginManager.clear();
+    }
+    
+    public void addWorld(World world) {
+        worlds.add(world);
+    }
+    
+    @Override
+    public FakePluginManager getPluginManager() {
+        return pluginManager;
+    }
+    
+    @Override
+    public BukkitScheduler getScheduler() {
+        return scheduler;
+    }
+    
+    @Override
+    public Logger getLogger() {
+        return logger;
+    }
+    
+    @Override
+    public String getName() {
+        return "ActionGlass-Benchmark";
+    }
+    
+    @Override
+    public String getVersion() {
+        return "benchmark";
+    }
+    
+    @Override
+    public String getBukkitVersion() {
+        return "1.20.4-R0.1-SNAPSHOT";
+    }
+    
+    @Override
+    public boolean isPrimaryThread() {
+        return true;
+    }
+    
+    @Override
+    public List<World> getWorlds() {
+        return new ArrayList<>(worlds);
+    }
+    
+    @Override
+    public World getWorld(String name) {
+        for (World world : worlds) {
+            if (world.getName().equals(name)) {
+                return world;
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public World getWorld(UUID uid) {
+        for (World world : worlds) {
+            if (world.getUID().equals(uid)) {
+                return world;
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public BlockData createBlockData(Material material) {
+        return FakeBlockData.of(material);
+    }
+    
+    @Override
+    public BlockData createBlockData(Material material, String data) {
+        return FakeBlockData.of(material);
+    }
+    
+    @Override
+    public BlockData createBlockData(String data) {
+        // Properties are not modelled, only the material
+        int properties = data.indexOf('[');
+        String name = (properties < 0 ? data : data.substring(0, properties)).toUpperCase(Locale.ROOT);
+        Material material = Material.matchMaterial(name);
+        if (material == null) {
+            throw new IllegalArgumentException("Could not parse data: " + data);
+        }
+        return FakeBlockData.of(material);
+    }
+}
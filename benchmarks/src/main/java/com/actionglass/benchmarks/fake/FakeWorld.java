@@ -0,0 +1,188 @@
+package com.actionglass.benchmarks.fake;
+
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.LongObjectHashMap;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A world kept in memory, loaded everywhere and empty until blocks are set
+ *
+ * Blocks are looked up the way a server does it: every {@link #getBlockAt}
+ * makes a new block and block data is copied in and out, so allocation rates
+ * measured against it are close to those on a server.
+ */
+public abstract class FakeWorld implements World {
+    
+    private static final MethodHandle NEW = Fakes.constructor(FakeWorld.class, String.class, int.class, int.class);
+    private static final MethodHandle NEW_BLOCK = Fakes.constructor(FakeBlock.class, FakeWorld.class, int.class, int.class, int.class);
+    private static final MethodHandle NEW_CHUNK = Fakes.constructor(FakeChunk.class, FakeWorld.class, int.class, int.class);
+    
+    private final String name;
+    private final UUID uid;
+    private final int minHeight;
+    private final int maxHeight;
+    private final LongObjectHashMap<FakeChunk> chunks = new LongObjectHashMap<>();
+    private final List<Chunk> loaded = new ArrayList<>();
+    
+    public FakeWorld(String name, int minHeight, int maxHeight) {
+        this.name = name;
+        this.uid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        this.minHeight = minHeight;
+        this.maxHeight = maxHeight;
+    }
+    
+    /**
+     * Create a world with the height of an overworld
+     */
+    public static FakeWorld create(String name) {
+        try {
+            return (FakeWorld) NEW.invokeExact(name, -64, 320);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Fill a box of blocks with a material; panes and bars connect to each other as placed by players
+     */
+    public void fill(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, Material material) {
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    setBlockData(x, y, z, FakeBlockData.of(material));
+                }
+            }
+        }
+        if (!(FakeBlockData.of(material) instanceof FakeFacingData)) {
+            return;
+        }
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    FakeFacingData data = (FakeFacingData) getBlockData(x, y, z);
+                    data.setFace(BlockFace.WEST, x > minX);
+                    data.setFace(BlockFace.EAST, x < maxX);
+                    data.setFace(BlockFace.NORTH, z > minZ);
+                    data.setFace(BlockFace.SOUTH, z < maxZ);
+                    setBlockData(x, y, z, data);
+                }
+            }
+        }
+    }
+    
+    FakeChunk chunk(int chunkX, int chunkZ) {
+        long key = BlockKey.chunkKey(0, chunkX, chunkZ);
+        FakeChunk chunk = chunks.get(key);
+        if (chunk == null) {
+            try {
+                chunk = (FakeChunk) NEW_CHUNK.invokeExact(this, chunkX, chunkZ);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+            chunks.put(key, chunk);
+            loaded.add(chunk);
+        }
+        return chunk;
+    }
+    
+    @Override
+    public Block getBlockAt(int x, int y, int z) {
+        try {
+            return (FakeBlock) NEW_BLOCK.invokeExact(this, x, y, z);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @Override
+    public Block getBlockAt(Location location) {
+        return getBlockAt(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+    
+    @Override
+    public Material getType(int x, int y, int z) {
+        return chunk(x >> 4, z >> 4).getType(x & 15, y, z & 15);
+    }
+    
+    @Override
+    public BlockData getBlockData(int x, int y, int z) {
+        return chunk(x >> 4, z >> 4).getData(x & 15, y, z & 15).clone();
+    }
+    
+    @Override
+    public void setBlockData(int x, int y, int z, BlockData blockData) {
+        chunk(x >> 4, z >> 4).setData(x & 15, y, z & 15, blockData.clone());
+    }
+    
+    @Override
+    public void setType(int x, int y, int z, Material material) {
+        setBlockData(x, y, z, FakeBlockData.of(material));
+    }
+    
+    @Override
+    public Chunk getChunkAt(int x, int z) {
+        return chunk(x, z);
+    }
+    
+    @Override
+    public Chunk getChunkAt(Block block) {
+        return chunk(block.getX() >> 4, block.getZ() >> 4);
+    }
+    
+    @Override
+    public Chunk getChunkAt(Location location) {
+        return chunk(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+    
+    @Override
+    public boolean isChunkLoaded(int x, int z) {
+        return true;
+    }
+    
+    @Override
+    public boolean isChunkLoaded(Chunk chunk) {
+        return true;
+    }
+    
+    @Override
+    public Chunk[] getLoadedChunks() {
+        return loaded.toArray(new Chunk[0]);
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public UUID getUID() {
+        return uid;
+    }
+    
+    @Override
+    public int getMinHeight() {
+        return minHeight;
+    }
+    
+    @Override
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+    
+    @Override
+    public String toString() {
+        return "FakeWorld{" + name + "}";
+    }
+}
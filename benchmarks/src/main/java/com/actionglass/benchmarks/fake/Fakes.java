@@ -0,0 +1,67 @@
+package com.actionglass.benchmarks.fake;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.StubMethod;
+import net.bytebuddy.matcher.ElementMatchers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Makes concrete classes of the fakes
+ *
+ * The Bukkit interfaces have hundreds of methods, of which the plugin uses a
+ * few. The fakes are abstract classes implementing just those; every other
+ * method is generated to do nothing and return null, zero or false, like a
+ * server with nothing in it.
+ */
+public final class Fakes {
+    
+    private static final Map<Class<?>, Class<?>> CONCRETE = new ConcurrentHashMap<>();
+    
+    private Fakes() {
+    }
+    
+    /**
+     * Get the concrete class of an abstract fake or of a Bukkit interface
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Class<? extends T> concrete(Class<T> type) {
+        return (Class<? extends T>) CONCRETE.computeIfAbsent(type, t -> new ByteBuddy()
+                .subclass(t)
+                .method(ElementMatchers.isAbstract())
+                .intercept(StubMethod.INSTANCE)
+                .make()
+                .load(t.getClassLoader(), ClassLoadingStrategy.Default.WRAPPER)
+                .getLoaded());
+    }
+    
+    /**
+     * Create an instance of an abstract fake or a Bukkit interface with a no-argument constructor
+     */
+    public static <T> T create(Class<T> type) {
+        try {
+            return concrete(type).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create a fake " + type.getName(), e);
+        }
+    }
+    
+    /**
+     * Get a handle on a constructor of an abstract fake, typed to return the fake.
+     * Kept in a static final field it costs no more than a plain new.
+     */
+    static MethodHandle constructor(Class<?> type, Class<?>... parameters) {
+        try {
+            return MethodHandles.publicLookup()
+                    .findConstructor(concrete(type), MethodType.methodType(void.class, parameters))
+                    .asType(MethodType.methodType(type, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot construct a fake " + type.getName(), e);
+        }
+    }
+}
@@ -2,16 +2,24 @@ package com.actionglass;
 
 import com.actionglass.commands.ActionGlassCommand;
 import com.actionglass.config.ConfigManager;
+import com.actionglass.debug.Subsystem;
+import com.actionglass.debug.Tracer;
+import com.actionglass.listeners.ChunkListener;
 import com.actionglass.listeners.GlassBreakListener;
 import com.actionglass.listeners.MovementListener;
 import com.actionglass.listeners.ProjectileListener;
 import com.actionglass.managers.GlassManager;
 import com.actionglass.managers.StatisticsManager;
 import com.actionglass.integrations.IntegrationManager;
+import com.actionglass.scheduler.BukkitTaskScheduler;
+import com.actionglass.scheduler.FoliaTaskScheduler;
+import com.actionglass.scheduler.TaskScheduler;
 import org.bukkit.plugin.java.JavaPlugin;
 
 public class ActionGlass extends JavaPlugin {
     
+    private Tracer tracer;
+    private TaskScheduler taskScheduler;
     private ConfigManager configManager;
     private GlassManager glassManager;
     private StatisticsManager statisticsManager;
@@ -20,6 +28,8 @@ public class ActionGlass extends JavaPlugin {
     @Override
     public void onEnable() {
         // Initialize managers
+        this.tracer = new Tracer(getLogger());
+        this.taskScheduler = FoliaTaskScheduler.isSupported() ? new FoliaTaskScheduler(this) : new BukkitTaskScheduler(this);
         this.configManager = new ConfigManager(this);
         configManager.loadConfig(); // Load the config
         this.glassManager = new GlassManager(this);
@@ -31,6 +41,7 @@ public class ActionGlass extends JavaPlugin {
         getServer().getPluginManager().registerEvents(new MovementListener(this), this);
         getServer().getPluginManager().registerEvents(new ProjectileListener(this), this);
         getServer().getPluginManager().registerEvents(new GlassBreakListener(this), this);
+        getServer().getPluginManager().registerEvents(new ChunkListener(this), this);
         
         // Register commands
         getCommand("actionglass").setExecutor(new ActionGlassCommand(this));
@@ -55,16 +66,16 @@ public class ActionGlass extends JavaPlugin {
             statisticsManager.saveStatistics();
 
         // Cancel all scheduled tasks to prevent memory leaks
-        getServer().getScheduler().cancelTasks(this);
+        taskScheduler.cancelAll();
         }
         
         getLogger().info("ActionGlass plugin disabled!");
     }
     
-    // Debug method that other classes are calling
+    // Debug method that other classes are calling; prefer the lazy methods of getTracer()
     public void debug(String message) {
-        if (configManager != null && configManager.isDebugMode()) {
-            getLogger().info("[DEBUG] " + message);
+        if (tracer != null) {
+            tracer.debug(Subsystem.GENERAL, message);
         }
     }
     
@@ -73,10 +84,16 @@ public class ActionGlass extends JavaPlugin {
         if (configManager != null) {
             configManager.reloadConfig();
         }
+        // The breakable materials may have changed
+        if (glassManager != null) {
+            glassManager.reindexLoadedChunks();
+        }
         getLogger().info("ActionGlass plugin reloaded!");
     }
     
     // Getters for managers
+    public Tracer getTracer() { return tracer; }
+    public TaskScheduler getTaskScheduler() { return taskScheduler; }
     public ConfigManager getConfigManager() { return configManager; }
     public GlassManager getGlassManager() { return glassManager; }
     public StatisticsManager getStatisticsManager() { return statisticsManager; }
@@ -1,22 +1,40 @@
 package com.actionglass.commands;
 
 import com.actionglass.ActionGlass;
+import com.actionglass.debug.Subsystem;
+import com.actionglass.debug.Tracer;
+import com.actionglass.managers.BreakCause;
+import com.actionglass.managers.BreakCounters;
+import com.actionglass.managers.GlassManager;
+import com.actionglass.managers.LoadGovernor;
+import com.actionglass.managers.StatisticsManager;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Handles plugin commands
  */
 public class ActionGlassCommand implements CommandExecutor, TabCompleter {
     
+    private static final int TOP_PAGE_SIZE = 10;
+    
     private final ActionGlass plugin;
     
     public ActionGlassCommand(ActionGlass plugin) {
@@ -40,6 +58,14 @@ public class ActionGlassCommand implements CommandExecutor, TabCompleter {
                 break;
                 
             case "debug":
+                if (args.length > 1 && args[1].equalsIgnoreCase("dump")) {
+                    if (!sender.hasPermission("actionglass.admin")) {
+                        sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+                        return true;
+                    }
+                    dumpTrace(sender);
+                    break;
+                }
                 toggleDebug(sender);
                 break;
                 
@@ -60,6 +86,10 @@ public class ActionGlassCommand implements CommandExecutor, TabCompleter {
                 break;
                 
             case "stats":
+                if (args.length > 1 && args[1].equalsIgnoreCase("top")) {
+                    showTop(sender, args.length > 2 ? args[2] : null);
+                    break;
+                }
                 showStats(sender);
                 break;
                 
@@ -85,11 +115,13 @@ public class ActionGlassCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.YELLOW + "/actionglass info" + ChatColor.WHITE + " - Show plugin information");
         sender.sendMessage(ChatColor.YELLOW + "/actionglass debug" + ChatColor.WHITE + " - Toggle debug mode");
         sender.sendMessage(ChatColor.YELLOW + "/actionglass stats" + ChatColor.WHITE + " - Show your glass breaking statistics");
+        sender.sendMessage(ChatColor.YELLOW + "/actionglass stats top [page]" + ChatColor.WHITE + " - Show the glass breaking leaderboard");
         
         if (sender.hasPermission("actionglass.admin")) {
             sender.sendMessage(ChatColor.YELLOW + "/actionglass reload" + ChatColor.WHITE + " - Reload plugin configuration");
-            sender.sendMessage(ChatColor.YELLOW + "/actionglass restore" + ChatColor.WHITE + " - Restore all broken glass immediately");
+            sender.sendMessage(ChatColor.YELLOW + "/actionglass restore" + ChatColor.WHITE + " - Restore all broken glass");
             sender.sendMessage(ChatColor.YELLOW + "/actionglass test" + ChatColor.WHITE + " - Test glass breaking on target block");
+            sender.sendMessage(ChatColor.YELLOW + "/actionglass debug dump" + ChatColor.WHITE + " - Write recent trace events to a file");
         }
     }
     
@@ -104,6 +136,13 @@ public class ActionGlassCommand implements CommandExecutor, TabCompleter {
                           (plugin.getConfigManager().isStatisticsEnabled() ? "Enabled" : "Disabled"));
         sender.sendMessage(ChatColor.YELLOW + "Broken Glass Blocks: " + ChatColor.WHITE + 
                           plugin.getGlassManager().getBrokenGlassCount());
+        sender.sendMessage(ChatColor.YELLOW + "Regeneration Backlog: " + ChatColor.WHITE + 
+                          plugin.getGlassManager().getRegenerationBacklog());
+        sender.sendMessage(ChatColor.YELLOW + "Queued Block Changes: " + ChatColor.WHITE + 
+                          plugin.getGlassManager().getQueuedMutationCount());
+        LoadGovernor governor = plugin.getGlassManager().getLoadGovernor();
+        sender.sendMessage(ChatColor.YELLOW + "Load Level: " + ChatColor.WHITE + governor.getLevel().getKey()
+                + String.format(" (%.1f ms per tick)", governor.getTickTime()));
     }
     
     private void toggleDebug(CommandSender sender) {
@@ -122,10 +161,31 @@ public class ActionGlassCommand implements CommandExecutor, TabCompleter {
         
         if (newDebug) {
             sender.sendMessage(ChatColor.YELLOW + "Debug messages will now appear in console.");
-            plugin.debug("Debug mode enabled by " + sender.getName());
+            plugin.getTracer().debug(Subsystem.GENERAL, "Debug mode enabled by {}", sender.getName());
         }
     }
     
+    private void dumpTrace(CommandSender sender) {
+        // Copy the buffer now, format and write it off the main thread
+        Tracer.Dump dump = plugin.getTracer().dump();
+        String name = "trace-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".log";
+        File file = new File(new File(plugin.getDataFolder(), "traces"), name);
+        
+        sender.sendMessage(ChatColor.YELLOW + "Writing " + dump.size() + " trace events...");
+        plugin.getTaskScheduler().runAsync(() -> {
+            String result;
+            try {
+                dump.writeTo(file);
+                result = ChatColor.GREEN + "Trace written to " + file.getPath();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not write trace dump: " + e.getMessage());
+                result = ChatColor.RED + "Could not write trace dump: " + e.getMessage();
+            }
+            String message = result;
+            plugin.getTaskScheduler().runGlobal(() -> sender.sendMessage(message));
+        });
+    }
+    
     private void reloadPlugin(CommandSender sender) {
         try {
             plugin.reloadPlugin();
@@ -138,8 +198,26 @@ public class ActionGlassCommand implements CommandExecutor, TabCompleter {
     
     private void restoreGlass(CommandSender sender) {
         int brokenCount = plugin.getGlassManager().getBrokenGlassCount();
-        plugin.getGlassManager().restoreAllGlass();
-        sender.sendMessage(ChatColor.GREEN + "Restored " + brokenCount + " broken glass blocks.");
+        boolean started = plugin.getGlassManager().restoreAllGlass(new GlassManager.RestoreProgress() {
+            @Override
+            public void progress(int handled, int total) {
+                sender.sendMessage(ChatColor.YELLOW + "Restoring broken glass: " + handled + "/" + total);
+            }
+            
+            @Override
+            public void complete(int restored, int deferred) {
+                sender.sendMessage(ChatColor.GREEN + "Restored " + restored + " broken glass blocks.");
+                if (deferred > 0) {
+                    sender.sendMessage(ChatColor.YELLOW + "" + deferred + " more in unloaded chunks will be restored when their chunks load.");
+                }
+            }
+        });
+        
+        if (!started) {
+            sender.sendMessage(ChatColor.RED + "A restore is already in progress.");
+        } else if (plugin.getGlassManager().isRestoringAll()) {
+            sender.sendMessage(ChatColor.YELLOW + "Restoring " + brokenCount + " broken glass blocks...");
+        }
     }
     
     private void showStats(CommandSender sender) {
@@ -155,9 +233,85 @@ public class ActionGlassCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        int glassBreaks = plugin.getStatisticsManager().getGlassBreaks(player);
+        StatisticsManager statistics = plugin.getStatisticsManager();
+        int glassBreaks = statistics.getGlassBreaks(player);
+        int rank = statistics.getRank(player.getUniqueId());
         sender.sendMessage(ChatColor.GOLD + "=== Your Glass Breaking Statistics ===");
         sender.sendMessage(ChatColor.YELLOW + "Glass Blocks Broken: " + ChatColor.WHITE + glassBreaks);
+        sender.sendMessage(ChatColor.YELLOW + "Rank: " + ChatColor.WHITE + 
+                          (rank > 0 ? "#" + rank + " of " + statistics.getTrackedPlayerCount() : "Unranked"));
+        
+        BreakCounters.Breakdown breakdown = statistics.getBreakdown(player.getUniqueId());
+        if (breakdown.getTotal() == 0) {
+            return;
+        }
+        sender.sendMessage(ChatColor.GOLD + "Since the last restart:");
+        for (BreakCause cause : BreakCause.values()) {
+            long count = breakdown.get(cause);
+            if (count > 0) {
+                sender.sendMessage(ChatColor.YELLOW + "  " + cause.getKey() + ": " + ChatColor.WHITE + count);
+            }
+        }
+        sender.sendMessage(ChatColor.YELLOW + "  Worlds: " + ChatColor.WHITE + formatTop(breakdown.getWorlds()));
+        sender.sendMessage(ChatColor.YELLOW + "  Materials: " + ChatColor.WHITE + formatTop(breakdown.getMaterials()));
+    }
+    
+    /**
+     * Format the first few entries of a breakdown, e.g. "world (12), world_nether (3)"
+     */
+    private String formatTop(List<? extends Map.Entry<?, Long>> entries) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < Math.min(3, entries.size()); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            Object key = entries.get(i).getKey();
+            String name = key instanceof Material ? ((Material) key).name().toLowerCase(Locale.ROOT) : key.toString();
+            builder.append(name).append(" (").append(entries.get(i).getValue()).append(")");
+        }
+        if (entries.size() > 3) {
+            builder.append(", ...");
+        }
+        return builder.toString();
+    }
+    
+    private void showTop(CommandSender sender, String pageArgument) {
+        if (plugin.getStatisticsManager() == null || !plugin.getConfigManager().isStatisticsEnabled()) {
+            sender.sendMessage(ChatColor.RED + "Statistics are disabled.");
+            return;
+        }
+        
+        int page = 1;
+        if (pageArgument != null) {
+            try {
+                page = Integer.parseInt(pageArgument);
+            } catch (NumberFormatException e) {
+                page = 0;
+            }
+            if (page < 1) {
+                sender.sendMessage(ChatColor.RED + "Invalid page: " + pageArgument);
+                return;
+            }
+        }
+        
+        StatisticsManager statistics = plugin.getStatisticsManager();
+        int pages = Math.max(1, (statistics.getTrackedPlayerCount() + TOP_PAGE_SIZE - 1) / TOP_PAGE_SIZE);
+        if (page > pages) {
+            sender.sendMessage(ChatColor.RED + "There are only " + pages + " pages.");
+            return;
+        }
+        
+        sender.sendMessage(ChatColor.GOLD + "=== Top Glass Breakers (" + page + "/" + pages + ") ===");
+        if (statistics.getTrackedPlayerCount() == 0) {
+            sender.sendMessage(ChatColor.GRAY + "No glass has been broken yet.");
+            return;
+        }
+        statistics.forLeaderboardRange((page - 1) * TOP_PAGE_SIZE, TOP_PAGE_SIZE, (rank, uuid, count) -> {
+            OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
+            String name = player.getName() != null ? player.getName() : uuid.toString().substring(0, 8);
+            sender.sendMessage(ChatColor.YELLOW + "#" + rank + " " + ChatColor.WHITE + name + ChatColor.GRAY + " - " + ChatColor.GREEN + count);
+        });
+        sender.sendMessage(ChatColor.YELLOW + "Total Server Breaks: " + ChatColor.WHITE + statistics.getTotalGlassBreaks());
     }
     
     private void testGlassBreaking(CommandSender sender) {
@@ -212,6 +366,14 @@ public class ActionGlassCommand implements CommandExecutor, TabCompleter {
                     completions.add(cmd);
                 }
             }
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("debug") && sender.hasPermission("actionglass.admin")) {
+            if ("dump".startsWith(args[1].toLowerCase())) {
+                completions.add("dump");
+            }
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("stats")) {
+            if ("top".startsWith(args[1].toLowerCase())) {
+                completions.add("top");
+            }
         }
         
         return completions;
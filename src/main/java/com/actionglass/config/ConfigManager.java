@@ -1,6 +1,7 @@
 package com.actionglass.config;
 
 import com.actionglass.ActionGlass;
+import com.actionglass.debug.Subsystem;
 import org.bukkit.configuration.file.FileConfiguration;
 
 /**
@@ -9,7 +10,7 @@ import org.bukkit.configuration.file.FileConfiguration;
 public class ConfigManager {
     
     private final ActionGlass plugin;
-    private FileConfiguration config;
+    private volatile ConfigSnapshot snapshot;
     
     public ConfigManager(ActionGlass plugin) {
         this.plugin = plugin;
@@ -20,12 +21,13 @@ public class ConfigManager {
      */
     public void loadConfig() {
         plugin.saveDefaultConfig();
-        config = plugin.getConfig();
+        FileConfiguration config = plugin.getConfig();
         
         // Validate config version
         if (config.getInt("config-version", 0) < 1) {
             plugin.getLogger().warning("Configuration file is outdated. Please delete config.yml to generate a new one.");
         }
+        compile(config);
     }
     
     /**
@@ -33,124 +35,223 @@ public class ConfigManager {
      */
     public void reloadConfig() {
         plugin.reloadConfig();
-        config = plugin.getConfig();
+        compile(plugin.getConfig());
+    }
+    
+    /**
+     * Build a snapshot of the configuration and publish it in one step
+     */
+    private void compile(FileConfiguration config) {
+        ConfigSnapshot compiled = new ConfigSnapshot(config, plugin.getLogger());
+        snapshot = compiled;
+        plugin.getTracer().configure(compiled);
+        plugin.getTracer().debug(Subsystem.GENERAL, "Loaded {} breakable materials", compiled.materials.size());
+    }
+    
+    /**
+     * Get the current configuration as a whole; hold on to it to read several
+     * settings consistently
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * Get the materials that can be broken and their properties
+     */
+    public MaterialRegistry getMaterialRegistry() {
+        return snapshot.materials;
     }
     
     // Glass breaking settings
     public boolean isGlassBreakingEnabled() {
-        return config.getBoolean("glass-breaking.enabled", true);
+        return snapshot.glassBreakingEnabled;
     }
     
     public double getMinimumSpeed() {
-        return config.getDouble("glass-breaking.minimum-speed", 0.5);
+        return snapshot.minimumSpeed;
     }
     
     public int getGlassRestoreTime() {
-        return config.getInt("glass-breaking.restore-time", 30);
+        return snapshot.glassRestoreTime;
+    }
+    
+    public int getRestoreJitterTicks() {
+        return snapshot.restoreJitterTicks;
+    }
+    
+    public int getMaxRestoresPerTick() {
+        return snapshot.maxRestoresPerTick;
+    }
+    
+    public int getRestoreBudgetMicros() {
+        return snapshot.restoreBudgetMicros;
+    }
+    
+    public int getRestoreAllBudgetMicros() {
+        return snapshot.restoreAllBudgetMicros;
     }
     
     // Elytra breaking
     public boolean isElytraBreakingEnabled() {
-        return config.getBoolean("glass-breaking.elytra-breaking", true);
+        return snapshot.elytraBreakingEnabled;
     }
     
     public double getElytraMinSpeed() {
-        return config.getDouble("glass-breaking.elytra-min-speed", 0.8);
+        return snapshot.elytraMinSpeed;
     }
     
     public double getElytraBreakRadius() {
-        return config.getDouble("glass-breaking.elytra-break-radius", 1.5);
+        return snapshot.elytraBreakRadius;
     }
     
     // Sprint breaking
     public boolean isSprintingBreakingEnabled() {
-        return config.getBoolean("glass-breaking.sprint-breaking", true);
+        return snapshot.sprintingBreakingEnabled;
     }
     
     public double getSprintingMinSpeed() {
-        return config.getDouble("glass-breaking.sprint-min-speed", 0.6);
+        return snapshot.sprintingMinSpeed;
     }
     
     public double getSprintingBreakRadius() {
-        return config.getDouble("glass-breaking.sprint-break-radius", 1.0);
+        return snapshot.sprintingBreakRadius;
     }
     
     // Fall breaking
     public boolean isFallingBreakingEnabled() {
-        return config.getBoolean("glass-breaking.fall-breaking", true);
+        return snapshot.fallingBreakingEnabled;
     }
     
     public double getFallBreakHeight() {
-        return config.getDouble("glass-breaking.fall-break-height", 6.0);
+        return snapshot.fallBreakHeight;
     }
     
     public double getFallingMinSpeed() {
-        return config.getDouble("glass-breaking.fall-min-speed", 0.7);
+        return snapshot.fallingMinSpeed;
     }
     
     public double getFallingBreakRadius() {
-        return config.getDouble("glass-breaking.fall-break-radius", 1.2);
+        return snapshot.fallingBreakRadius;
     }
     
     // Sound effects
     public boolean isGlassBreakSoundEnabled() {
-        return config.getBoolean("effects.sounds.glass-break.enabled", true);
+        return snapshot.glassBreakSoundEnabled;
     }
     
     public float getGlassBreakSoundVolume() {
-        return (float) config.getDouble("effects.sounds.glass-break.volume", 1.0);
+        return snapshot.glassBreakSoundVolume;
     }
     
     public float getGlassBreakSoundPitch() {
-        return (float) config.getDouble("effects.sounds.glass-break.pitch", 1.0);
+        return snapshot.glassBreakSoundPitch;
     }
     
     public boolean isGlassRestoreSoundEnabled() {
-        return config.getBoolean("effects.sounds.glass-restore.enabled", true);
+        return snapshot.glassRestoreSoundEnabled;
     }
     
     public float getGlassRestoreSoundVolume() {
-        return (float) config.getDouble("effects.sounds.glass-restore.volume", 0.5);
+        return snapshot.glassRestoreSoundVolume;
     }
     
     public float getGlassRestoreSoundPitch() {
-        return (float) config.getDouble("effects.sounds.glass-restore.pitch", 1.2);
+        return snapshot.glassRestoreSoundPitch;
     }
     
     // Particle effects
     public boolean isGlassBreakParticlesEnabled() {
-        return config.getBoolean("effects.particles.glass-break.enabled", true);
+        return snapshot.glassBreakParticlesEnabled;
     }
     
     public int getGlassBreakParticleCount() {
-        return config.getInt("effects.particles.glass-break.count", 20);
+        return snapshot.glassBreakParticleCount;
     }
     
     public boolean isGlassRestoreParticlesEnabled() {
-        return config.getBoolean("effects.particles.glass-restore.enabled", true);
+        return snapshot.glassRestoreParticlesEnabled;
     }
     
     public int getGlassRestoreParticleCount() {
-        return config.getInt("effects.particles.glass-restore.count", 10);
+        return snapshot.glassRestoreParticleCount;
+    }
+    
+    public int getEffectParticleBudget() {
+        return snapshot.effectParticleBudget;
+    }
+    
+    public int getEffectSoundBudget() {
+        return snapshot.effectSoundBudget;
     }
     
     // Statistics
     public boolean isStatisticsEnabled() {
-        return config.getBoolean("statistics.enabled", true);
+        return snapshot.statisticsEnabled;
+    }
+    
+    public int getStatisticsAutosaveInterval() {
+        return snapshot.statisticsAutosaveInterval;
+    }
+    
+    public String getStatisticsStorage() {
+        return snapshot.statisticsStorage;
     }
     
     // Integrations
     public boolean isWorldGuardIntegrationEnabled() {
-        return config.getBoolean("integrations.worldguard.enabled", true);
+        return snapshot.worldGuardIntegrationEnabled;
     }
     
     public boolean isTownyIntegrationEnabled() {
-        return config.getBoolean("integrations.towny.enabled", true);
+        return snapshot.townyIntegrationEnabled;
+    }
+    
+    public boolean isGriefPreventionIntegrationEnabled() {
+        return snapshot.griefPreventionIntegrationEnabled;
+    }
+    
+    public long getProtectionCacheTtlMillis() {
+        return snapshot.protectionCacheTtlMillis;
+    }
+    
+    // Performance
+    public boolean isSweptCollisionEnabled() {
+        return snapshot.sweptCollisionEnabled;
+    }
+    
+    public boolean isAsyncProcessingEnabled() {
+        return snapshot.asyncProcessingEnabled;
+    }
+    
+    public int getMaxChainBreakSize() {
+        return snapshot.maxChainBreakSize;
+    }
+    
+    public int getMutationBudgetMicros() {
+        return snapshot.mutationBudgetMicros;
+    }
+    
+    public boolean isPhysicsSuppressed() {
+        return snapshot.physicsSuppressed;
+    }
+    
+    public boolean isLoadSheddingEnabled() {
+        return snapshot.loadSheddingEnabled;
+    }
+    
+    // Journal
+    public boolean isJournalEnabled() {
+        return snapshot.journalEnabled;
+    }
+    
+    public int getJournalCompactInterval() {
+        return snapshot.journalCompactInterval;
     }
     
     // Debug
     public boolean isDebugMode() {
-        return config.getBoolean("debug", false);
+        return snapshot.debugMode;
     }
 }
 
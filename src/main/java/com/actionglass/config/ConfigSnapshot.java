@@ -0,0 +1,172 @@
+package com.actionglass.config;
+
+import com.actionglass.debug.Subsystem;
+import com.actionglass.debug.TraceLevel;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Immutable, typed copy of config.yml
+ *
+ * Compiled once per load so readers get plain field reads instead of walking
+ * the YAML tree by path. Published as a whole through a single volatile
+ * reference in {@link ConfigManager}, so a reader sees either the old or the
+ * new configuration, never a mix of both.
+ */
+public final class ConfigSnapshot {
+    
+    // Glass breaking
+    public final boolean glassBreakingEnabled;
+    public final double minimumSpeed;
+    public final int glassRestoreTime;
+    public final int restoreJitterTicks;
+    public final int maxRestoresPerTick;
+    public final int restoreBudgetMicros;
+    public final int restoreAllBudgetMicros;
+    public final boolean elytraBreakingEnabled;
+    public final double elytraMinSpeed;
+    public final double elytraBreakRadius;
+    public final boolean sprintingBreakingEnabled;
+    public final double sprintingMinSpeed;
+    public final double sprintingBreakRadius;
+    public final boolean fallingBreakingEnabled;
+    public final double fallBreakHeight;
+    public final double fallingMinSpeed;
+    public final double fallingBreakRadius;
+    
+    // Effects
+    public final boolean glassBreakSoundEnabled;
+    public final float glassBreakSoundVolume;
+    public final float glassBreakSoundPitch;
+    public final boolean glassRestoreSoundEnabled;
+    public final float glassRestoreSoundVolume;
+    public final float glassRestoreSoundPitch;
+    public final boolean glassBreakParticlesEnabled;
+    public final int glassBreakParticleCount;
+    public final boolean glassRestoreParticlesEnabled;
+    public final int glassRestoreParticleCount;
+    public final int effectParticleBudget;
+    public final int effectSoundBudget;
+    
+    // Statistics
+    public final boolean statisticsEnabled;
+    public final int statisticsAutosaveInterval;
+    public final String statisticsStorage;
+    
+    // Integrations
+    public final boolean worldGuardIntegrationEnabled;
+    public final boolean townyIntegrationEnabled;
+    public final boolean griefPreventionIntegrationEnabled;
+    public final long protectionCacheTtlMillis;
+    
+    // Performance
+    public final boolean sweptCollisionEnabled;
+    public final boolean asyncProcessingEnabled;
+    public final int maxChainBreakSize;
+    public final int mutationBudgetMicros;
+    public final boolean physicsSuppressed;
+    
+    // Load shedding, thresholds in ms per tick indexed by the level they leave
+    public final boolean loadSheddingEnabled;
+    private final double[] loadSheddingThresholds;
+    public final double loadSheddingRecoverMargin;
+    public final int loadSheddingRecoverTicks;
+    
+    // Journal
+    public final boolean journalEnabled;
+    public final int journalCompactInterval;
+    
+    // Debug
+    public final boolean debugMode;
+    
+    // Tracing, indexed by subsystem ordinal
+    private final TraceLevel[] traceLevels;
+    private final int[] traceSampleRates;
+    public final int traceBufferSize;
+    public final MaterialRegistry materials;
+    
+    ConfigSnapshot(FileConfiguration config, Logger logger) {
+        glassBreakingEnabled = config.getBoolean("glass-breaking.enabled", true);
+        minimumSpeed = config.getDouble("glass-breaking.minimum-speed", 0.5);
+        glassRestoreTime = config.getInt("glass-breaking.restore-time", 30);
+        restoreJitterTicks = (int) Math.max(0, Math.round(config.getDouble("glass-breaking.restore-jitter", 2.0) * 20));
+        maxRestoresPerTick = config.getInt("glass-breaking.max-restores-per-tick", 64);
+        restoreBudgetMicros = Math.max(0, config.getInt("glass-breaking.restore-budget-us", 1000));
+        restoreAllBudgetMicros = Math.max(0, config.getInt("glass-breaking.restore-all-budget-us", 5000));
+        elytraBreakingEnabled = config.getBoolean("glass-breaking.elytra-breaking", true);
+        elytraMinSpeed = config.getDouble("glass-breaking.elytra-min-speed", 0.8);
+        elytraBreakRadius = config.getDouble("glass-breaking.elytra-break-radius", 1.5);
+        sprintingBreakingEnabled = config.getBoolean("glass-breaking.sprint-breaking", true);
+        sprintingMinSpeed = config.getDouble("glass-breaking.sprint-min-speed", 0.6);
+        sprintingBreakRadius = config.getDouble("glass-breaking.sprint-break-radius", 1.0);
+        fallingBreakingEnabled = config.getBoolean("glass-breaking.fall-breaking", true);
+        fallBreakHeight = config.getDouble("glass-breaking.fall-break-height", 6.0);
+        fallingMinSpeed = config.getDouble("glass-breaking.fall-min-speed", 0.7);
+        fallingBreakRadius = config.getDouble("glass-breaking.fall-break-radius", 1.2);
+        glassBreakSoundEnabled = config.getBoolean("effects.sounds.glass-break.enabled", true);
+        glassBreakSoundVolume = (float) config.getDouble("effects.sounds.glass-break.volume", 1.0);
+        glassBreakSoundPitch = (float) config.getDouble("effects.sounds.glass-break.pitch", 1.0);
+        glassRestoreSoundEnabled = config.getBoolean("effects.sounds.glass-restore.enabled", true);
+        glassRestoreSoundVolume = (float) config.getDouble("effects.sounds.glass-restore.volume", 0.5);
+        glassRestoreSoundPitch = (float) config.getDouble("effects.sounds.glass-restore.pitch", 1.2);
+        glassBreakParticlesEnabled = config.getBoolean("effects.particles.glass-break.enabled", true);
+        glassBreakParticleCount = config.getInt("effects.particles.glass-break.count", 20);
+        glassRestoreParticlesEnabled = config.getBoolean("effects.particles.glass-restore.enabled", true);
+        glassRestoreParticleCount = config.getInt("effects.particles.glass-restore.count", 10);
+        effectParticleBudget = Math.max(0, config.getInt("effects.budget.particles-per-tick", 300));
+        effectSoundBudget = Math.max(0, config.getInt("effects.budget.sounds-per-tick", 8));
+        statisticsEnabled = config.getBoolean("statistics.enabled", true);
+        statisticsAutosaveInterval = config.getInt("statistics.autosave-interval", 300);
+        statisticsStorage = config.getString("statistics.storage", "binary").toLowerCase(Locale.ROOT);
+        worldGuardIntegrationEnabled = config.getBoolean("integrations.worldguard.enabled", true);
+        townyIntegrationEnabled = config.getBoolean("integrations.towny.enabled", true);
+        griefPreventionIntegrationEnabled = config.getBoolean("integrations.griefprevention.enabled", true);
+        protectionCacheTtlMillis = Math.max(0L, Math.round(config.getDouble("integrations.cache-ttl", 5.0) * 1000));
+        sweptCollisionEnabled = config.getBoolean("performance.swept-collision", true);
+        asyncProcessingEnabled = config.getBoolean("performance.enable-async-processing", true);
+        maxChainBreakSize = config.getInt("performance.max-chain-break-size", 50);
+        mutationBudgetMicros = Math.max(0, config.getInt("performance.mutation-budget-us", 2000));
+        physicsSuppressed = config.getBoolean("performance.suppress-physics", true);
+        loadSheddingEnabled = config.getBoolean("performance.load-shedding.enabled", true);
+        double elevated = config.getDouble("performance.load-shedding.elevated-mspt", 40.0);
+        double high = Math.max(elevated, config.getDouble("performance.load-shedding.high-mspt", 45.0));
+        double critical = Math.max(high, config.getDouble("performance.load-shedding.critical-mspt", 50.0));
+        loadSheddingThresholds = new double[] {elevated, high, critical};
+        loadSheddingRecoverMargin = Math.max(0, config.getDouble("performance.load-shedding.recover-margin", 5.0));
+        loadSheddingRecoverTicks = (int) Math.max(1, Math.round(config.getDouble("performance.load-shedding.recover-delay", 10.0) * 20));
+        journalEnabled = config.getBoolean("journal.enabled", true);
+        journalCompactInterval = config.getInt("journal.compact-interval", 300);
+        debugMode = config.getBoolean("debug", false);
+        traceBufferSize = Math.max(16, config.getInt("tracing.buffer-size", 4096));
+        traceLevels = new TraceLevel[Subsystem.values().length];
+        traceSampleRates = new int[Subsystem.values().length];
+        for (Subsystem subsystem : Subsystem.values()) {
+            String level = config.getString("tracing.levels." + subsystem.getKey(), "off");
+            try {
+                traceLevels[subsystem.ordinal()] = TraceLevel.valueOf(level.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Unknown trace level '" + level + "' for " + subsystem.getKey() + ", expected off, debug or trace");
+                traceLevels[subsystem.ordinal()] = TraceLevel.OFF;
+            }
+            traceSampleRates[subsystem.ordinal()] = Math.max(1, config.getInt("tracing.sample-rates." + subsystem.getKey(), 1));
+        }
+        materials = MaterialRegistry.load(config.getConfigurationSection("breakable-materials"), glassRestoreTime, logger);
+    }
+    
+    /**
+     * Get the tick time in ms at which load shedding leaves a level for the one above
+     */
+    public double loadSheddingThreshold(int level) {
+        return loadSheddingThresholds[level];
+    }
+    
+    public TraceLevel traceLevel(Subsystem subsystem) {
+        return traceLevels[subsystem.ordinal()];
+    }
+    
+    public int traceSampleRate(Subsystem subsystem) {
+        return traceSampleRates[subsystem.ordinal()];
+    }
+}
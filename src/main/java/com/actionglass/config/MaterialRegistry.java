@@ -0,0 +1,176 @@
+package com.actionglass.config;
+
+import org.bukkit.Material;
+import org.bukkit.Sound;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Table of the materials that can be broken, indexed by material ordinal
+ *
+ * Built from the breakable-materials section of the config. Each group there
+ * names its materials, with * as a wildcard, and the properties they share.
+ * Instances are immutable, so a lookup is a single array read from any thread.
+ */
+public final class MaterialRegistry {
+    
+    private static final List<String> DEFAULT_GLASS = Arrays.asList(
+            "GLASS", "TINTED_GLASS", "*_STAINED_GLASS", "GLASS_PANE", "*_STAINED_GLASS_PANE");
+    
+    private final Profile[] profiles;
+    private final int size;
+    
+    /**
+     * Properties shared by a group of breakable materials
+     */
+    public static final class Profile {
+        private final String name;
+        private final int restoreTime;
+        private final double minSpeed;
+        private final Sound breakSound;
+        private final Sound restoreSound;
+        
+        Profile(String name, int restoreTime, double minSpeed, Sound breakSound, Sound restoreSound) {
+            this.name = name;
+            this.restoreTime = restoreTime;
+            this.minSpeed = minSpeed;
+            this.breakSound = breakSound;
+            this.restoreSound = restoreSound;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Seconds until a broken block of this group is restored
+         */
+        public int getRestoreTime() {
+            return restoreTime;
+        }
+        
+        /**
+         * Speed a player or projectile needs at least to break this group,
+         * on top of the speed required for the movement itself
+         */
+        public double getMinSpeed() {
+            return minSpeed;
+        }
+        
+        public Sound getBreakSound() {
+            return breakSound;
+        }
+        
+        public Sound getRestoreSound() {
+            return restoreSound;
+        }
+    }
+    
+    private MaterialRegistry(Profile[] profiles) {
+        this.profiles = profiles;
+        int count = 0;
+        for (Profile profile : profiles) {
+            if (profile != null) {
+                count++;
+            }
+        }
+        this.size = count;
+    }
+    
+    /**
+     * Build the registry from the breakable-materials section, falling back
+     * to plain, tinted and stained glass and panes when it is missing
+     */
+    public static MaterialRegistry load(ConfigurationSection section, int defaultRestoreTime, Logger logger) {
+        Profile[] profiles = new Profile[Material.values().length];
+        
+        if (section == null) {
+            Profile glass = new Profile("glass", defaultRestoreTime, 0, Sound.BLOCK_GLASS_BREAK, Sound.BLOCK_GLASS_PLACE);
+            for (String name : DEFAULT_GLASS) {
+                assign(profiles, glass, name, logger);
+            }
+            return new MaterialRegistry(profiles);
+        }
+        
+        for (String group : section.getKeys(false)) {
+            ConfigurationSection entry = section.getConfigurationSection(group);
+            if (entry == null || !entry.getBoolean("enabled", true)) {
+                continue;
+            }
+            Profile profile = new Profile(group,
+                    entry.getInt("restore-time", defaultRestoreTime),
+                    entry.getDouble("min-speed", 0),
+                    sound(entry.getString("break-sound", "BLOCK_GLASS_BREAK"), group, logger),
+                    sound(entry.getString("restore-sound", "BLOCK_GLASS_PLACE"), group, logger));
+            for (String name : entry.getStringList("materials")) {
+                assign(profiles, profile, name, logger);
+            }
+        }
+        return new MaterialRegistry(profiles);
+    }
+    
+    private static void assign(Profile[] profiles, Profile profile, String name, Logger logger) {
+        String pattern = name.trim().toUpperCase(Locale.ROOT);
+        if (pattern.indexOf('*') < 0) {
+            Material material = Material.matchMaterial(pattern);
+            if (material == null || !material.isBlock()) {
+                logger.warning("Unknown block material '" + name + "' in breakable-materials." + profile.getName());
+                return;
+            }
+            profiles[material.ordinal()] = profile;
+            return;
+        }
+        
+        Pattern regex = Pattern.compile(Pattern.quote(pattern).replace("*", "\\E.*\\Q"));
+        int matched = 0;
+        for (Material material : Material.values()) {
+            if (material.isBlock() && !material.name().startsWith("LEGACY_") && regex.matcher(material.name()).matches()) {
+                profiles[material.ordinal()] = profile;
+                matched++;
+            }
+        }
+        if (matched == 0) {
+            logger.warning("Pattern '" + name + "' in breakable-materials." + profile.getName() + " matches no block materials");
+        }
+    }
+    
+    private static Sound sound(String name, String group, Logger logger) {
+        if (name == null || name.isEmpty() || name.equalsIgnoreCase("none")) {
+            return null;
+        }
+        try {
+            return Sound.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warning("Unknown sound '" + name + "' in breakable-materials." + group);
+            return null;
+        }
+    }
+    
+    /**
+     * Check if a material can be broken
+     */
+    public boolean isBreakable(Material material) {
+        return profiles[material.ordinal()] != null;
+    }
+    
+    /**
+     * Get the properties of a material
+     *
+     * @return the profile, or null if the material cannot be broken
+     */
+    public Profile getProfile(Material material) {
+        return profiles[material.ordinal()];
+    }
+    
+    /**
+     * Get the number of breakable materials
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,24 @@
+package com.actionglass.debug;
+
+import java.util.Locale;
+
+/**
+ * Areas of the plugin that can be traced separately
+ */
+public enum Subsystem {
+    MOVEMENT,
+    BREAKING,
+    REGENERATION,
+    CHUNKS,
+    PROJECTILES,
+    STATISTICS,
+    INTEGRATIONS,
+    GENERAL;
+    
+    /**
+     * Name used for this subsystem in the config and in trace output
+     */
+    public String getKey() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,124 @@
+package com.actionglass.debug;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Fixed size ring of the most recent trace events
+ *
+ * Events are kept in parallel arrays and overwrite the oldest once full.
+ * Recording is synchronized since events come from async tasks too.
+ */
+final class TraceBuffer {
+    
+    private final long[] times;
+    private final byte[] subsystems;
+    private final byte[] levels;
+    private final String[] threads;
+    private final String[] messages;
+    private final int mask;
+    private long next;
+    
+    TraceBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        times = new long[size];
+        subsystems = new byte[size];
+        levels = new byte[size];
+        threads = new String[size];
+        messages = new String[size];
+        mask = size - 1;
+    }
+    
+    int capacity() {
+        return times.length;
+    }
+    
+    synchronized void add(Subsystem subsystem, TraceLevel level, String message) {
+        int slot = (int) (next++ & mask);
+        times[slot] = System.currentTimeMillis();
+        subsystems[slot] = (byte) subsystem.ordinal();
+        levels[slot] = (byte) level.ordinal();
+        threads[slot] = Thread.currentThread().getName();
+        messages[slot] = message;
+    }
+    
+    /**
+     * Copy the buffered events, oldest first, so they can be written out
+     * without holding up recording
+     */
+    synchronized Copy copy() {
+        int count = (int) Math.min(next, times.length);
+        Copy copy = new Copy(count, next - count);
+        for (int i = 0; i < count; i++) {
+            int slot = (int) ((next - count + i) & mask);
+            copy.times[i] = times[slot];
+            copy.subsystems[i] = subsystems[slot];
+            copy.levels[i] = levels[slot];
+            copy.threads[i] = threads[slot];
+            copy.messages[i] = messages[slot];
+        }
+        return copy;
+    }
+    
+    /**
+     * Detached copy of the buffered events
+     */
+    static final class Copy {
+        final long[] times;
+        final byte[] subsystems;
+        final byte[] levels;
+        final String[] threads;
+        final String[] messages;
+        final long dropped;
+        
+        Copy(int count, long dropped) {
+            times = new long[count];
+            subsystems = new byte[count];
+            levels = new byte[count];
+            threads = new String[count];
+            messages = new String[count];
+            this.dropped = dropped;
+        }
+        
+        int size() {
+            return times.length;
+        }
+        
+        /**
+         * Write the events as text, one per line. Safe to call off the main thread.
+         */
+        void writeTo(File file) throws IOException {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Could not create " + parent);
+            }
+            
+            Subsystem[] allSubsystems = Subsystem.values();
+            TraceLevel[] allLevels = TraceLevel.values();
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+            try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                if (dropped > 0) {
+                    writer.write("# " + dropped + " older events were overwritten");
+                    writer.newLine();
+                }
+                for (int i = 0; i < times.length; i++) {
+                    writer.write(format.format(new Date(times[i])));
+                    writer.write(" [");
+                    writer.write(threads[i]);
+                    writer.write("] ");
+                    writer.write(allLevels[levels[i]].name());
+                    writer.write(' ');
+                    writer.write(allSubsystems[subsystems[i]].getKey());
+                    writer.write(": ");
+                    writer.write(messages[i]);
+                    writer.newLine();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.actionglass.debug;
+
+/**
+ * How much of a subsystem gets traced, from nothing to per block detail
+ */
+public enum TraceLevel {
+    OFF,
+    DEBUG,
+    TRACE
+}
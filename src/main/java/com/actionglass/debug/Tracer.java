@@ -0,0 +1,187 @@
+package com.actionglass.debug;
+
+import com.actionglass.config.ConfigSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Debug tracing with per subsystem levels and sampling
+ *
+ * Messages are only built once an event has passed the level and sampling
+ * checks. Pass constant strings, a pattern with {} placeholders and up to
+ * three arguments, or a supplier. Boxed arguments and capturing suppliers are
+ * still allocated while tracing is off, so on per block and per move paths
+ * guard with {@link #isEnabled(Subsystem, TraceLevel)}, which costs an array read.
+ * Accepted events go into a ring buffer that can be dumped to a file, and are
+ * echoed to the console in debug mode.
+ */
+public final class Tracer {
+    
+    private static final int SUBSYSTEMS = Subsystem.values().length;
+    
+    private final Logger logger;
+    private volatile byte[] levels = new byte[SUBSYSTEMS];
+    private volatile int[] sampleRates = new int[SUBSYSTEMS];
+    private volatile boolean console;
+    private volatile TraceBuffer buffer = new TraceBuffer(1024);
+    
+    // Racy on purpose; a lost increment only shifts which event gets sampled
+    private final int[] sampleCounters = new int[SUBSYSTEMS];
+    
+    public Tracer(Logger logger) {
+        this.logger = logger;
+    }
+    
+    /**
+     * Apply the tracing settings of a config snapshot. Debug mode raises every
+     * subsystem to at least {@link TraceLevel#DEBUG} and echoes to the console.
+     */
+    public void configure(ConfigSnapshot config) {
+        byte[] newLevels = new byte[SUBSYSTEMS];
+        int[] newRates = new int[SUBSYSTEMS];
+        for (Subsystem subsystem : Subsystem.values()) {
+            int level = config.traceLevel(subsystem).ordinal();
+            if (config.debugMode) {
+                level = Math.max(level, TraceLevel.DEBUG.ordinal());
+            }
+            newLevels[subsystem.ordinal()] = (byte) level;
+            newRates[subsystem.ordinal()] = Math.max(1, config.traceSampleRate(subsystem));
+        }
+        if (buffer.capacity() < config.traceBufferSize || buffer.capacity() >= config.traceBufferSize * 2) {
+            buffer = new TraceBuffer(config.traceBufferSize);
+        }
+        sampleRates = newRates;
+        console = config.debugMode;
+        levels = newLevels;
+    }
+    
+    /**
+     * Check if events of a subsystem at a level are recorded at all, to guard
+     * work that is only needed for tracing
+     */
+    public boolean isEnabled(Subsystem subsystem, TraceLevel level) {
+        return levels[subsystem.ordinal()] >= level.ordinal() && level != TraceLevel.OFF;
+    }
+    
+    private boolean admit(Subsystem subsystem, TraceLevel level) {
+        if (!isEnabled(subsystem, level)) {
+            return false;
+        }
+        int rate = sampleRates[subsystem.ordinal()];
+        return rate <= 1 || sampleCounters[subsystem.ordinal()]++ % rate == 0;
+    }
+    
+    public void debug(Subsystem subsystem, String message) {
+        if (admit(subsystem, TraceLevel.DEBUG)) {
+            record(subsystem, TraceLevel.DEBUG, message);
+        }
+    }
+    
+    public void debug(Subsystem subsystem, Supplier<String> message) {
+        if (admit(subsystem, TraceLevel.DEBUG)) {
+            record(subsystem, TraceLevel.DEBUG, message.get());
+        }
+    }
+    
+    public void debug(Subsystem subsystem, String pattern, Object arg) {
+        if (admit(subsystem, TraceLevel.DEBUG)) {
+            record(subsystem, TraceLevel.DEBUG, format(pattern, arg, null, null));
+        }
+    }
+    
+    public void debug(Subsystem subsystem, String pattern, Object arg1, Object arg2) {
+        if (admit(subsystem, TraceLevel.DEBUG)) {
+            record(subsystem, TraceLevel.DEBUG, format(pattern, arg1, arg2, null));
+        }
+    }
+    
+    public void debug(Subsystem subsystem, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (admit(subsystem, TraceLevel.DEBUG)) {
+            record(subsystem, TraceLevel.DEBUG, format(pattern, arg1, arg2, arg3));
+        }
+    }
+    
+    public void trace(Subsystem subsystem, String message) {
+        if (admit(subsystem, TraceLevel.TRACE)) {
+            record(subsystem, TraceLevel.TRACE, message);
+        }
+    }
+    
+    public void trace(Subsystem subsystem, Supplier<String> message) {
+        if (admit(subsystem, TraceLevel.TRACE)) {
+            record(subsystem, TraceLevel.TRACE, message.get());
+        }
+    }
+    
+    public void trace(Subsystem subsystem, String pattern, Object arg) {
+        if (admit(subsystem, TraceLevel.TRACE)) {
+            record(subsystem, TraceLevel.TRACE, format(pattern, arg, null, null));
+        }
+    }
+    
+    public void trace(Subsystem subsystem, String pattern, Object arg1, Object arg2) {
+        if (admit(subsystem, TraceLevel.TRACE)) {
+            record(subsystem, TraceLevel.TRACE, format(pattern, arg1, arg2, null));
+        }
+    }
+    
+    public void trace(Subsystem subsystem, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (admit(subsystem, TraceLevel.TRACE)) {
+            record(subsystem, TraceLevel.TRACE, format(pattern, arg1, arg2, arg3));
+        }
+    }
+    
+    private void record(Subsystem subsystem, TraceLevel level, String message) {
+        buffer.add(subsystem, level, message);
+        if (console) {
+            logger.info("[DEBUG] [" + subsystem.getKey() + "] " + message);
+        }
+    }
+    
+    private static String format(String pattern, Object arg1, Object arg2, Object arg3) {
+        StringBuilder builder = new StringBuilder(pattern.length() + 32);
+        int argument = 0;
+        int start = 0;
+        int at;
+        while ((at = pattern.indexOf("{}", start)) >= 0) {
+            builder.append(pattern, start, at);
+            builder.append(argument == 0 ? arg1 : argument == 1 ? arg2 : arg3);
+            argument++;
+            start = at + 2;
+        }
+        builder.append(pattern, start, pattern.length());
+        return builder.toString();
+    }
+    
+    /**
+     * Take a copy of the buffered events, to be written with {@link Dump#writeTo(File)}
+     */
+    public Dump dump() {
+        return new Dump(buffer.copy());
+    }
+    
+    /**
+     * Buffered events captured for writing out, detached from the live buffer
+     */
+    public static final class Dump {
+        private final TraceBuffer.Copy copy;
+        
+        private Dump(TraceBuffer.Copy copy) {
+            this.copy = copy;
+        }
+        
+        public int size() {
+            return copy.size();
+        }
+        
+        /**
+         * Write the events to a text file. Meant to run off the main thread.
+         */
+        public void writeTo(File file) throws IOException {
+            copy.writeTo(file);
+        }
+    }
+}
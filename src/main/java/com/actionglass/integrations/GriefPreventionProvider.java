@@ -0,0 +1,155 @@
+package com.actionglass.integrations;
+
+import com.actionglass.util.BlockKey;
+import me.ryanhamshire.GriefPrevention.Claim;
+import me.ryanhamshire.GriefPrevention.ClaimPermission;
+import me.ryanhamshire.GriefPrevention.DataStore;
+import me.ryanhamshire.GriefPrevention.GriefPrevention;
+import me.ryanhamshire.GriefPrevention.events.ClaimChangeEvent;
+import me.ryanhamshire.GriefPrevention.events.ClaimCreatedEvent;
+import me.ryanhamshire.GriefPrevention.events.ClaimDeletedEvent;
+import me.ryanhamshire.GriefPrevention.events.TrustChangedEvent;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+import java.util.Collection;
+
+/**
+ * Protection by GriefPrevention claims and their build trust
+ *
+ * Chunks without claims are wilderness, where anything may be broken. A chunk
+ * covered entirely by a single claim without subdivisions, reaching down to
+ * the bottom of the world, gets that claim's answer for all of its blocks.
+ * Without a player, nothing inside a claim may be broken.
+ */
+final class GriefPreventionProvider implements ProtectionProvider, Listener {
+    
+    private final IntegrationManager integrations;
+    
+    GriefPreventionProvider(IntegrationManager integrations) {
+        this.integrations = integrations;
+    }
+    
+    @Override
+    public String getName() {
+        return "GriefPrevention";
+    }
+    
+    @Override
+    public ChunkAccess checkChunk(Player player, World world, int chunkX, int chunkZ) {
+        GriefPrevention griefPrevention = GriefPrevention.instance;
+        if (!griefPrevention.claimsEnabledForWorld(world) || griefPrevention.dataStore.getPlayerData(player.getUniqueId()).ignoreClaims) {
+            return ChunkAccess.ALLOWED;
+        }
+        return checkChunk(player, world, chunkX, chunkZ, griefPrevention);
+    }
+    
+    @Override
+    public ChunkAccess checkChunk(World world, int chunkX, int chunkZ) {
+        GriefPrevention griefPrevention = GriefPrevention.instance;
+        if (!griefPrevention.claimsEnabledForWorld(world)) {
+            return ChunkAccess.ALLOWED;
+        }
+        return checkChunk(null, world, chunkX, chunkZ, griefPrevention);
+    }
+    
+    /**
+     * Check a chunk for a player, or without one if null
+     */
+    private ChunkAccess checkChunk(Player player, World world, int chunkX, int chunkZ, GriefPrevention griefPrevention) {
+        Collection<Claim> claims = griefPrevention.dataStore.getClaims(chunkX, chunkZ);
+        if (claims.isEmpty()) {
+            return ChunkAccess.ALLOWED;
+        }
+        if (claims.size() > 1) {
+            return ChunkAccess.MIXED;
+        }
+        
+        Claim claim = claims.iterator().next();
+        Location lesser = claim.getLesserBoundaryCorner();
+        Location greater = claim.getGreaterBoundaryCorner();
+        int minX = chunkX << 4;
+        int minZ = chunkZ << 4;
+        if (!claim.children.isEmpty() || lesser.getBlockY() > world.getMinHeight()
+                || lesser.getBlockX() > minX || lesser.getBlockZ() > minZ
+                || greater.getBlockX() < minX + 15 || greater.getBlockZ() < minZ + 15) {
+            return ChunkAccess.MIXED;
+        }
+        return canBuild(claim, player) ? ChunkAccess.ALLOWED : ChunkAccess.DENIED;
+    }
+    
+    @Override
+    public boolean canBreak(Player player, World world, int x, int y, int z) {
+        Claim claim = GriefPrevention.instance.dataStore.getClaimAt(new Location(world, x, y, z), false, null);
+        return claim == null || canBuild(claim, player);
+    }
+    
+    @Override
+    public boolean canBreak(World world, int x, int y, int z) {
+        return GriefPrevention.instance.dataStore.getClaimAt(new Location(world, x, y, z), false, null) == null;
+    }
+    
+    private static boolean canBuild(Claim claim, Player player) {
+        return player != null && claim.checkPermission(player, ClaimPermission.Build, null) == null;
+    }
+    
+    @Override
+    public void filter(World world, long[] keys, int count, boolean[] allowed) {
+        filter(null, world, keys, count, allowed);
+    }
+    
+    /**
+     * Check a batch for a player, or without one if null
+     */
+    @Override
+    public void filter(Player player, World world, long[] keys, int count, boolean[] allowed) {
+        // Neighbouring blocks are usually in the same claim, which the lookup tries first
+        DataStore dataStore = GriefPrevention.instance.dataStore;
+        Location location = new Location(world, 0, 0, 0);
+        Claim claim = null;
+        Claim checked = null;
+        boolean permitted = true;
+        for (int i = 0; i < count; i++) {
+            if (!allowed[i]) {
+                continue;
+            }
+            long key = keys[i];
+            location.setX(BlockKey.x(key));
+            location.setY(BlockKey.y(key));
+            location.setZ(BlockKey.z(key));
+            claim = dataStore.getClaimAt(location, false, claim);
+            if (claim == null) {
+                continue;
+            }
+            if (claim != checked) {
+                checked = claim;
+                permitted = canBuild(claim, player);
+            }
+            allowed[i] = permitted;
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onClaimCreated(ClaimCreatedEvent event) {
+        integrations.invalidateCache();
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onClaimDeleted(ClaimDeletedEvent event) {
+        integrations.invalidateCache();
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onClaimChanged(ClaimChangeEvent event) {
+        integrations.invalidateCache();
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTrustChanged(TrustChangedEvent event) {
+        integrations.invalidateCache();
+    }
+}
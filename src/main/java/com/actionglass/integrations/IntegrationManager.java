@@ -1,17 +1,43 @@
 package com.actionglass.integrations;
 
 import com.actionglass.ActionGlass;
+import com.actionglass.debug.Subsystem;
+import com.actionglass.util.BlockKey;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages third-party plugin integrations
+ *
+ * Protection plugins are asked through {@link ProtectionProvider}s, about a
+ * whole chunk first and per block only where their answer depends on the
+ * block. The answers are cached per player until they expire or a provider
+ * reports that protection changed, so a scan over many blocks costs a few
+ * region lookups instead of one per block. Breaks without a player, such as
+ * a dispenser's arrow, pass a null player and share one cache; they are
+ * allowed only outside protected areas.
  */
-public class IntegrationManager {
+public class IntegrationManager implements Listener {
     
     private final ActionGlass plugin;
+    private final Map<UUID, ProtectionCache> caches = new ConcurrentHashMap<>();
+    private final ProtectionCache unowned = new ProtectionCache();
+    private final AtomicInteger version = new AtomicInteger();
+    private volatile ProtectionProvider[] providers = new ProtectionProvider[0];
     private boolean worldGuardEnabled = false;
     private boolean townyEnabled = false;
+    private boolean griefPreventionEnabled = false;
     
     public IntegrationManager(ActionGlass plugin) {
         this.plugin = plugin;
@@ -22,10 +48,12 @@ public class IntegrationManager {
      */
     public void initializeIntegrations() {
         plugin.getLogger().info("Checking for third-party plugin integrations...");
+        List<ProtectionProvider> found = new ArrayList<>();
         
         // Check for WorldGuard
         if (plugin.getServer().getPluginManager().getPlugin("WorldGuard") != null) {
             if (plugin.getConfigManager().isWorldGuardIntegrationEnabled()) {
+                found.add(new WorldGuardProvider());
                 worldGuardEnabled = true;
                 plugin.getLogger().info("WorldGuard integration enabled.");
             }
@@ -34,63 +62,261 @@ public class IntegrationManager {
         // Check for Towny
         if (plugin.getServer().getPluginManager().getPlugin("Towny") != null) {
             if (plugin.getConfigManager().isTownyIntegrationEnabled()) {
+                found.add(new TownyProvider(this));
                 townyEnabled = true;
                 plugin.getLogger().info("Towny integration enabled.");
             }
         }
         
-        if (!worldGuardEnabled && !townyEnabled) {
+        // Check for GriefPrevention
+        if (plugin.getServer().getPluginManager().getPlugin("GriefPrevention") != null) {
+            if (plugin.getConfigManager().isGriefPreventionIntegrationEnabled()) {
+                found.add(new GriefPreventionProvider(this));
+                griefPreventionEnabled = true;
+                plugin.getLogger().info("GriefPrevention integration enabled.");
+            }
+        }
+        
+        if (found.isEmpty()) {
             plugin.getLogger().info("No third-party integrations enabled.");
+            return;
         }
+        
+        // Providers that learn about protection changes listen for them
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        for (ProtectionProvider provider : found) {
+            if (provider instanceof Listener) {
+                plugin.getServer().getPluginManager().registerEvents((Listener) provider, plugin);
+            }
+        }
+        providers = found.toArray(new ProtectionProvider[0]);
     }
     
     /**
-     * Check if glass can be broken at the specified location by the player
+     * Check if glass can be broken at the specified location by the player, or without one if null
      */
     public boolean canBreakGlass(Location location, Player player) {
-        // Check WorldGuard regions
-        if (worldGuardEnabled && !canBreakInWorldGuardRegion(location, player)) {
-            return false;
+        if (providers.length == 0) {
+            return true;
+        }
+        World world = location.getWorld();
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+        int index = plugin.getGlassManager().getWorldIndex(world);
+        if (index < 0 || !BlockKey.fits(x, y, z)) {
+            // Nothing to cache it under; ask every provider directly
+            for (ProtectionProvider provider : providers) {
+                if (!canBreak(provider, player, world, x, y, z)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return canBreakGlass(player, world, BlockKey.pack(index, x, y, z));
+    }
+    
+    /**
+     * Check if a player, or nothing if null, can break glass at a packed {@link BlockKey}
+     */
+    public boolean canBreakGlass(Player player, World world, long key) {
+        ProtectionProvider[] providers = this.providers;
+        if (providers.length == 0) {
+            return true;
         }
         
-        // Check Towny claims
-        if (townyEnabled && !canBreakInTownyClaim(location, player)) {
-            return false;
+        ProtectionCache cache = cacheOf(player);
+        synchronized (cache) {
+            long chunk = chunkEntry(cache, providers, player, world, key);
+            if (chunk == ProtectionCache.DENIED || chunk == 0) {
+                return chunk == 0;
+            }
+            long block = cache.block(key);
+            if (block != ProtectionCache.UNKNOWN) {
+                return block == 1;
+            }
+            boolean allowed = true;
+            for (int p = 0; p < providers.length && allowed; p++) {
+                if ((chunk & (1L << p)) != 0) {
+                    allowed = canBreak(providers[p], player, world, key);
+                }
+            }
+            cache.putBlock(key, allowed);
+            return allowed;
+        }
+    }
+    
+    /**
+     * Drop the blocks a player, or nothing if null, may not break from a
+     * batch of packed {@link BlockKey}s in one world
+     *
+     * @return the number of blocks kept, moved to the front of keys in their original order
+     */
+    public int filter(Player player, World world, long[] keys, int count) {
+        ProtectionProvider[] providers = this.providers;
+        if (providers.length == 0 || count == 0) {
+            return count;
         }
         
-        return true;
+        ProtectionCache cache = cacheOf(player);
+        boolean[] allowed = new boolean[count];
+        long[] pending = new long[count];
+        int kept = 0;
+        synchronized (cache) {
+            // Settle what the chunk answers allow and collect the blocks providers have to be asked about
+            long providersToAsk = 0;
+            for (int i = 0; i < count; i++) {
+                long key = keys[i];
+                long chunk = chunkEntry(cache, providers, player, world, key);
+                if (chunk == ProtectionCache.DENIED) {
+                    continue;
+                }
+                allowed[i] = true;
+                if (chunk == 0) {
+                    continue;
+                }
+                long block = cache.block(key);
+                if (block != ProtectionCache.UNKNOWN) {
+                    allowed[i] = block == 1;
+                } else {
+                    pending[i] = chunk;
+                    providersToAsk |= chunk;
+                }
+            }
+            
+            // Ask each provider about its blocks in one batch
+            if (providersToAsk != 0) {
+                long[] batch = new long[count];
+                boolean[] batchAllowed = new boolean[count];
+                int[] batchIndex = new int[count];
+                for (int p = 0; p < providers.length; p++) {
+                    long bit = 1L << p;
+                    if ((providersToAsk & bit) == 0) {
+                        continue;
+                    }
+                    int size = 0;
+                    for (int i = 0; i < count; i++) {
+                        if ((pending[i] & bit) != 0 && allowed[i]) {
+                            batch[size] = keys[i];
+                            batchAllowed[size] = true;
+                            batchIndex[size++] = i;
+                        }
+                    }
+                    try {
+                        if (player != null) {
+                            providers[p].filter(player, world, batch, size, batchAllowed);
+                        } else {
+                            providers[p].filter(world, batch, size, batchAllowed);
+                        }
+                    } catch (RuntimeException e) {
+                        // Default to allow if there's an error
+                        plugin.getLogger().warning("Error checking " + providers[p].getName() + " protection: " + e.getMessage());
+                    }
+                    for (int j = 0; j < size; j++) {
+                        allowed[batchIndex[j]] = batchAllowed[j];
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    if (pending[i] != 0) {
+                        cache.putBlock(keys[i], allowed[i]);
+                    }
+                }
+            }
+        }
+        
+        for (int i = 0; i < count; i++) {
+            if (allowed[i]) {
+                keys[kept++] = keys[i];
+            }
+        }
+        if (kept < count) {
+            int denied = count - kept;
+            plugin.getTracer().debug(Subsystem.INTEGRATIONS, () -> "Protection denied " + nameOf(player) + " " + denied + " of " + count + " blocks");
+        }
+        return kept;
     }
     
     /**
-     * Check WorldGuard region permissions
+     * Get the cache of a player, or of breaks without one if null, emptied if
+     * its entries expired or protection changed
      */
-    private boolean canBreakInWorldGuardRegion(Location location, Player player) {
-        try {
-            // This is a simplified check - in a real implementation you'd use WorldGuard API
-            // For now, we'll just return true to avoid complex WorldGuard integration
-            plugin.debug("WorldGuard check for " + player.getName() + " at " + location.toString());
-            return true;
-        } catch (Exception e) {
-            plugin.getLogger().warning("Error checking WorldGuard permissions: " + e.getMessage());
-            return true; // Default to allow if there's an error
+    private ProtectionCache cacheOf(Player player) {
+        ProtectionCache cache = player == null ? unowned : caches.computeIfAbsent(player.getUniqueId(), id -> new ProtectionCache());
+        synchronized (cache) {
+            cache.validate(version.get(), System.currentTimeMillis(), plugin.getConfigManager().getProtectionCacheTtlMillis());
         }
+        return cache;
     }
     
     /**
-     * Check Towny claim permissions
+     * Get the cache entry of the chunk holding a block, asking the providers if needed
      */
-    private boolean canBreakInTownyClaim(Location location, Player player) {
+    private long chunkEntry(ProtectionCache cache, ProtectionProvider[] providers, Player player, World world, long key) {
+        long chunk = cache.chunk(key);
+        if (chunk == ProtectionCache.UNKNOWN) {
+            chunk = checkChunk(providers, player, world, key);
+            cache.putChunk(key, chunk);
+        }
+        return chunk;
+    }
+    
+    private boolean canBreak(ProtectionProvider provider, Player player, World world, long key) {
+        return canBreak(provider, player, world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key));
+    }
+    
+    private boolean canBreak(ProtectionProvider provider, Player player, World world, int x, int y, int z) {
         try {
-            // This is a simplified check - in a real implementation you'd use Towny API
-            // For now, we'll just return true to avoid complex Towny integration
-            plugin.debug("Towny check for " + player.getName() + " at " + location.toString());
+            return player != null ? provider.canBreak(player, world, x, y, z) : provider.canBreak(world, x, y, z);
+        } catch (RuntimeException e) {
+            // Default to allow if there's an error
+            plugin.getLogger().warning("Error checking " + provider.getName() + " protection: " + e.getMessage());
             return true;
-        } catch (Exception e) {
-            plugin.getLogger().warning("Error checking Towny permissions: " + e.getMessage());
-            return true; // Default to allow if there's an error
         }
     }
     
+    /**
+     * Combine the chunk answers of every provider into a cache entry
+     */
+    private long checkChunk(ProtectionProvider[] providers, Player player, World world, long key) {
+        int chunkX = BlockKey.chunkX(BlockKey.chunkKey(key));
+        int chunkZ = BlockKey.chunkZ(BlockKey.chunkKey(key));
+        long mixed = 0;
+        for (int p = 0; p < providers.length; p++) {
+            ProtectionProvider provider = providers[p];
+            ProtectionProvider.ChunkAccess access;
+            try {
+                access = player != null ? provider.checkChunk(player, world, chunkX, chunkZ) : provider.checkChunk(world, chunkX, chunkZ);
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning("Error checking " + provider.getName() + " protection: " + e.getMessage());
+                access = ProtectionProvider.ChunkAccess.MIXED;
+            }
+            if (access == ProtectionProvider.ChunkAccess.DENIED) {
+                plugin.getTracer().trace(Subsystem.INTEGRATIONS, () -> provider.getName() + " denies " + nameOf(player) + " chunk " + chunkX + "," + chunkZ);
+                return ProtectionCache.DENIED;
+            }
+            if (access == ProtectionProvider.ChunkAccess.MIXED) {
+                mixed |= 1L << p;
+            }
+        }
+        return mixed;
+    }
+    
+    private static String nameOf(Player player) {
+        return player != null ? player.getName() : "breaks without a player";
+    }
+    
+    /**
+     * Forget every cached answer, e.g. because a region or claim changed
+     */
+    public void invalidateCache() {
+        version.incrementAndGet();
+    }
+    
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        caches.remove(event.getPlayer().getUniqueId());
+    }
+    
     /**
      * Check if WorldGuard integration is enabled
      */
@@ -104,4 +330,11 @@ public class IntegrationManager {
     public boolean isTownyEnabled() {
         return townyEnabled;
     }
+    
+    /**
+     * Check if GriefPrevention integration is enabled
+     */
+    public boolean isGriefPreventionEnabled() {
+        return griefPreventionEnabled;
+    }
 }
@@ -0,0 +1,69 @@
+package com.actionglass.integrations;
+
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.LongLongHashMap;
+
+/**
+ * Protection answers for one player, per chunk and, in chunks where they
+ * depend on the block, per block
+ *
+ * Everything is dropped together once the entries expire or protection
+ * changed anywhere, as counted by a version. Callers synchronize on the cache.
+ */
+final class ProtectionCache {
+    
+    static final long UNKNOWN = Long.MIN_VALUE;
+    
+    // Chunk entry of a chunk where nothing may be broken; otherwise the entry
+    // has a bit set for each provider that has to be asked per block
+    static final long DENIED = -1L;
+    
+    private static final int MAX_BLOCKS = 1 << 13;
+    
+    private final LongLongHashMap chunks = new LongLongHashMap();
+    private final LongLongHashMap blocks = new LongLongHashMap();
+    private int version = -1;
+    private long expiresAt;
+    
+    /**
+     * Drop every entry if they expired or protection changed since they were stored
+     */
+    void validate(int version, long now, long ttl) {
+        if (version != this.version || now >= expiresAt) {
+            chunks.clear();
+            blocks.clear();
+            this.version = version;
+            this.expiresAt = now + ttl;
+        }
+    }
+    
+    /**
+     * Get the entry of the chunk holding a block
+     *
+     * @return {@link #DENIED}, the bits of the providers to ask per block, or {@link #UNKNOWN}
+     */
+    long chunk(long key) {
+        return chunks.get(BlockKey.chunkKey(key), UNKNOWN);
+    }
+    
+    void putChunk(long key, long entry) {
+        chunks.put(BlockKey.chunkKey(key), entry);
+    }
+    
+    /**
+     * Get the answer for a block in a chunk where it depends on the block
+     *
+     * @return 1 if it may be broken, 0 if not, or {@link #UNKNOWN}
+     */
+    long block(long key) {
+        return blocks.get(key, UNKNOWN);
+    }
+    
+    void putBlock(long key, boolean allowed) {
+        // Start over at the cap; the entries are cheap to ask for again
+        if (blocks.size() >= MAX_BLOCKS) {
+            blocks.clear();
+        }
+        blocks.put(key, allowed ? 1 : 0);
+    }
+}
@@ -0,0 +1,78 @@
+package com.actionglass.integrations;
+
+import com.actionglass.util.BlockKey;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * A plugin protecting areas from being broken by players
+ *
+ * Providers are asked about whole chunks first, and about single blocks only
+ * in chunks where the answer depends on the block, then in batches. Breaks
+ * without a player, such as a skeleton's or a dispenser's arrow, are asked
+ * about through the overloads without one. Called on the thread owning the
+ * blocks.
+ */
+public interface ProtectionProvider {
+    
+    /**
+     * What a player may break in a whole chunk
+     */
+    enum ChunkAccess {
+        ALLOWED,
+        DENIED,
+        MIXED
+    }
+    
+    String getName();
+    
+    /**
+     * Check what a player may break in a chunk, as cheaply as possible;
+     * {@link ChunkAccess#MIXED} is always a safe answer
+     */
+    ChunkAccess checkChunk(Player player, World world, int chunkX, int chunkZ);
+    
+    /**
+     * Check if a player may break a block
+     */
+    boolean canBreak(Player player, World world, int x, int y, int z);
+    
+    /**
+     * Check what may be broken in a chunk without a player, which is
+     * everything outside protected areas; {@link ChunkAccess#MIXED} is always
+     * a safe answer
+     */
+    ChunkAccess checkChunk(World world, int chunkX, int chunkZ);
+    
+    /**
+     * Check if a block may be broken without a player, that is if it lies outside every protected area
+     */
+    boolean canBreak(World world, int x, int y, int z);
+    
+    /**
+     * Check a batch of blocks in one world, clearing the entries of the ones
+     * the player may not break. By default each block is checked on its own;
+     * providers that can share work between blocks override this.
+     */
+    default void filter(Player player, World world, long[] keys, int count, boolean[] allowed) {
+        for (int i = 0; i < count; i++) {
+            long key = keys[i];
+            if (allowed[i] && !canBreak(player, world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key))) {
+                allowed[i] = false;
+            }
+        }
+    }
+    
+    /**
+     * Check a batch of blocks in one world for a break without a player, like
+     * {@link #filter(Player, World, long[], int, boolean[])}
+     */
+    default void filter(World world, long[] keys, int count, boolean[] allowed) {
+        for (int i = 0; i < count; i++) {
+            long key = keys[i];
+            if (allowed[i] && !canBreak(world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key))) {
+                allowed[i] = false;
+            }
+        }
+    }
+}
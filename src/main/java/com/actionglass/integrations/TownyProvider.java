@@ -0,0 +1,86 @@
+package com.actionglass.integrations;
+
+import com.palmergames.bukkit.towny.TownyAPI;
+import com.palmergames.bukkit.towny.TownySettings;
+import com.palmergames.bukkit.towny.event.TownBlockSettingsChangedEvent;
+import com.palmergames.bukkit.towny.event.TownClaimEvent;
+import com.palmergames.bukkit.towny.event.TownUnclaimEvent;
+import com.palmergames.bukkit.towny.object.TownyPermission;
+import com.palmergames.bukkit.towny.utils.PlayerCacheUtil;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+/**
+ * Protection by Towny's destroy permission
+ *
+ * Permissions are per town block at every height. With the default town block
+ * size of 16 a town block is a chunk, so one lookup answers for the whole
+ * chunk. The destroy permission is taken to be the same for every kind of glass.
+ * Without a player, only the wilderness outside towns may be broken.
+ */
+final class TownyProvider implements ProtectionProvider, Listener {
+    
+    private final IntegrationManager integrations;
+    
+    TownyProvider(IntegrationManager integrations) {
+        this.integrations = integrations;
+    }
+    
+    @Override
+    public String getName() {
+        return "Towny";
+    }
+    
+    @Override
+    public ChunkAccess checkChunk(Player player, World world, int chunkX, int chunkZ) {
+        if (TownySettings.getTownBlockSize() != 16) {
+            return ChunkAccess.MIXED;
+        }
+        Location corner = new Location(world, chunkX << 4, world.getMinHeight(), chunkZ << 4);
+        return canDestroy(player, corner, Material.GLASS) ? ChunkAccess.ALLOWED : ChunkAccess.DENIED;
+    }
+    
+    @Override
+    public boolean canBreak(Player player, World world, int x, int y, int z) {
+        Location location = new Location(world, x, y, z);
+        return canDestroy(player, location, world.getBlockAt(x, y, z).getType());
+    }
+    
+    @Override
+    public ChunkAccess checkChunk(World world, int chunkX, int chunkZ) {
+        if (TownySettings.getTownBlockSize() != 16) {
+            return ChunkAccess.MIXED;
+        }
+        Location corner = new Location(world, chunkX << 4, world.getMinHeight(), chunkZ << 4);
+        return TownyAPI.getInstance().isWilderness(corner) ? ChunkAccess.ALLOWED : ChunkAccess.DENIED;
+    }
+    
+    @Override
+    public boolean canBreak(World world, int x, int y, int z) {
+        return TownyAPI.getInstance().isWilderness(new Location(world, x, y, z));
+    }
+    
+    private boolean canDestroy(Player player, Location location, Material material) {
+        return PlayerCacheUtil.getCachePermission(player, location, material, TownyPermission.ActionType.DESTROY);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTownClaim(TownClaimEvent event) {
+        integrations.invalidateCache();
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTownUnclaim(TownUnclaimEvent event) {
+        integrations.invalidateCache();
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTownBlockSettingsChanged(TownBlockSettingsChangedEvent event) {
+        integrations.invalidateCache();
+    }
+}
@@ -0,0 +1,109 @@
+package com.actionglass.integrations;
+
+import com.actionglass.util.BlockKey;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldguard.LocalPlayer;
+import com.sk89q.worldguard.WorldGuard;
+import com.sk89q.worldguard.bukkit.WorldGuardPlugin;
+import com.sk89q.worldguard.domains.Association;
+import com.sk89q.worldguard.protection.association.Associables;
+import com.sk89q.worldguard.protection.association.RegionAssociable;
+import com.sk89q.worldguard.protection.flags.Flags;
+import com.sk89q.worldguard.protection.managers.RegionManager;
+import com.sk89q.worldguard.protection.regions.ProtectedCuboidRegion;
+import com.sk89q.worldguard.protection.regions.RegionContainer;
+import com.sk89q.worldguard.protection.regions.RegionQuery;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * Protection by WorldGuard regions and their block-break flag
+ *
+ * A chunk no region touches gets the answer of the world's global region for
+ * all of its blocks. Breaks without a player are checked as a non-member,
+ * the way WorldGuard checks mobs and dispensers. WorldGuard fires no event
+ * when regions change, so its answers are only refreshed when the cache expires.
+ */
+final class WorldGuardProvider implements ProtectionProvider {
+    
+    private static final RegionAssociable NON_MEMBER = Associables.constant(Association.NON_MEMBER);
+    
+    private final RegionContainer container = WorldGuard.getInstance().getPlatform().getRegionContainer();
+    
+    @Override
+    public String getName() {
+        return "WorldGuard";
+    }
+    
+    @Override
+    public ChunkAccess checkChunk(Player player, World world, int chunkX, int chunkZ) {
+        LocalPlayer localPlayer = WorldGuardPlugin.inst().wrapPlayer(player);
+        com.sk89q.worldedit.world.World weWorld = BukkitAdapter.adapt(world);
+        if (WorldGuard.getInstance().getPlatform().getSessionManager().hasBypass(localPlayer, weWorld)) {
+            return ChunkAccess.ALLOWED;
+        }
+        return checkChunk(localPlayer, world, weWorld, chunkX, chunkZ);
+    }
+    
+    @Override
+    public ChunkAccess checkChunk(World world, int chunkX, int chunkZ) {
+        return checkChunk(NON_MEMBER, world, BukkitAdapter.adapt(world), chunkX, chunkZ);
+    }
+    
+    private ChunkAccess checkChunk(RegionAssociable subject, World world, com.sk89q.worldedit.world.World weWorld, int chunkX, int chunkZ) {
+        RegionManager regions = container.get(weWorld);
+        if (regions == null) {
+            return ChunkAccess.ALLOWED;
+        }
+        
+        int minX = chunkX << 4;
+        int minZ = chunkZ << 4;
+        ProtectedCuboidRegion area = new ProtectedCuboidRegion("actionglass-chunk", true,
+                BlockVector3.at(minX, world.getMinHeight(), minZ), BlockVector3.at(minX + 15, world.getMaxHeight() - 1, minZ + 15));
+        if (regions.getApplicableRegions(area).size() > 0) {
+            return ChunkAccess.MIXED;
+        }
+        boolean allowed = container.createQuery().testBuild(BukkitAdapter.adapt(new Location(world, minX, world.getMinHeight(), minZ)),
+                subject, Flags.BLOCK_BREAK);
+        return allowed ? ChunkAccess.ALLOWED : ChunkAccess.DENIED;
+    }
+    
+    @Override
+    public boolean canBreak(Player player, World world, int x, int y, int z) {
+        return container.createQuery().testBuild(BukkitAdapter.adapt(new Location(world, x, y, z)),
+                WorldGuardPlugin.inst().wrapPlayer(player), Flags.BLOCK_BREAK);
+    }
+    
+    @Override
+    public boolean canBreak(World world, int x, int y, int z) {
+        return container.createQuery().testBuild(BukkitAdapter.adapt(new Location(world, x, y, z)), NON_MEMBER, Flags.BLOCK_BREAK);
+    }
+    
+    @Override
+    public void filter(Player player, World world, long[] keys, int count, boolean[] allowed) {
+        filter(WorldGuardPlugin.inst().wrapPlayer(player), world, keys, count, allowed);
+    }
+    
+    @Override
+    public void filter(World world, long[] keys, int count, boolean[] allowed) {
+        filter(NON_MEMBER, world, keys, count, allowed);
+    }
+    
+    private void filter(RegionAssociable subject, World world, long[] keys, int count, boolean[] allowed) {
+        // One query for the batch, so its cache of regions is shared between the blocks
+        RegionQuery query = container.createQuery();
+        Location location = new Location(world, 0, 0, 0);
+        for (int i = 0; i < count; i++) {
+            if (!allowed[i]) {
+                continue;
+            }
+            long key = keys[i];
+            location.setX(BlockKey.x(key));
+            location.setY(BlockKey.y(key));
+            location.setZ(BlockKey.z(key));
+            allowed[i] = query.testBuild(BukkitAdapter.adapt(location), subject, Flags.BLOCK_BREAK);
+        }
+    }
+}
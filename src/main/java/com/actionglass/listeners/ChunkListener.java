@@ -0,0 +1,31 @@
+package com.actionglass.listeners;
+
+import com.actionglass.ActionGlass;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+/**
+ * Keeps broken glass tracking in step with chunk loading
+ */
+public class ChunkListener implements Listener {
+    
+    private final ActionGlass plugin;
+    
+    public ChunkListener(ActionGlass plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        // Freshly generated chunks hold no saved glass but still need indexing
+        plugin.getGlassManager().onChunkLoad(event.getChunk());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        plugin.getGlassManager().onChunkUnload(event.getChunk(), event.isSaveChunk());
+    }
+}
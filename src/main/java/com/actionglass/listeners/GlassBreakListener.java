@@ -1,15 +1,19 @@
 package com.actionglass.listeners;
 
 import com.actionglass.ActionGlass;
+import com.actionglass.debug.Subsystem;
+import com.actionglass.managers.BreakCause;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 
 /**
- * Handles glass breaking events
+ * Handles glass breaking and placing events
  */
 public class GlassBreakListener implements Listener {
     
@@ -34,11 +38,27 @@ public class GlassBreakListener implements Listener {
         }
         
         // Let vanilla Minecraft handle punch breaking - no special mechanics
-        plugin.debug("Player " + player.getName() + " broke glass block normally at " + block.getLocation());
+        plugin.getTracer().debug(Subsystem.BREAKING, () -> "Player " + player.getName() + " broke glass block normally at " + block.getLocation());
         
         // Add to statistics if enabled
         if (plugin.getStatisticsManager() != null) {
-            plugin.getStatisticsManager().addGlassBreak(player);
+            plugin.getStatisticsManager().addGlassBreak(player, BreakCause.HAND, block.getWorld(), block.getType());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onGlassRemoved(BlockBreakEvent event) {
+        Block block = event.getBlock();
+        if (plugin.getGlassManager().isBreakableGlass(block.getType())) {
+            plugin.getGlassManager().onGlassRemoved(block);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        Block block = event.getBlockPlaced();
+        if (plugin.getGlassManager().isBreakableGlass(block.getType())) {
+            plugin.getGlassManager().onGlassPlaced(block);
         }
     }
 }
@@ -1,103 +1,229 @@
 package com.actionglass.listeners;
 
 import com.actionglass.ActionGlass;
+import com.actionglass.config.MaterialRegistry;
+import com.actionglass.debug.Subsystem;
+import com.actionglass.debug.TraceLevel;
+import com.actionglass.debug.Tracer;
+import com.actionglass.managers.BreakCause;
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.SweptVolume;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityPotionEffectEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.potion.PotionEffectType;
 import org.bukkit.util.Vector;
 
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Handles player movement and glass breaking mechanics
  */
 public class MovementListener implements Listener {
     
+    // Longest gap between sweeps that is bridged instead of starting afresh
+    private static final double MAX_SWEEP_GAP = 16.0;
+    
     private final ActionGlass plugin;
+    private final Tracer tracer;
+    private final Map<UUID, MovementState> states = new ConcurrentHashMap<>();
+    
+    // Scratch state per thread, since players in different Folia regions move concurrently
+    private final ThreadLocal<SweptVolume> sweptVolume = ThreadLocal.withInitial(SweptVolume::new);
+    private final ThreadLocal<PathBreaker> pathBreaker = ThreadLocal.withInitial(PathBreaker::new);
     
     public MovementListener(ActionGlass plugin) {
         this.plugin = plugin;
+        this.tracer = plugin.getTracer();
     }
     
     @EventHandler
     public void onPlayerMove(PlayerMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        
+        if (to == null) {
+            return;
+        }
+        
+        // Head rotation only
+        if (from.getX() == to.getX() && from.getY() == to.getY() && from.getZ() == to.getZ()) {
+            return;
+        }
+        
         if (!plugin.getConfigManager().isGlassBreakingEnabled()) {
             return;
         }
         
+        // Last resort of load shedding
+        if (plugin.getGlassManager().getLoadGovernor().getLevel().isMovementPaused()) {
+            return;
+        }
+        
         Player player = event.getPlayer();
-        Location from = event.getFrom();
-        Location to = event.getTo();
+        MovementState state = states.get(player.getUniqueId());
+        if (state == null) {
+            state = new MovementState();
+            states.put(player.getUniqueId(), state);
+        }
         
-        if (to == null) {
+        int modes = getActiveModes(player, state);
+        
+        // Calculate movement speed and velocity
+        double horizontalSpeed = 0;
+        double verticalSpeed = 0;
+        double totalSpeed = 0;
+        int fastModes = 0;
+        if (modes != 0) {
+            Vector velocity = player.getVelocity();
+            horizontalSpeed = Math.sqrt(velocity.getX() * velocity.getX() + velocity.getZ() * velocity.getZ());
+            verticalSpeed = Math.abs(velocity.getY());
+            totalSpeed = velocity.length();
+            fastModes = getFastModes(modes, totalSpeed, velocity.getY(), horizontalSpeed);
+        }
+        
+        // Same block, break modes and speed thresholds as last time: the scan would repeat itself
+        if (!state.update(to.getWorld(), to.getBlockX(), to.getBlockY(), to.getBlockZ(), modes, fastModes)) {
             return;
         }
         
-        // Calculate movement speed and velocity
-        Vector velocity = player.getVelocity();
-        double horizontalSpeed = Math.sqrt(velocity.getX() * velocity.getX() + velocity.getZ() * velocity.getZ());
-        double verticalSpeed = Math.abs(velocity.getY());
-        double totalSpeed = velocity.length();
+        if (modes == 0) {
+            state.clearSweep();
+            return;
+        }
         
-        plugin.debug("Player " + player.getName() + " - Total: " + String.format("%.2f", totalSpeed) + 
-                    ", Horizontal: " + String.format("%.2f", horizontalSpeed) + 
-                    ", Vertical: " + String.format("%.2f", verticalSpeed));
+        if (tracer.isEnabled(Subsystem.MOVEMENT, TraceLevel.TRACE)) {
+            tracer.trace(Subsystem.MOVEMENT, "Player " + player.getName() + " - Total: " + String.format("%.2f", totalSpeed) + 
+                        ", Horizontal: " + String.format("%.2f", horizontalSpeed) + 
+                        ", Vertical: " + String.format("%.2f", verticalSpeed));
+        }
         
         // Check different breaking conditions
-        checkElytraBreaking(player, to, totalSpeed);
-        checkFallBreaking(player, to, verticalSpeed);
-        checkSprintBreaking(player, to, horizontalSpeed);
+        if ((modes & MovementState.ELYTRA) != 0) {
+            checkElytraBreaking(player, state, from, to, totalSpeed, (fastModes & MovementState.ELYTRA) != 0);
+        }
+        if ((modes & MovementState.FALLING) != 0) {
+            checkFallBreaking(player, state, from, to, verticalSpeed, (fastModes & MovementState.FALLING) != 0);
+        }
+        if ((modes & MovementState.SPRINTING) != 0) {
+            checkSprintBreaking(player, state, from, to, horizontalSpeed, (fastModes & MovementState.SPRINTING) != 0);
+        }
+        
+        if (fastModes == 0) {
+            state.clearSweep();
+        }
     }
     
     /**
-     * Check for elytra-based glass breaking
+     * Work out which break modes could apply using only cheap player state
      */
-    private void checkElytraBreaking(Player player, Location location, double speed) {
-        if (!plugin.getConfigManager().isElytraBreakingEnabled()) {
-            return;
-        }
+    private int getActiveModes(Player player, MovementState state) {
+        int modes = 0;
         
-        if (!player.isGliding()) {
-            return;
+        if (plugin.getConfigManager().isElytraBreakingEnabled() && player.isGliding()) {
+            modes |= MovementState.ELYTRA;
         }
         
-        plugin.debug("Player " + player.getName() + " gliding at speed " + speed);
+        if (plugin.getConfigManager().isFallingBreakingEnabled()
+                && player.getFallDistance() >= plugin.getConfigManager().getFallBreakHeight()) {
+            modes |= MovementState.FALLING;
+        }
         
-        if (speed >= plugin.getConfigManager().getElytraMinSpeed()) {
-            plugin.debug("Elytra speed sufficient for glass breaking");
-            int radius = (int) Math.round(plugin.getConfigManager().getElytraBreakRadius());
-                        breakGlassInRadius(player, location, radius, "elytra");
+        // Sprint breaking requires speed effect (potion or beacon)
+        if (plugin.getConfigManager().isSprintingBreakingEnabled() && player.isSprinting()
+                && state.hasSpeed(player)) {
+            modes |= MovementState.SPRINTING;
         }
+        
+        return modes;
     }
     
     /**
-     * Check for fall-based glass breaking
+     * Work out which of the active break modes are fast enough for their movement's minimum speed
      */
-    private void checkFallBreaking(Player player, Location location, double verticalSpeed) {
-        if (!plugin.getConfigManager().isFallingBreakingEnabled()) {
-            return;
+    private int getFastModes(int modes, double totalSpeed, double velocityY, double horizontalSpeed) {
+        int fast = 0;
+        
+        if ((modes & MovementState.ELYTRA) != 0 && totalSpeed >= plugin.getConfigManager().getElytraMinSpeed()) {
+            fast |= MovementState.ELYTRA;
+        }
+        
+        // Falling needs a downward velocity as well
+        if ((modes & MovementState.FALLING) != 0 && velocityY < -0.3
+                && -velocityY >= plugin.getConfigManager().getFallingMinSpeed()) {
+            fast |= MovementState.FALLING;
         }
         
-        // Check if player is falling (negative Y velocity)
-        if (player.getVelocity().getY() >= -0.3) {
+        if ((modes & MovementState.SPRINTING) != 0 && horizontalSpeed >= plugin.getConfigManager().getSprintingMinSpeed()) {
+            fast |= MovementState.SPRINTING;
+        }
+        
+        return fast;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPotionEffect(EntityPotionEffectEvent event) {
+        if (!(event.getEntity() instanceof Player) || !PotionEffectType.SPEED.equals(event.getModifiedType())) {
             return;
         }
         
-        // Check fall distance
-        if (player.getFallDistance() < plugin.getConfigManager().getFallBreakHeight()) {
+        MovementState state = states.get(event.getEntity().getUniqueId());
+        if (state == null) {
             return;
         }
         
-        plugin.debug("Player " + player.getName() + " falling at speed " + verticalSpeed + 
-                    " from height " + player.getFallDistance());
+        switch (event.getAction()) {
+            case ADDED:
+            case CHANGED:
+                state.speedAdded();
+                break;
+            default:
+                state.speedRemoved();
+                break;
+        }
+    }
+    
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        states.remove(event.getPlayer().getUniqueId());
+    }
+    
+    /**
+     * Check for elytra-based glass breaking
+     */
+    private void checkElytraBreaking(Player player, MovementState state, Location from, Location to, double speed, boolean fast) {
+        if (tracer.isEnabled(Subsystem.MOVEMENT, TraceLevel.TRACE)) {
+            tracer.trace(Subsystem.MOVEMENT, "Player " + player.getName() + " gliding at speed " + speed);
+        }
         
-        if (verticalSpeed >= plugin.getConfigManager().getFallingMinSpeed()) {
-            plugin.debug("Fall speed sufficient for glass breaking");
-            int radius = (int) Math.round(plugin.getConfigManager().getFallingBreakRadius());
-            breakGlassInRadius(player, location, radius, "falling");
+        if (fast) {
+            tracer.trace(Subsystem.MOVEMENT, "Elytra speed sufficient for glass breaking");
+            breakGlass(player, state, from, to, plugin.getConfigManager().getElytraBreakRadius(), speed, BreakCause.ELYTRA);
+        }
+    }
+    
+    /**
+     * Check for fall-based glass breaking
+     */
+    private void checkFallBreaking(Player player, MovementState state, Location from, Location to, double verticalSpeed, boolean fast) {
+        if (tracer.isEnabled(Subsystem.MOVEMENT, TraceLevel.TRACE)) {
+            tracer.trace(Subsystem.MOVEMENT, "Player " + player.getName() + " falling at speed " + verticalSpeed + 
+                        " from height " + player.getFallDistance());
+        }
+        
+        if (fast) {
+            tracer.trace(Subsystem.MOVEMENT, "Fall speed sufficient for glass breaking");
+            breakGlass(player, state, from, to, plugin.getConfigManager().getFallingBreakRadius(), verticalSpeed, BreakCause.FALL);
         }
     }
     
@@ -105,64 +231,223 @@ public class MovementListener implements Listener {
      * Check for sprint-based glass breaking
      * Requires speed potion effect or beacon speed boost
      */
-    private void checkSprintBreaking(Player player, Location location, double horizontalSpeed) {
-        if (!plugin.getConfigManager().isSprintingBreakingEnabled()) {
+    private void checkSprintBreaking(Player player, MovementState state, Location from, Location to, double horizontalSpeed, boolean fast) {
+        if (tracer.isEnabled(Subsystem.MOVEMENT, TraceLevel.TRACE)) {
+            tracer.trace(Subsystem.MOVEMENT, "Player " + player.getName() + " sprinting with speed effect at speed " + horizontalSpeed);
+        }
+        
+        if (fast) {
+            tracer.trace(Subsystem.MOVEMENT, "Sprint speed sufficient for glass breaking");
+            breakGlass(player, state, from, to, plugin.getConfigManager().getSprintingBreakRadius(), horizontalSpeed, BreakCause.SPRINT);
+        }
+    }
+    
+    /**
+     * Break glass along the path of the player, or in a cube around their
+     * position when swept collision is disabled. The radius shrinks under load.
+     */
+    private void breakGlass(Player player, MovementState state, Location from, Location to, double radius, double speed, BreakCause cause) {
+        radius *= plugin.getGlassManager().getLoadGovernor().getLevel().getRadiusScale();
+        if (plugin.getConfigManager().isSweptCollisionEnabled()) {
+            breakGlassAlongPath(player, state, from, to, radius, speed, cause);
+        } else {
+            breakGlassInRadius(player, to, (int) Math.round(radius), speed, cause);
+        }
+    }
+    
+    /**
+     * Break glass in the capsule swept by the radius along the movement segment
+     */
+    private void breakGlassAlongPath(Player player, MovementState state, Location from, Location to, double radius, double speed, BreakCause cause) {
+        World world = to.getWorld();
+        
+        // Continue from where the last sweep ended so consecutive sweeps neither overlap nor leave gaps
+        boolean continues = state.continuesSweep(world, to.getX(), to.getY(), to.getZ(), radius, MAX_SWEEP_GAP);
+        double startX = continues ? state.getSweepX() : from.getX();
+        double startY = continues ? state.getSweepY() : from.getY();
+        double startZ = continues ? state.getSweepZ() : from.getZ();
+        
+        // Skip the sweep entirely when no section around the path holds glass
+        if (!plugin.getGlassManager().mayContainGlass(world,
+                (int) Math.floor(Math.min(startX, to.getX()) - radius), (int) Math.floor(Math.min(startY, to.getY()) - radius),
+                (int) Math.floor(Math.min(startZ, to.getZ()) - radius), (int) Math.floor(Math.max(startX, to.getX()) + radius),
+                (int) Math.floor(Math.max(startY, to.getY()) + radius), (int) Math.floor(Math.max(startZ, to.getZ()) + radius))) {
+            state.endSweep(world, to.getX(), to.getY(), to.getZ(), radius);
             return;
         }
         
-        if (!player.isSprinting()) {
+        if (plugin.getConfigManager().isAsyncProcessingEnabled()) {
+            plugin.getGlassManager().getGlassFinder().findAlongPath(world, startX, startY, startZ, to.getX(), to.getY(), to.getZ(),
+                    radius, continues, speed, getMinSpeed(cause), (found, keys, count) -> breakFoundGlass(player, found, keys, count, speed, cause));
+            state.endSweep(world, to.getX(), to.getY(), to.getZ(), radius);
             return;
         }
         
-        // Check if player has speed effect (potion or beacon)
-        if (!player.hasPotionEffect(PotionEffectType.SPEED)) {
-            plugin.debug("Player " + player.getName() + " sprinting but no speed effect");
+        PathBreaker breaker = pathBreaker.get();
+        breaker.begin(player, world, speed, cause);
+        int scanned = sweptVolume.get().sweep(startX, startY, startZ, to.getX(), to.getY(), to.getZ(), radius, continues, breaker);
+        int broken = breaker.end();
+        state.endSweep(world, to.getX(), to.getY(), to.getZ(), radius);
+        
+        if (broken > 0) {
+            if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.DEBUG)) {
+                tracer.debug(Subsystem.BREAKING, "Total glass blocks broken: " + broken + " of " + scanned + " swept by " + cause.getKey());
+            }
+        }
+    }
+    
+    /**
+     * Break the glass an async search found, checking again that each block can still be broken
+     */
+    private void breakFoundGlass(Player player, World world, long[] keys, int found, double speed, BreakCause cause) {
+        if (!player.isOnline()) {
             return;
         }
+        // Ask protection plugins about the whole batch at once
+        int count = plugin.getIntegrationManager() != null ? plugin.getIntegrationManager().filter(player, world, keys, found) : found;
+        int broken = 0;
+        for (int i = 0; i < count; i++) {
+            long key = keys[i];
+            if (tryBreakGlass(player, world.getBlockAt(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key)), speed, cause, true)) {
+                broken++;
+            }
+        }
+        
+        if (broken > 0) {
+            int total = broken;
+            if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.DEBUG)) {
+                tracer.debug(Subsystem.BREAKING, "Total glass blocks broken: " + total + " of " + found + " found by " + cause.getKey());
+            }
+        }
+    }
+    
+    /**
+     * Try to break a single block for a player
+     * 
+     * @param found whether the block was found by an async search, which already checked its thickness
+     * @return true if the block was glass and got broken
+     */
+    private boolean tryBreakGlass(Player player, Block block, double speed, BreakCause cause, boolean found) {
+        // Check if it's glass, fast enough for this material and can be broken
+        MaterialRegistry.Profile profile = plugin.getGlassManager().getMaterialProfile(block.getType());
+        if (profile == null || speed < getMinSpeed(cause) + profile.getMinSpeed() ||
+            !(found ? plugin.getGlassManager().canBreakFoundGlass(block) : plugin.getGlassManager().canBreakGlass(block, player))) {
+            return false;
+        }
+        
+        // Break the glass
+        Material material = block.getType();
+        plugin.getGlassManager().breakGlass(block);
         
-        plugin.debug("Player " + player.getName() + " sprinting with speed effect at speed " + horizontalSpeed);
+        // Add to statistics
+        if (plugin.getStatisticsManager() != null) {
+            plugin.getStatisticsManager().addGlassBreak(player, cause, block.getWorld(), material);
+        }
         
-        if (horizontalSpeed >= plugin.getConfigManager().getSprintingMinSpeed()) {
-            plugin.debug("Sprint speed sufficient for glass breaking");
-            int radius = (int) Math.round(plugin.getConfigManager().getSprintingBreakRadius());
-            breakGlassInRadius(player, location, radius, "sprinting");
+        if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.TRACE)) {
+            tracer.trace(Subsystem.BREAKING, "Glass broken at " + block.getX() + "," + block.getY() + "," + block.getZ() + " by " + player.getName() + " (" + cause.getKey() + ")");
+        }
+        return true;
+    }
+    
+    /**
+     * Get the speed a movement needs before any material's own minimum is added
+     */
+    private double getMinSpeed(BreakCause cause) {
+        switch (cause) {
+            case ELYTRA:
+                return plugin.getConfigManager().getElytraMinSpeed();
+            case FALL:
+                return plugin.getConfigManager().getFallingMinSpeed();
+            case SPRINT:
+                return plugin.getConfigManager().getSprintingMinSpeed();
+            default:
+                return plugin.getConfigManager().getMinimumSpeed();
+        }
+    }
+    
+    /**
+     * Visits the swept volume of one movement and breaks the glass in it
+     */
+    private final class PathBreaker implements SweptVolume.Visitor {
+        private Player player;
+        private World world;
+        private double speed;
+        private BreakCause cause;
+        private int minY;
+        private int maxY;
+        private int broken;
+        
+        void begin(Player player, World world, double speed, BreakCause cause) {
+            this.player = player;
+            this.world = world;
+            this.speed = speed;
+            this.cause = cause;
+            this.minY = world.getMinHeight();
+            this.maxY = world.getMaxHeight();
+            this.broken = 0;
+        }
+        
+        int end() {
+            player = null;
+            world = null;
+            return broken;
+        }
+        
+        @Override
+        public void visit(int x, int y, int z) {
+            if (y < minY || y >= maxY) {
+                return;
+            }
+            if (tryBreakGlass(player, world.getBlockAt(x, y, z), speed, cause, false)) {
+                broken++;
+            }
         }
     }
     
     /**
      * Break glass blocks in a radius around the player
      */
-    private void breakGlassInRadius(Player player, Location center, int radius, String method) {
-        plugin.debug("Breaking glass in radius " + radius + " around " + center + " (method: " + method + ")");
+    private void breakGlassInRadius(Player player, Location center, int radius, double speed, BreakCause cause) {
+        World world = center.getWorld();
+        int centerX = center.getBlockX();
+        int centerY = center.getBlockY();
+        int centerZ = center.getBlockZ();
+        
+        // Skip the scan entirely when no section in range holds glass
+        if (!plugin.getGlassManager().mayContainGlass(world, centerX - radius, centerY - radius, centerZ - radius,
+                centerX + radius, centerY + radius, centerZ + radius)) {
+            return;
+        }
+        
+        if (tracer.isEnabled(Subsystem.MOVEMENT, TraceLevel.TRACE)) {
+            tracer.trace(Subsystem.MOVEMENT, "Breaking glass in radius " + radius + " around " + center + " (cause: " + cause.getKey() + ")");
+        }
+        
+        if (plugin.getConfigManager().isAsyncProcessingEnabled()) {
+            plugin.getGlassManager().getGlassFinder().findInBox(world, centerX - radius, centerY - radius, centerZ - radius,
+                    centerX + radius, centerY + radius, centerZ + radius, speed, getMinSpeed(cause),
+                    (found, keys, count) -> breakFoundGlass(player, found, keys, count, speed, cause));
+            return;
+        }
         
         int glassCount = 0;
         for (int x = -radius; x <= radius; x++) {
             for (int y = -radius; y <= radius; y++) {
                 for (int z = -radius; z <= radius; z++) {
-                    Location blockLocation = center.clone().add(x, y, z);
-                    Block block = blockLocation.getBlock();
-                    
-                    // Check if it's glass and can be broken
-                    if (plugin.getGlassManager().isBreakableGlass(block.getType()) &&
-                        plugin.getGlassManager().canBreakGlass(block, player)) {
-                        
-                        // Break the glass
-                        plugin.getGlassManager().breakGlass(blockLocation);
+                    Block block = world.getBlockAt(centerX + x, centerY + y, centerZ + z);
+                    if (tryBreakGlass(player, block, speed, cause, false)) {
                         glassCount++;
-                        
-                        // Add to statistics
-                        if (plugin.getStatisticsManager() != null) {
-                            plugin.getStatisticsManager().addGlassBreak(player);
-                        }
-                        
-                        plugin.debug("Glass broken at " + blockLocation.toString() + " by " + player.getName() + " (" + method + ")");
                     }
                 }
             }
         }
         
         if (glassCount > 0) {
-            plugin.debug("Total glass blocks broken: " + glassCount + " by " + method);
+            int broken = glassCount;
+            if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.DEBUG)) {
+                tracer.debug(Subsystem.BREAKING, "Total glass blocks broken: " + broken + " by " + cause.getKey());
+            }
         }
     }
 }
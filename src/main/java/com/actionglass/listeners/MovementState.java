@@ -0,0 +1,122 @@
+package com.actionglass.listeners;
+
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.potion.PotionEffectType;
+
+/**
+ * Per-player state used to skip movement events that can't change the outcome
+ */
+class MovementState {
+    
+    static final int ELYTRA = 1;
+    static final int FALLING = 1 << 1;
+    static final int SPRINTING = 1 << 2;
+    
+    private World world;
+    private int blockX = Integer.MIN_VALUE;
+    private int blockY;
+    private int blockZ;
+    private int modes;
+    private int fastModes;
+    
+    private boolean speedKnown;
+    private boolean hasSpeed;
+    
+    private World sweepWorld;
+    private double sweepX;
+    private double sweepY;
+    private double sweepZ;
+    private double sweepRadius;
+    
+    /**
+     * Record the block position, active break modes and the modes fast enough
+     * to break glass of a move
+     * 
+     * @return false if all are the same as the last evaluated move
+     */
+    boolean update(World world, int x, int y, int z, int modes, int fastModes) {
+        if (x == blockX && y == blockY && z == blockZ && modes == this.modes && fastModes == this.fastModes && world == this.world) {
+            return false;
+        }
+        this.world = world;
+        this.blockX = x;
+        this.blockY = y;
+        this.blockZ = z;
+        this.modes = modes;
+        this.fastModes = fastModes;
+        return true;
+    }
+    
+    /**
+     * Check for a speed effect, polling the player only after the cached
+     * state was invalidated
+     */
+    boolean hasSpeed(Player player) {
+        if (!speedKnown) {
+            hasSpeed = player.hasPotionEffect(PotionEffectType.SPEED);
+            speedKnown = true;
+        }
+        return hasSpeed;
+    }
+    
+    /**
+     * A speed effect was added or changed
+     */
+    void speedAdded() {
+        hasSpeed = true;
+        speedKnown = true;
+    }
+    
+    /**
+     * A speed effect was removed; another source (e.g. a beacon) may still
+     * apply, so poll again on next use
+     */
+    void speedRemoved() {
+        speedKnown = false;
+    }
+    
+    /**
+     * Check if a new sweep can start where the last one ended, which is only
+     * worthwhile if that sweep was at least as wide and the gap is small
+     */
+    boolean continuesSweep(World world, double x, double y, double z, double radius, double maxGap) {
+        if (sweepWorld != world || sweepRadius < radius) {
+            return false;
+        }
+        double dx = x - sweepX;
+        double dy = y - sweepY;
+        double dz = z - sweepZ;
+        return dx * dx + dy * dy + dz * dz <= maxGap * maxGap;
+    }
+    
+    double getSweepX() {
+        return sweepX;
+    }
+    
+    double getSweepY() {
+        return sweepY;
+    }
+    
+    double getSweepZ() {
+        return sweepZ;
+    }
+    
+    /**
+     * Remember where a sweep ended
+     */
+    void endSweep(World world, double x, double y, double z, double radius) {
+        this.sweepWorld = world;
+        this.sweepX = x;
+        this.sweepY = y;
+        this.sweepZ = z;
+        this.sweepRadius = radius;
+    }
+    
+    /**
+     * Forget the last sweep once the player stops breaking glass
+     */
+    void clearSweep() {
+        sweepWorld = null;
+    }
+}
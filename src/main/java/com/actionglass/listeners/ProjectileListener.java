@@ -1,23 +1,25 @@
 package com.actionglass.listeners;
 
 import com.actionglass.ActionGlass;
+import com.actionglass.config.MaterialRegistry;
+import com.actionglass.debug.Subsystem;
+import com.actionglass.managers.BreakCause;
+import com.actionglass.managers.StatisticsManager;
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.FloodFill;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Arrow;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
 import org.bukkit.entity.Trident;
 import org.bukkit.entity.WindCharge;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.ProjectileHitEvent;
-import org.bukkit.scheduler.BukkitRunnable;
-
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
 
 /**
  * Handles projectile impacts with glass
@@ -26,6 +28,10 @@ public class ProjectileListener implements Listener {
     
     private final ActionGlass plugin;
     
+    // Scratch state per thread, since projectiles in different Folia regions land concurrently
+    private final ThreadLocal<FloodFill> floodFill = ThreadLocal.withInitial(FloodFill::new);
+    private final ThreadLocal<WindowFilter> windowFilter = ThreadLocal.withInitial(WindowFilter::new);
+    
     public ProjectileListener(ActionGlass plugin) {
         this.plugin = plugin;
     }
@@ -50,95 +56,140 @@ public class ProjectileListener implements Listener {
             return;
         }
         
-        // Check if hit block is glass
-        if (!plugin.getGlassManager().isBreakableGlass(hitBlock.getType())) {
+        // Check if hit block is glass and the projectile is fast enough to break it
+        MaterialRegistry.Profile profile = plugin.getGlassManager().getMaterialProfile(hitBlock.getType());
+        if (profile == null || projectile.getVelocity().length() < plugin.getConfigManager().getMinimumSpeed() + profile.getMinSpeed()) {
+            return;
+        }
+        
+        // Protection plugins are asked on behalf of the shooter; without one, only glass outside protected areas breaks
+        Player shooter = projectile.getShooter() instanceof Player ? (Player) projectile.getShooter() : null;
+        
+        // Let an async search find the window from snapshots, then break it once found
+        if (plugin.getConfigManager().isAsyncProcessingEnabled()) {
+            Material glassType = hitBlock.getType();
+            plugin.getGlassManager().getGlassFinder().findConnected(hitBlock.getWorld(), hitBlock.getX(), hitBlock.getY(), hitBlock.getZ(),
+                    glassType, plugin.getConfigManager().getMaxChainBreakSize(),
+                    (world, keys, count) -> breakFoundWindow(projectile, shooter, world, keys, count, glassType));
             return;
         }
         
         // Check if glass can be broken (single thickness, permissions, etc.)
-        if (!plugin.getGlassManager().canBreakGlass(hitBlock, null)) {
+        if (!plugin.getGlassManager().canBreakGlass(hitBlock, shooter)) {
             return;
         }
         
-        plugin.debug("Projectile " + projectile.getType() + " hit glass at " + hitBlock.getLocation());
+        plugin.getTracer().debug(Subsystem.PROJECTILES, () -> "Projectile " + projectile.getType() + " hit glass at " + hitBlock.getLocation());
         
         // Find all connected glass blocks (window structure)
-        Set<Block> glassStructure = findConnectedGlass(hitBlock);
-        
-        // Break all glass in the structure
-        for (Block glassBlock : glassStructure) {
-            plugin.getGlassManager().breakGlass(glassBlock.getLocation());
+        long start = plugin.getGlassManager().getBlockKey(hitBlock);
+        if (start == BlockKey.EMPTY) {
+            return;
         }
+        World world = hitBlock.getWorld();
+        FloodFill fill = floodFill.get();
+        WindowFilter filter = windowFilter.get();
+        filter.begin(world, hitBlock.getType(), shooter);
+        int count = fill.fill(start, plugin.getConfigManager().getMaxChainBreakSize(), filter);
+        filter.end();
+        plugin.getTracer().debug(Subsystem.PROJECTILES, () -> "Found connected glass structure with " + count + " blocks");
         
-        // Make projectile fall after a short delay
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (projectile.isValid() && !projectile.isDead()) {
-                    // Remove the projectile from being stuck and let it fall
-                    if (projectile.isValid() && !projectile.isDead()) {
-            org.bukkit.util.Vector currentVel = projectile.getVelocity();
-            org.bukkit.util.Vector randomVel = new org.bukkit.util.Vector(
-                (Math.random() - 0.5) * 0.2,
-                -0.1, // Small downward velocity
-                (Math.random() - 0.5) * 0.2
-            );
-            projectile.setVelocity(currentVel.add(randomVel));
-        }
-                    projectile.setGravity(true);
-                }
+        // Break all glass in the structure, counting it for the shooter
+        Material glassType = hitBlock.getType();
+        StatisticsManager statistics = shooter != null ? plugin.getStatisticsManager() : null;
+        for (int i = 0; i < count; i++) {
+            long key = fill.keyAt(i);
+            plugin.getGlassManager().breakGlass(world.getBlockAt(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key)));
+            if (statistics != null) {
+                statistics.addGlassBreak(shooter, BreakCause.PROJECTILE, world, glassType);
             }
-        }.runTaskLater(plugin, 5L); // 5 ticks delay
+        }
+        
+        dropProjectile(projectile);
     }
     
     /**
-     * Find all glass blocks connected to the hit block (flood fill algorithm)
+     * Break the window an async search found, checking again that each block
+     * is still the same glass and can be broken
      */
-    private Set<Block> findConnectedGlass(Block startBlock) {
-        Set<Block> visited = new HashSet<>();
-        List<Block> toCheck = new ArrayList<>();
-        toCheck.add(startBlock);
+    private void breakFoundWindow(Projectile projectile, Player shooter, World world, long[] keys, int found, Material glassType) {
+        plugin.getTracer().debug(Subsystem.PROJECTILES, () -> "Projectile " + projectile.getType() + " found connected glass structure with " + found + " blocks");
         
-        Material glassType = startBlock.getType();
-        
-        while (!toCheck.isEmpty()) {
-            Block current = toCheck.remove(0);
-            
-            if (visited.contains(current)) {
+        // The shooter left, so protection can no longer be checked for them
+        if (shooter != null && !shooter.isOnline()) {
+            return;
+        }
+        // Ask protection plugins about the whole window at once
+        int count = plugin.getIntegrationManager() != null ? plugin.getIntegrationManager().filter(shooter, world, keys, found) : found;
+        StatisticsManager statistics = shooter != null ? plugin.getStatisticsManager() : null;
+        int broken = 0;
+        for (int i = 0; i < count; i++) {
+            long key = keys[i];
+            Block block = world.getBlockAt(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key));
+            if (block.getType() != glassType || !plugin.getGlassManager().canBreakFoundGlass(block)) {
                 continue;
             }
-            
-            if (!plugin.getGlassManager().isBreakableGlass(current.getType())) {
-                continue;
+            plugin.getGlassManager().breakGlass(block);
+            broken++;
+            if (statistics != null) {
+                statistics.addGlassBreak(shooter, BreakCause.PROJECTILE, world, glassType);
+            }
+        }
+        
+        if (broken > 0) {
+            dropProjectile(projectile);
+        }
+    }
+    
+    /**
+     * Make a projectile fall after a short delay, on the thread owning it wherever it is by then
+     */
+    private void dropProjectile(Projectile projectile) {
+        plugin.getTaskScheduler().runLater(projectile, () -> {
+            if (projectile.isValid() && !projectile.isDead()) {
+                // Remove the projectile from being stuck and let it fall
+                org.bukkit.util.Vector currentVel = projectile.getVelocity();
+                org.bukkit.util.Vector randomVel = new org.bukkit.util.Vector(
+                    (Math.random() - 0.5) * 0.2,
+                    -0.1, // Small downward velocity
+                    (Math.random() - 0.5) * 0.2
+                );
+                projectile.setVelocity(currentVel.add(randomVel));
+                projectile.setGravity(true);
             }
+        }, 5L); // 5 ticks delay
+    }
+    
+    /**
+     * Accepts the blocks of a window: glass of the hit block's type the shooter may break
+     */
+    private final class WindowFilter implements FloodFill.Filter {
+        private World world;
+        private Material glassType;
+        private Player shooter;
+        
+        void begin(World world, Material glassType, Player shooter) {
+            this.world = world;
+            this.glassType = glassType;
+            this.shooter = shooter;
+        }
+        
+        void end() {
+            world = null;
+            shooter = null;
+        }
+        
+        @Override
+        public boolean accept(long key) {
+            Block block = world.getBlockAt(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key));
             
             // Only break same type of glass (don't mix different glass types)
-            if (current.getType() != glassType) {
-                continue;
+            if (block.getType() != glassType) {
+                return false;
             }
             
             // Check if this glass block can be broken
-            if (!plugin.getGlassManager().canBreakGlass(current, null)) {
-                continue;
-            }
-            
-            visited.add(current);
-            
-            // Add adjacent blocks to check (6 directions)
-            toCheck.add(current.getRelative(0, 1, 0));   // Up
-            toCheck.add(current.getRelative(0, -1, 0));  // Down
-            toCheck.add(current.getRelative(1, 0, 0));   // East
-            toCheck.add(current.getRelative(-1, 0, 0));  // West
-            toCheck.add(current.getRelative(0, 0, 1));   // South
-            toCheck.add(current.getRelative(0, 0, -1));  // North
-            
-            // Limit the size to prevent breaking massive structures
-            if (visited.size() > 64) { // Max 64 blocks per window
-                break;
-            }
+            return plugin.getGlassManager().canBreakGlass(block, shooter);
         }
-        
-        plugin.debug("Found connected glass structure with " + visited.size() + " blocks");
-        return visited;
     }
 }
@@ -0,0 +1,357 @@
+package com.actionglass.managers;
+
+import com.actionglass.ActionGlass;
+import com.actionglass.config.MaterialRegistry;
+import com.actionglass.scheduler.TaskScheduler;
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.FloodFill;
+import com.actionglass.util.LongHashSet;
+import com.actionglass.util.LongObjectHashMap;
+import com.actionglass.util.SweptVolume;
+import com.actionglass.util.WorldIndex;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+/**
+ * Finds the glass to break on an async thread, from chunk snapshots
+ *
+ * The thread owning the blocks only captures snapshots of the chunks a search
+ * needs and later breaks what was found. Block types, the thickness rule and
+ * connectivity are all worked out off that thread. Snapshots are reused for
+ * the rest of the tick they were captured in, so players moving through the
+ * same chunks share them. The world may change while a search runs, so
+ * callers check again that each found block is still the same breakable glass.
+ */
+public final class AsyncGlassFinder {
+    
+    /**
+     * Receives the blocks a search found, on the thread owning them
+     */
+    public interface Callback {
+        void found(World world, long[] keys, int count);
+    }
+    
+    // Blocks along each axis the thickness rule looks at
+    private static final int REACH = 2;
+    
+    // Times a connected search may capture the chunks it ran into before the rest count as missing
+    private static final int MAX_ROUNDS = 3;
+    
+    private static final int MAX_CACHED_SNAPSHOTS = 64;
+    
+    private final ActionGlass plugin;
+    private final GlassManager manager;
+    private final TaskScheduler scheduler;
+    private final WorldIndex worlds;
+    private final ThreadLocal<SnapshotCache> snapshots = ThreadLocal.withInitial(SnapshotCache::new);
+    private final ThreadLocal<FloodFill> floodFill = ThreadLocal.withInitial(FloodFill::new);
+    private final ThreadLocal<SweptVolume> sweptVolume = ThreadLocal.withInitial(SweptVolume::new);
+    
+    AsyncGlassFinder(ActionGlass plugin, GlassManager manager, WorldIndex worlds) {
+        this.plugin = plugin;
+        this.manager = manager;
+        this.scheduler = plugin.getTaskScheduler();
+        this.worlds = worlds;
+    }
+    
+    /**
+     * Find the glass in a box that is fast enough to break and single thickness
+     *
+     * @param minSpeed speed the movement needs before any material's own minimum is added
+     */
+    public void findInBox(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, double speed, double minSpeed, Callback callback) {
+        Job job = new Job(world, minX, minZ, maxX, maxZ, callback) {
+            @Override
+            void search() {
+                for (int x = minX; x <= maxX; x++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        for (int z = minZ; z <= maxZ; z++) {
+                            visitBreakable(x, y, z, speed, minSpeed);
+                        }
+                    }
+                }
+            }
+        };
+        start(job);
+    }
+    
+    /**
+     * Find the glass in the capsule swept by a radius along a segment that is
+     * fast enough to break and single thickness
+     *
+     * @param continues whether the segment continues the previous sweep, see {@link SweptVolume}
+     * @param minSpeed speed the movement needs before any material's own minimum is added
+     */
+    public void findAlongPath(World world, double ax, double ay, double az, double bx, double by, double bz,
+                              double radius, boolean continues, double speed, double minSpeed, Callback callback) {
+        Job job = new Job(world, (int) Math.floor(Math.min(ax, bx) - radius), (int) Math.floor(Math.min(az, bz) - radius),
+                (int) Math.floor(Math.max(ax, bx) + radius), (int) Math.floor(Math.max(az, bz) + radius), callback) {
+            @Override
+            void search() {
+                sweptVolume.get().sweep(ax, ay, az, bx, by, bz, radius, continues, (x, y, z) -> visitBreakable(x, y, z, speed, minSpeed));
+            }
+        };
+        start(job);
+    }
+    
+    /**
+     * Find the single thickness glass of one material connected to a block,
+     * up to a limit
+     */
+    public void findConnected(World world, int x, int y, int z, Material material, int limit, Callback callback) {
+        long start = manager.keyOf(world, x, y, z);
+        if (start == BlockKey.EMPTY) {
+            return;
+        }
+        Job job = new Job(world, x, z, x, z, callback) {
+            @Override
+            void search() {
+                FloodFill fill = floodFill.get();
+                int count = fill.fill(start, limit, key -> {
+                    int bx = BlockKey.x(key);
+                    int by = BlockKey.y(key);
+                    int bz = BlockKey.z(key);
+                    return view.type(bx, by, bz) == material && view.isSingleThickness(bx, by, bz);
+                });
+                for (int i = 0; i < count; i++) {
+                    add(fill.keyAt(i));
+                }
+            }
+        };
+        start(job);
+    }
+    
+    /**
+     * Capture the chunks a job starts with and hand it to an async thread
+     */
+    private void start(Job job) {
+        if (job.view.worldIndex < 0) {
+            return;
+        }
+        for (int cx = (job.minX - REACH) >> 4; cx <= (job.maxX + REACH) >> 4; cx++) {
+            for (int cz = (job.minZ - REACH) >> 4; cz <= (job.maxZ + REACH) >> 4; cz++) {
+                capture(job.view, cx, cz);
+            }
+        }
+        submit(job);
+    }
+    
+    private void submit(Job job) {
+        scheduler.runAsync(() -> {
+            job.count = 0;
+            job.view.missing.clear();
+            job.search();
+            
+            // Connected glass reached chunks that were not captured: capture them and search again
+            if (!job.view.missing.isEmpty() && job.rounds < MAX_ROUNDS) {
+                job.rounds++;
+                scheduler.runAt(job.world, job.chunkX, job.chunkZ, () -> {
+                    captureMissing(job);
+                    submit(job);
+                });
+            } else {
+                scheduler.runAt(job.world, job.chunkX, job.chunkZ, () -> deliver(job));
+            }
+        });
+    }
+    
+    private void captureMissing(Job job) {
+        int count = job.view.missing.size();
+        long[] missing = job.view.missing.toArray(new long[count]);
+        for (int i = 0; i < count; i++) {
+            capture(job.view, BlockKey.chunkX(missing[i]), BlockKey.chunkZ(missing[i]));
+        }
+    }
+    
+    /**
+     * Add a snapshot of a chunk to a view, or note that it cannot be read from this thread
+     */
+    private void capture(SnapshotView view, int chunkX, int chunkZ) {
+        long chunkKey = BlockKey.chunkKey(view.worldIndex, chunkX, chunkZ);
+        if (view.chunks.containsKey(chunkKey) || view.absent.contains(chunkKey)) {
+            return;
+        }
+        
+        // Never load chunks or read ones another region owns; their blocks count as not glass
+        World world = view.world;
+        if (!world.isChunkLoaded(chunkX, chunkZ) || !scheduler.isOwnedByCurrentThread(world, chunkX, chunkZ)) {
+            view.absent.add(chunkKey);
+            return;
+        }
+        
+        SnapshotCache cache = snapshots.get();
+        long tick = manager.currentTick();
+        if (cache.tick != tick || cache.snapshots.size() >= MAX_CACHED_SNAPSHOTS) {
+            cache.snapshots.clear();
+            cache.tick = tick;
+        }
+        ChunkSnapshot snapshot = cache.snapshots.get(chunkKey);
+        if (snapshot == null) {
+            snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+            cache.snapshots.put(chunkKey, snapshot);
+        }
+        view.chunks.put(chunkKey, snapshot);
+    }
+    
+    /**
+     * Pass the blocks of a finished job to its callback, leaving out those in
+     * chunks that unloaded or moved to another region meanwhile
+     */
+    private void deliver(Job job) {
+        World world = job.world;
+        if (job.count == 0 || worlds.world(job.view.worldIndex) != world) {
+            return;
+        }
+        long[] found = job.found;
+        int kept = 0;
+        long lastChunk = BlockKey.EMPTY;
+        boolean readable = false;
+        for (int i = 0; i < job.count; i++) {
+            long key = found[i];
+            long chunkKey = BlockKey.chunkKey(key);
+            if (chunkKey != lastChunk) {
+                lastChunk = chunkKey;
+                int cx = BlockKey.chunkX(chunkKey);
+                int cz = BlockKey.chunkZ(chunkKey);
+                readable = world.isChunkLoaded(cx, cz) && scheduler.isOwnedByCurrentThread(world, cx, cz);
+            }
+            if (readable) {
+                found[kept++] = key;
+            }
+        }
+        if (kept > 0) {
+            job.callback.found(world, found, kept);
+        }
+    }
+    
+    /**
+     * A search, with the snapshots captured for it and the blocks it found
+     */
+    private abstract class Job {
+        final World world;
+        final int minX;
+        final int minZ;
+        final int maxX;
+        final int maxZ;
+        final int chunkX;
+        final int chunkZ;
+        final Callback callback;
+        final SnapshotView view;
+        final MaterialRegistry materials;
+        long[] found = new long[16];
+        int count;
+        int rounds;
+        
+        Job(World world, int minX, int minZ, int maxX, int maxZ, Callback callback) {
+            this.world = world;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+            this.chunkX = (minX + maxX) >> 5;
+            this.chunkZ = (minZ + maxZ) >> 5;
+            this.callback = callback;
+            this.materials = plugin.getConfigManager().getMaterialRegistry();
+            this.view = new SnapshotView(world, worlds.indexOf(world), materials);
+        }
+        
+        /**
+         * Look for the blocks, adding them with {@link #add(long)}. Runs on an async thread.
+         */
+        abstract void search();
+        
+        /**
+         * Add a block if it is glass fast enough to break and single thickness
+         */
+        void visitBreakable(int x, int y, int z, double speed, double minSpeed) {
+            if (!BlockKey.fits(x, y, z)) {
+                return;
+            }
+            Material type = view.type(x, y, z);
+            MaterialRegistry.Profile profile = type != null ? materials.getProfile(type) : null;
+            if (profile != null && speed >= minSpeed + profile.getMinSpeed() && view.isSingleThickness(x, y, z)) {
+                add(BlockKey.pack(view.worldIndex, x, y, z));
+            }
+        }
+        
+        void add(long key) {
+            if (count == found.length) {
+                long[] grown = new long[count << 1];
+                System.arraycopy(found, 0, grown, 0, count);
+                found = grown;
+            }
+            found[count++] = key;
+        }
+    }
+    
+    /**
+     * Reads blocks from the snapshots captured for a search
+     */
+    static final class SnapshotView {
+        final World world;
+        final int worldIndex;
+        final int minY;
+        final int maxY;
+        final MaterialRegistry materials;
+        final LongObjectHashMap<ChunkSnapshot> chunks = new LongObjectHashMap<>();
+        
+        // Chunks that cannot be captured, and chunks the last search needed but were not captured yet
+        final LongHashSet absent = new LongHashSet();
+        final LongHashSet missing = new LongHashSet();
+        
+        SnapshotView(World world, int worldIndex, MaterialRegistry materials) {
+            this.world = world;
+            this.worldIndex = worldIndex;
+            this.minY = world.getMinHeight();
+            this.maxY = world.getMaxHeight();
+            this.materials = materials;
+        }
+        
+        /**
+         * Get the type of a block
+         *
+         * @return the type, or null if the block is outside the world or its chunk was not captured
+         */
+        Material type(int x, int y, int z) {
+            if (y < minY || y >= maxY) {
+                return null;
+            }
+            long chunkKey = BlockKey.chunkKey(worldIndex, x >> 4, z >> 4);
+            ChunkSnapshot snapshot = chunks.get(chunkKey);
+            if (snapshot == null) {
+                if (!absent.contains(chunkKey)) {
+                    missing.add(chunkKey);
+                }
+                return null;
+            }
+            return snapshot.getBlockType(x & 15, y, z & 15);
+        }
+        
+        boolean isGlass(int x, int y, int z) {
+            Material type = type(x, y, z);
+            return type != null && materials.isBreakable(type);
+        }
+        
+        /**
+         * Check if glass is only 1 block thick in every direction, the same rule
+         * the thread owning the blocks applies
+         */
+        boolean isSingleThickness(int x, int y, int z) {
+            return !(isGlass(x, y + 1, z) && isGlass(x, y + 2, z))
+                    && !(isGlass(x, y - 1, z) && isGlass(x, y - 2, z))
+                    && !(isGlass(x + 1, y, z) && isGlass(x + 2, y, z))
+                    && !(isGlass(x - 1, y, z) && isGlass(x - 2, y, z))
+                    && !(isGlass(x, y, z + 1) && isGlass(x, y, z + 2))
+                    && !(isGlass(x, y, z - 1) && isGlass(x, y, z - 2));
+        }
+    }
+    
+    /**
+     * Snapshots captured by one thread during the current tick
+     */
+    private static final class SnapshotCache {
+        final LongObjectHashMap<ChunkSnapshot> snapshots = new LongObjectHashMap<>();
+        long tick = -1;
+    }
+}
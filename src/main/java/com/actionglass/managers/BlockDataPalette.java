@@ -0,0 +1,56 @@
+package com.actionglass.managers;
+
+import org.bukkit.block.data.BlockData;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns block data so broken glass records can reference it by a small id
+ *
+ * Glass only has a few hundred distinct states (colour x pane connections),
+ * so the palette stays tiny while every record shrinks to a single int. One
+ * palette is shared by every partition, so ids mean the same everywhere;
+ * reads don't lock and only adding a new state does.
+ */
+class BlockDataPalette {
+    
+    private final Map<BlockData, Integer> ids = new ConcurrentHashMap<>();
+    private volatile BlockData[] states = new BlockData[16];
+    private int size;
+    
+    /**
+     * Get the id of a block state, adding it to the palette if needed
+     */
+    int idOf(BlockData blockData) {
+        Integer id = ids.get(blockData);
+        return id != null ? id : add(blockData);
+    }
+    
+    private synchronized int add(BlockData blockData) {
+        Integer id = ids.get(blockData);
+        if (id != null) {
+            return id;
+        }
+        BlockData[] grown = size < states.length ? states : Arrays.copyOf(states, size << 1);
+        int assigned = size++;
+        BlockData copy = blockData.clone();
+        grown[assigned] = copy;
+        // Publish the state before its id can be seen
+        states = grown;
+        ids.put(copy, assigned);
+        return assigned;
+    }
+    
+    /**
+     * Get the block state for an id
+     */
+    BlockData get(int id) {
+        return states[id];
+    }
+    
+    synchronized int size() {
+        return size;
+    }
+}
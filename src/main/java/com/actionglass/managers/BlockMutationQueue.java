@@ -0,0 +1,190 @@
+package com.actionglass.managers;
+
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.WorldIndex;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Queue of block changes from breaking and regeneration, applied each tick
+ * under a time budget
+ *
+ * Changes are grouped by chunk section and sections are drained in the order
+ * they were first queued, so consecutive changes touch the same section and
+ * a large shatter is spread over as many ticks as the budget needs. Changes
+ * to one section keep their order. Callers flush a chunk before it unloads;
+ * changes that still find their chunk unloaded are dropped, leaving the block
+ * tracked until regeneration settles it after the chunk loads again.
+ * Only used by the thread owning its partition.
+ */
+final class BlockMutationQueue {
+    
+    /**
+     * Applies one queued change
+     */
+    interface Applier {
+        void apply(World world, long key, BlockData data, boolean restore);
+    }
+    
+    // Always make some progress, even if a tick starts over budget
+    private static final int MIN_PER_DRAIN = 16;
+    private static final int CLOCK_INTERVAL = 8;
+    
+    private static final class Section {
+        final long key;
+        long[] keys = new long[16];
+        BlockData[] data = new BlockData[16];
+        boolean[] restore = new boolean[16];
+        int size;
+        int next;
+        
+        Section(long key) {
+            this.key = key;
+        }
+        
+        void add(long blockKey, BlockData blockData, boolean isRestore) {
+            if (size == keys.length) {
+                int capacity = size << 1;
+                long[] grownKeys = new long[capacity];
+                BlockData[] grownData = new BlockData[capacity];
+                boolean[] grownRestore = new boolean[capacity];
+                System.arraycopy(keys, 0, grownKeys, 0, size);
+                System.arraycopy(data, 0, grownData, 0, size);
+                System.arraycopy(restore, 0, grownRestore, 0, size);
+                keys = grownKeys;
+                data = grownData;
+                restore = grownRestore;
+            }
+            keys[size] = blockKey;
+            data[size] = blockData;
+            restore[size] = isRestore;
+            size++;
+        }
+    }
+    
+    private final WorldIndex worlds;
+    private final Applier applier;
+    private final Map<Long, Section> sections = new HashMap<>();
+    private final ArrayDeque<Section> order = new ArrayDeque<>();
+    private int pending;
+    
+    BlockMutationQueue(WorldIndex worlds, Applier applier) {
+        this.worlds = worlds;
+        this.applier = applier;
+    }
+    
+    /**
+     * Queue a block to be broken, with the data it had when it was broken
+     */
+    void queueBreak(long key, BlockData original) {
+        queue(key, original, false);
+    }
+    
+    /**
+     * Queue a block to be restored to its original data
+     */
+    void queueRestore(long key, BlockData original) {
+        queue(key, original, true);
+    }
+    
+    private void queue(long key, BlockData data, boolean restore) {
+        long sectionKey = BlockKey.pack(BlockKey.world(key), BlockKey.x(key) & ~15, BlockKey.y(key) & ~15, BlockKey.z(key) & ~15);
+        Section section = sections.get(sectionKey);
+        if (section == null) {
+            section = new Section(sectionKey);
+            sections.put(sectionKey, section);
+            order.add(section);
+        }
+        section.add(key, data, restore);
+        pending++;
+    }
+    
+    /**
+     * Apply queued changes until the budget is used up
+     *
+     * @return the number of changes applied
+     */
+    int drain(long budgetNanos) {
+        if (pending == 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int applied = 0;
+        Section section;
+        while ((section = order.peek()) != null) {
+            World world = worlds.world(BlockKey.world(section.key));
+            boolean loaded = world != null && world.isChunkLoaded(BlockKey.chunkX(section.key), BlockKey.chunkZ(section.key));
+            while (section.next < section.size) {
+                int i = section.next++;
+                if (loaded) {
+                    applier.apply(world, section.keys[i], section.data[i], section.restore[i]);
+                }
+                section.data[i] = null;
+                pending--;
+                applied++;
+                if (applied >= MIN_PER_DRAIN && applied % CLOCK_INTERVAL == 0
+                        && System.nanoTime() - start >= budgetNanos) {
+                    if (section.next == section.size) {
+                        finish(section);
+                    }
+                    return applied;
+                }
+            }
+            finish(section);
+        }
+        return applied;
+    }
+    
+    private void finish(Section section) {
+        order.poll();
+        sections.remove(section.key);
+    }
+    
+    /**
+     * Apply every queued change in a chunk right away, e.g. before it unloads
+     */
+    void flushChunk(World world, long chunkKey) {
+        if (pending == 0) {
+            return;
+        }
+        for (Iterator<Section> it = order.iterator(); it.hasNext(); ) {
+            Section section = it.next();
+            if (BlockKey.chunkKey(section.key) != chunkKey) {
+                continue;
+            }
+            while (section.next < section.size) {
+                int i = section.next++;
+                applier.apply(world, section.keys[i], section.data[i], section.restore[i]);
+                section.data[i] = null;
+                pending--;
+            }
+            it.remove();
+            sections.remove(section.key);
+        }
+    }
+    
+    /**
+     * Apply every queued change in loaded chunks right away
+     */
+    void flushAll() {
+        drain(Long.MAX_VALUE);
+    }
+    
+    /**
+     * Get the number of changes waiting to be applied
+     */
+    int size() {
+        return pending;
+    }
+    
+    void clear() {
+        sections.clear();
+        order.clear();
+        pending = 0;
+    }
+}
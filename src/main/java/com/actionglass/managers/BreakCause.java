@@ -0,0 +1,21 @@
+package com.actionglass.managers;
+
+import java.util.Locale;
+
+/**
+ * How a player broke glass
+ */
+public enum BreakCause {
+    ELYTRA,
+    FALL,
+    SPRINT,
+    PROJECTILE,
+    HAND;
+    
+    /**
+     * Name used for this cause in messages and trace output
+     */
+    public String getKey() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
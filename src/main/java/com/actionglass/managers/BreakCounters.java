@@ -0,0 +1,130 @@
+package com.actionglass.managers;
+
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per player break counts split by cause, world and material
+ *
+ * Every count is a {@link LongAdder}, so increments from the main thread and
+ * async tasks never contend on a lock or retry a compare-and-set in a loop.
+ * Once a player has broken a material in a world, recording allocates
+ * nothing. Reads sum the cells on demand. Counts start at zero when the
+ * server starts; only totals are saved, by the {@link StatisticsManager}.
+ */
+public final class BreakCounters {
+    
+    private static final BreakCause[] CAUSES = BreakCause.values();
+    
+    private final Map<UUID, PlayerCounters> players = new ConcurrentHashMap<>();
+    
+    private static final class PlayerCounters {
+        final LongAdder[] causes = new LongAdder[CAUSES.length];
+        final Map<String, LongAdder> worlds = new ConcurrentHashMap<>();
+        final Map<Material, LongAdder> materials = new ConcurrentHashMap<>();
+        
+        PlayerCounters() {
+            for (int i = 0; i < causes.length; i++) {
+                causes[i] = new LongAdder();
+            }
+        }
+    }
+    
+    /**
+     * Count one broken block. Safe to call from any thread.
+     */
+    void record(UUID uuid, BreakCause cause, String world, Material material) {
+        PlayerCounters counters = players.get(uuid);
+        if (counters == null) {
+            counters = players.computeIfAbsent(uuid, key -> new PlayerCounters());
+        }
+        counters.causes[cause.ordinal()].increment();
+        cell(counters.worlds, world).increment();
+        cell(counters.materials, material).increment();
+    }
+    
+    private static <K> LongAdder cell(Map<K, LongAdder> cells, K key) {
+        LongAdder cell = cells.get(key);
+        return cell != null ? cell : cells.computeIfAbsent(key, k -> new LongAdder());
+    }
+    
+    /**
+     * Sum the counts of a player
+     */
+    public Breakdown read(UUID uuid) {
+        PlayerCounters counters = players.get(uuid);
+        long[] causes = new long[CAUSES.length];
+        List<Map.Entry<String, Long>> worlds = new ArrayList<>();
+        List<Map.Entry<Material, Long>> materials = new ArrayList<>();
+        if (counters != null) {
+            for (int i = 0; i < causes.length; i++) {
+                causes[i] = counters.causes[i].sum();
+            }
+            sum(counters.worlds, worlds);
+            sum(counters.materials, materials);
+        }
+        return new Breakdown(causes, worlds, materials);
+    }
+    
+    private static <K> void sum(Map<K, LongAdder> cells, List<Map.Entry<K, Long>> into) {
+        for (Map.Entry<K, LongAdder> entry : cells.entrySet()) {
+            into.add(Map.entry(entry.getKey(), entry.getValue().sum()));
+        }
+        into.sort(Map.Entry.<K, Long>comparingByValue().reversed());
+    }
+    
+    void remove(UUID uuid) {
+        players.remove(uuid);
+    }
+    
+    void clear() {
+        players.clear();
+    }
+    
+    /**
+     * Counts of one player at the time they were read
+     */
+    public static final class Breakdown {
+        private final long[] causes;
+        private final List<Map.Entry<String, Long>> worlds;
+        private final List<Map.Entry<Material, Long>> materials;
+        
+        private Breakdown(long[] causes, List<Map.Entry<String, Long>> worlds, List<Map.Entry<Material, Long>> materials) {
+            this.causes = causes;
+            this.worlds = worlds;
+            this.materials = materials;
+        }
+        
+        public long get(BreakCause cause) {
+            return causes[cause.ordinal()];
+        }
+        
+        public long getTotal() {
+            long total = 0;
+            for (long count : causes) {
+                total += count;
+            }
+            return total;
+        }
+        
+        /**
+         * Get the counts by world name, highest first
+         */
+        public List<Map.Entry<String, Long>> getWorlds() {
+            return worlds;
+        }
+        
+        /**
+         * Get the counts by material, highest first
+         */
+        public List<Map.Entry<Material, Long>> getMaterials() {
+            return materials;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.actionglass.managers;
+
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.LongHashSet;
+import com.actionglass.util.LongObjectHashMap;
+import org.bukkit.block.data.BlockData;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing table of broken glass keyed by packed block position
+ *
+ * Records are stored in parallel primitive arrays (packed key, palette id,
+ * regeneration due tick), so lookups never allocate and there is no per-entry
+ * object. Uses linear probing with backward-shift deletion. Keys are also
+ * grouped per chunk so a chunk's records can be moved out when it unloads.
+ * Only used by the thread owning its partition.
+ */
+class BrokenGlassStore {
+    
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final float LOAD_FACTOR = 0.5f;
+    
+    private final BlockDataPalette palette;
+    private final LongObjectHashMap<LongHashSet> chunks = new LongObjectHashMap<>();
+    
+    private long[] keys;
+    private int[] states;
+    private long[] dues;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    
+    BrokenGlassStore(BlockDataPalette palette) {
+        this.palette = palette;
+        allocate(DEFAULT_CAPACITY);
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        states = new int[capacity];
+        dues = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+    
+    /**
+     * Find the slot holding a key
+     * 
+     * @return the slot, or -1 if the key is not stored
+     */
+    int indexOf(long key) {
+        int slot = BlockKey.hash(key) & mask;
+        long current;
+        while ((current = keys[slot]) != BlockKey.EMPTY) {
+            if (current == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    boolean contains(long key) {
+        return indexOf(key) >= 0;
+    }
+    
+    /**
+     * Store or replace the record for a key
+     */
+    void put(long key, BlockData blockData, long dueTick) {
+        int state = palette.idOf(blockData);
+        int slot = BlockKey.hash(key) & mask;
+        long current;
+        while ((current = keys[slot]) != BlockKey.EMPTY) {
+            if (current == key) {
+                states[slot] = state;
+                dues[slot] = dueTick;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        states[slot] = state;
+        dues[slot] = dueTick;
+        addToChunk(key);
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+    }
+    
+    /**
+     * Remove the record for a key
+     * 
+     * @return true if a record was removed
+     */
+    boolean remove(long key) {
+        int slot = indexOf(key);
+        if (slot < 0) {
+            return false;
+        }
+        removeAt(slot);
+        return true;
+    }
+    
+    private void removeAt(int slot) {
+        removeFromChunk(keys[slot]);
+        size--;
+        // Shift following entries of the probe run back so no tombstones are needed
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        long key;
+        while ((key = keys[next]) != BlockKey.EMPTY) {
+            int home = BlockKey.hash(key) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = key;
+                states[gap] = states[next];
+                dues[gap] = dues[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = BlockKey.EMPTY;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldStates = states;
+        long[] oldDues = dues;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == BlockKey.EMPTY) {
+                continue;
+            }
+            int slot = BlockKey.hash(key) & mask;
+            while (keys[slot] != BlockKey.EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            states[slot] = oldStates[i];
+            dues[slot] = oldDues[i];
+        }
+    }
+    
+    private void addToChunk(long key) {
+        long chunkKey = BlockKey.chunkKey(key);
+        LongHashSet chunk = chunks.get(chunkKey);
+        if (chunk == null) {
+            chunk = new LongHashSet();
+            chunks.put(chunkKey, chunk);
+        }
+        chunk.add(key);
+    }
+    
+    private void removeFromChunk(long key) {
+        long chunkKey = BlockKey.chunkKey(key);
+        LongHashSet chunk = chunks.get(chunkKey);
+        if (chunk != null && chunk.remove(key) && chunk.isEmpty()) {
+            chunks.remove(chunkKey);
+        }
+    }
+    
+    /**
+     * Get the keys stored in a chunk
+     * 
+     * @return the keys, or null if the chunk has no records; must not be modified
+     */
+    LongHashSet chunk(long chunkKey) {
+        return chunks.get(chunkKey);
+    }
+    
+    /**
+     * Get the key of every chunk that has records
+     */
+    long[] chunkKeys() {
+        long[] result = new long[chunks.size()];
+        int count = 0;
+        for (int slot = 0; slot < chunks.capacity(); slot++) {
+            long key = chunks.keyAt(slot);
+            if (key != BlockKey.EMPTY) {
+                result[count++] = key;
+            }
+        }
+        return result;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Number of slots, for iterating with {@link #keyAt(int)}
+     */
+    int capacity() {
+        return keys.length;
+    }
+    
+    /**
+     * Get the key in a slot, or {@link BlockKey#EMPTY} if the slot is unused
+     */
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+    
+    BlockData blockDataAt(int slot) {
+        return palette.get(states[slot]);
+    }
+    
+    /**
+     * Get the palette id of the block state in a slot
+     */
+    int stateAt(int slot) {
+        return states[slot];
+    }
+    
+    long dueAt(int slot) {
+        return dues[slot];
+    }
+    
+    /**
+     * Remove every record and shrink back to the default capacity
+     */
+    void clear() {
+        if (keys.length > DEFAULT_CAPACITY) {
+            allocate(DEFAULT_CAPACITY);
+        } else {
+            Arrays.fill(keys, BlockKey.EMPTY);
+        }
+        chunks.clear();
+        size = 0;
+    }
+}
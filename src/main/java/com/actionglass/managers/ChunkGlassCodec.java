@@ -0,0 +1,110 @@
+package com.actionglass.managers;
+
+import org.bukkit.Bukkit;
+import org.bukkit.block.data.BlockData;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary format for the broken glass of one chunk, stored in the chunk's
+ * persistent data container while it is unloaded
+ *
+ * Layout: version byte, block state palette (count + strings), then per record
+ * the local x/z nibble pair, y, palette index and regeneration deadline in
+ * epoch milliseconds. Wall-clock deadlines keep working across restarts.
+ */
+final class ChunkGlassCodec {
+    
+    private static final int VERSION = 1;
+    
+    /**
+     * Receives decoded records
+     */
+    interface Sink {
+        void accept(int localX, int y, int localZ, BlockData blockData, long deadlineMillis);
+    }
+    
+    /**
+     * Builds the encoded form of a chunk record by record
+     */
+    static final class Writer {
+        private final Map<String, Integer> paletteIds = new HashMap<>();
+        private final List<String> palette = new ArrayList<>();
+        private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        private final DataOutputStream records = new DataOutputStream(recordBytes);
+        private int count;
+        
+        void add(int x, int y, int z, BlockData blockData, long deadlineMillis) throws IOException {
+            String state = blockData.getAsString();
+            Integer id = paletteIds.get(state);
+            if (id == null) {
+                id = palette.size();
+                palette.add(state);
+                paletteIds.put(state, id);
+            }
+            records.writeByte(((x & 15) << 4) | (z & 15));
+            records.writeShort(y);
+            records.writeShort(id);
+            records.writeLong(deadlineMillis);
+            count++;
+        }
+        
+        byte[] toByteArray() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(recordBytes.size() + palette.size() * 32 + 8);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeShort(palette.size());
+            for (String state : palette) {
+                out.writeUTF(state);
+            }
+            out.writeInt(count);
+            records.flush();
+            recordBytes.writeTo(out);
+            out.flush();
+            return bytes.toByteArray();
+        }
+    }
+    
+    private ChunkGlassCodec() {
+    }
+    
+    /**
+     * Decode a chunk's records; states that no longer parse are skipped
+     */
+    static void decode(byte[] data, Sink sink) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported broken glass data version " + version);
+        }
+        
+        BlockData[] palette = new BlockData[in.readUnsignedShort()];
+        for (int i = 0; i < palette.length; i++) {
+            String state = in.readUTF();
+            try {
+                palette[i] = Bukkit.createBlockData(state);
+            } catch (IllegalArgumentException e) {
+                palette[i] = null;
+            }
+        }
+        
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int xz = in.readUnsignedByte();
+            int y = in.readShort();
+            int id = in.readUnsignedShort();
+            long deadline = in.readLong();
+            if (id < palette.length && palette[id] != null) {
+                sink.accept(xz >> 4, y, xz & 15, palette[id], deadline);
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.actionglass.managers;
+
+import com.actionglass.config.ConfigSnapshot;
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.WorldIndex;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Collects the break and restore effects of a tick and plays them coalesced
+ *
+ * Blocks of the same material in the same 16x16x16 cell are merged into one
+ * cluster, so a shattered window or a regeneration batch gets one sound at its
+ * centroid and a single particle burst spread over the affected area. Particle
+ * counts grow with the square root of the block count, and the whole tick is
+ * capped by the configured particle and sound budget, shared fairly between
+ * clusters. Under load particles and budgets shrink and sounds get quieter.
+ * Only used by the thread owning its partition.
+ */
+final class EffectBatcher {
+    
+    private static final int MAX_CLUSTERS = 256;
+    
+    private static final class Cluster {
+        boolean restore;
+        long cell;
+        Material material;
+        BlockData blockData;
+        Sound sound;
+        int count;
+        long sumX;
+        long sumY;
+        long sumZ;
+        int minX;
+        int minY;
+        int minZ;
+        int maxX;
+        int maxY;
+        int maxZ;
+    }
+    
+    private final WorldIndex worlds;
+    private final Cluster[] clusters = new Cluster[MAX_CLUSTERS];
+    private int active;
+    private int last;
+    
+    EffectBatcher(WorldIndex worlds) {
+        this.worlds = worlds;
+    }
+    
+    /**
+     * Queue the effects of a broken block
+     */
+    void addBreak(long key, BlockData blockData, Sound sound) {
+        add(false, key, blockData.getMaterial(), blockData, sound);
+    }
+    
+    /**
+     * Queue the effects of a restored block
+     */
+    void addRestore(long key, Material material, Sound sound) {
+        add(true, key, material, null, sound);
+    }
+    
+    private void add(boolean restore, long key, Material material, BlockData blockData, Sound sound) {
+        int x = BlockKey.x(key);
+        int y = BlockKey.y(key);
+        int z = BlockKey.z(key);
+        long cell = BlockKey.pack(BlockKey.world(key), x & ~15, y & ~15, z & ~15);
+        
+        Cluster cluster = find(restore, cell, material);
+        if (cluster == null) {
+            if (active == MAX_CLUSTERS) {
+                // More clusters than any budget could play in one tick
+                return;
+            }
+            cluster = clusters[active];
+            if (cluster == null) {
+                cluster = clusters[active] = new Cluster();
+            }
+            last = active++;
+            cluster.restore = restore;
+            cluster.cell = cell;
+            cluster.material = material;
+            cluster.blockData = blockData;
+            cluster.sound = sound;
+            cluster.count = 0;
+            cluster.sumX = 0;
+            cluster.sumY = 0;
+            cluster.sumZ = 0;
+            cluster.minX = cluster.maxX = x;
+            cluster.minY = cluster.maxY = y;
+            cluster.minZ = cluster.maxZ = z;
+        }
+        
+        cluster.count++;
+        cluster.sumX += x;
+        cluster.sumY += y;
+        cluster.sumZ += z;
+        cluster.minX = Math.min(cluster.minX, x);
+        cluster.minY = Math.min(cluster.minY, y);
+        cluster.minZ = Math.min(cluster.minZ, z);
+        cluster.maxX = Math.max(cluster.maxX, x);
+        cluster.maxY = Math.max(cluster.maxY, y);
+        cluster.maxZ = Math.max(cluster.maxZ, z);
+    }
+    
+    private Cluster find(boolean restore, long cell, Material material) {
+        // Blocks of one event usually arrive together, so try the last cluster first
+        if (last < active && matches(clusters[last], restore, cell, material)) {
+            return clusters[last];
+        }
+        for (int i = 0; i < active; i++) {
+            if (matches(clusters[i], restore, cell, material)) {
+                last = i;
+                return clusters[i];
+            }
+        }
+        return null;
+    }
+    
+    private static boolean matches(Cluster cluster, boolean restore, long cell, Material material) {
+        return cluster.cell == cell && cluster.restore == restore && cluster.material == material;
+    }
+    
+    /**
+     * Play everything queued since the last flush within the configured budget
+     */
+    void flush(ConfigSnapshot config, LoadLevel load) {
+        double particleScale = load.getParticleScale();
+        float volumeScale = (float) load.getVolumeScale();
+        int particles = (int) (config.effectParticleBudget * particleScale);
+        int sounds = config.effectSoundBudget;
+        
+        for (int i = 0; i < active; i++) {
+            Cluster cluster = clusters[i];
+            World world = worlds.world(BlockKey.world(cluster.cell));
+            if (world == null) {
+                continue;
+            }
+            
+            boolean soundEnabled = cluster.restore ? config.glassRestoreSoundEnabled : config.glassBreakSoundEnabled;
+            if (soundEnabled && cluster.sound != null && sounds > 0) {
+                Location centroid = new Location(world,
+                        (double) cluster.sumX / cluster.count + 0.5,
+                        (double) cluster.sumY / cluster.count + 0.5,
+                        (double) cluster.sumZ / cluster.count + 0.5);
+                world.playSound(centroid, cluster.sound,
+                        (cluster.restore ? config.glassRestoreSoundVolume : config.glassBreakSoundVolume) * volumeScale,
+                        cluster.restore ? config.glassRestoreSoundPitch : config.glassBreakSoundPitch);
+                sounds--;
+            }
+            
+            boolean particlesEnabled = cluster.restore ? config.glassRestoreParticlesEnabled : config.glassBreakParticlesEnabled;
+            if (!particlesEnabled || particles <= 0) {
+                continue;
+            }
+            int perBlock = cluster.restore ? config.glassRestoreParticleCount : config.glassBreakParticleCount;
+            int wanted = (int) Math.ceil(perBlock * particleScale * Math.sqrt(cluster.count));
+            
+            // Clusters that want less than their share leave the rest to the ones after them
+            int count = Math.min(wanted, Math.max(1, particles / (active - i)));
+            if (count <= 0) {
+                continue;
+            }
+            particles -= count;
+            
+            Location center = new Location(world,
+                    (cluster.minX + cluster.maxX) / 2.0 + 0.5,
+                    (cluster.minY + cluster.maxY) / 2.0 + 0.5,
+                    (cluster.minZ + cluster.maxZ) / 2.0 + 0.5);
+            double spreadX = 0.3 + (cluster.maxX - cluster.minX) / 4.0;
+            double spreadY = 0.3 + (cluster.maxY - cluster.minY) / 4.0;
+            double spreadZ = 0.3 + (cluster.maxZ - cluster.minZ) / 4.0;
+            if (cluster.restore) {
+                world.spawnParticle(Particle.VILLAGER_HAPPY, center, count, spreadX, spreadY, spreadZ, 0.1);
+            } else {
+                world.spawnParticle(Particle.BLOCK_CRACK, center, count, spreadX, spreadY, spreadZ, 0.1, cluster.blockData);
+            }
+        }
+        clear();
+    }
+    
+    /**
+     * Drop everything queued without playing it
+     */
+    void clear() {
+        for (int i = 0; i < active; i++) {
+            clusters[i].blockData = null;
+            clusters[i].sound = null;
+        }
+        active = 0;
+        last = 0;
+    }
+}
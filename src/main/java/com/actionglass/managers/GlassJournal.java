@@ -0,0 +1,498 @@
+package com.actionglass.managers;
+
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.LongObjectHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe append-only journal of broken glass
+ *
+ * The threads ticking the worlds only append primitives to the current batch,
+ * holding the journal's lock; once per tick the batch is handed to a writer
+ * thread, which frames it with a CRC, appends it and forces it to disk once
+ * per group of batches. The writer mirrors the live set so it can
+ * periodically rewrite the file with just the outstanding records.
+ *
+ * File layout: magic, then frames of [length][crc32][records]. Each session
+ * starts with a session marker that resets the world and block state tables,
+ * since those ids are only stable within one run. Replay stops at the first
+ * torn or corrupt frame.
+ */
+class GlassJournal {
+    
+    /**
+     * Receives outstanding breaks found on replay
+     */
+    interface Replay {
+        void accept(UUID world, int x, int y, int z, String state, long deadlineMillis);
+    }
+    
+    private static final int MAGIC = 0x41474A31; // "AGJ1"
+    private static final byte SESSION = 1;
+    private static final byte WORLD = 2;
+    private static final byte STATE = 3;
+    private static final byte BREAK = 4;
+    private static final byte RESTORE = 5;
+    
+    private static final int QUEUE_SIZE = 256;
+    private static final int COMPACT_MIN_RECORDS = 4096;
+    
+    private final File file;
+    private final Logger logger;
+    private final long compactIntervalMillis;
+    
+    private final BlockingQueue<Batch> pending = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Batch poison = new Batch();
+    private Batch current = new Batch();
+    private boolean[] statesDefined = new boolean[64];
+    private final boolean[] worldsDefined = new boolean[BlockKey.MAX_WORLDS];
+    private Thread writer;
+    private volatile boolean failed;
+    
+    // Writer thread state
+    private FileChannel channel;
+    private final Map<Integer, UUID> worlds = new HashMap<>();
+    private final Map<Integer, String> states = new HashMap<>();
+    private final LongObjectHashMap<Entry> live = new LongObjectHashMap<>();
+    private final ByteArrayOutputStream frameBytes = new ByteArrayOutputStream(8192);
+    private final DataOutputStream frame = new DataOutputStream(frameBytes);
+    private final CRC32 crc = new CRC32();
+    private long appendedSinceCompaction;
+    private long lastCompaction = System.currentTimeMillis();
+    
+    GlassJournal(File file, Logger logger, long compactIntervalMillis) {
+        this.file = file;
+        this.logger = logger;
+        this.compactIntervalMillis = compactIntervalMillis;
+    }
+    
+    /**
+     * Replay the existing journal, then start a new session and the writer thread
+     */
+    void open(Replay replay) throws IOException {
+        if (file.exists()) {
+            replay(replay);
+        } else {
+            file.getParentFile().mkdirs();
+        }
+        
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() < 4) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+        }
+        channel.position(channel.size());
+        
+        frame.writeByte(SESSION);
+        writeFrame();
+        channel.force(false);
+        
+        writer = new Thread(this::runWriter, "ActionGlass-Journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    private void replay(Replay replay) throws IOException {
+        Map<Integer, UUID> fileWorlds = new HashMap<>();
+        Map<Integer, String> fileStates = new HashMap<>();
+        Map<UUID, Integer> replayWorlds = new HashMap<>();
+        List<UUID> replayWorldIds = new ArrayList<>();
+        replayWorldIds.add(null);
+        LongObjectHashMap<Outstanding> outstanding = new LongObjectHashMap<>();
+        long validLength = 4;
+        
+        try (InputStream raw = Files.newInputStream(file.toPath());
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an ActionGlass journal");
+            }
+            while (true) {
+                // A frame cut short by a crash ends the replay
+                int length;
+                int expected;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    expected = in.readInt();
+                    if (length < 0 || length > file.length()) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != expected) {
+                    break;
+                }
+                validLength += 8 + length;
+                
+                DataInputStream records = new DataInputStream(new ByteArrayInputStream(payload));
+                while (records.available() > 0) {
+                    byte type = records.readByte();
+                    switch (type) {
+                        case SESSION:
+                            fileWorlds.clear();
+                            fileStates.clear();
+                            break;
+                        case WORLD:
+                            fileWorlds.put(records.readUnsignedByte(), new UUID(records.readLong(), records.readLong()));
+                            break;
+                        case STATE:
+                            fileStates.put(records.readInt(), records.readUTF());
+                            break;
+                        case BREAK: {
+                            long key = records.readLong();
+                            String state = fileStates.get(records.readInt());
+                            long deadline = records.readLong();
+                            long replayKey = replayKey(key, fileWorlds, replayWorlds, replayWorldIds);
+                            if (replayKey != BlockKey.EMPTY && state != null) {
+                                outstanding.put(replayKey, new Outstanding(state, deadline));
+                            }
+                            break;
+                        }
+                        case RESTORE: {
+                            long replayKey = replayKey(records.readLong(), fileWorlds, replayWorlds, replayWorldIds);
+                            if (replayKey != BlockKey.EMPTY) {
+                                outstanding.remove(replayKey);
+                            }
+                            break;
+                        }
+                        default:
+                            throw new IOException("Unknown journal record " + type);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Broken glass journal is damaged, replaying what could be read: " + e.getMessage());
+        }
+        
+        // Drop a torn tail so new frames follow the last good one
+        if (validLength < file.length()) {
+            try (FileChannel truncate = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                truncate.truncate(validLength);
+            }
+        }
+        
+        for (int slot = 0; slot < outstanding.capacity(); slot++) {
+            long key = outstanding.keyAt(slot);
+            if (key == BlockKey.EMPTY) {
+                continue;
+            }
+            Outstanding entry = outstanding.valueAt(slot);
+            replay.accept(replayWorldIds.get(BlockKey.world(key)), BlockKey.x(key), BlockKey.y(key), BlockKey.z(key),
+                    entry.state, entry.deadline);
+        }
+    }
+    
+    /**
+     * Re-key a file record by a replay-wide world index so sessions line up
+     */
+    private static long replayKey(long key, Map<Integer, UUID> fileWorlds, Map<UUID, Integer> replayWorlds, List<UUID> replayWorldIds) {
+        UUID world = fileWorlds.get(BlockKey.world(key));
+        if (world == null) {
+            return BlockKey.EMPTY;
+        }
+        Integer index = replayWorlds.get(world);
+        if (index == null) {
+            if (replayWorldIds.size() >= BlockKey.MAX_WORLDS) {
+                return BlockKey.EMPTY;
+            }
+            index = replayWorldIds.size();
+            replayWorldIds.add(world);
+            replayWorlds.put(world, index);
+        }
+        return BlockKey.pack(index, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key));
+    }
+    
+    boolean isStateDefined(int id) {
+        return id < statesDefined.length && statesDefined[id];
+    }
+    
+    /**
+     * Define a block state id before its first use this session
+     */
+    void defineState(int id, String state) {
+        if (id >= statesDefined.length) {
+            statesDefined = Arrays.copyOf(statesDefined, Math.max(id + 1, statesDefined.length << 1));
+        }
+        statesDefined[id] = true;
+        current.add(STATE, id, 0, 0, state);
+    }
+    
+    boolean isWorldDefined(int index) {
+        return worldsDefined[index];
+    }
+    
+    /**
+     * Define a world index before its first use this session
+     */
+    void defineWorld(int index, UUID world) {
+        worldsDefined[index] = true;
+        current.add(WORLD, index, 0, 0, world);
+    }
+    
+    void recordBreak(long key, int state, long deadlineMillis) {
+        current.add(BREAK, key, state, deadlineMillis, null);
+    }
+    
+    void recordRestore(long key) {
+        current.add(RESTORE, key, 0, 0, null);
+    }
+    
+    /**
+     * Hand the records of this tick to the writer; called once per tick
+     */
+    void flush() {
+        if (current.count == 0 || failed) {
+            current.count = 0;
+            return;
+        }
+        // If the writer is behind, keep growing this batch instead of blocking
+        if (pending.offer(current)) {
+            Batch next = free.poll();
+            current = next != null ? next : new Batch();
+        }
+    }
+    
+    /**
+     * Flush outstanding records and stop the writer, waiting for it to finish
+     */
+    void close() {
+        if (writer == null) {
+            return;
+        }
+        flush();
+        try {
+            if (!failed && pending.offer(poison, 5, TimeUnit.SECONDS)) {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+    
+    private void runWriter() {
+        try {
+            while (true) {
+                Batch batch = pending.take();
+                boolean stop = false;
+                
+                // Group commit: write everything already queued, then force once
+                while (batch != null) {
+                    if (batch == poison) {
+                        stop = true;
+                    } else {
+                        append(batch);
+                        batch.count = 0;
+                        free.offer(batch);
+                    }
+                    batch = pending.poll();
+                }
+                channel.force(false);
+                
+                if (shouldCompact(stop)) {
+                    compact();
+                }
+                if (stop) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failed = true;
+            logger.severe("Broken glass journal write failed, journaling disabled: " + e.getMessage());
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+    
+    private void append(Batch batch) throws IOException {
+        for (int i = 0; i < batch.count; i++) {
+            byte type = batch.types[i];
+            long key = batch.keys[i];
+            frame.writeByte(type);
+            switch (type) {
+                case WORLD: {
+                    UUID world = (UUID) batch.objects[i];
+                    worlds.put((int) key, world);
+                    frame.writeByte((int) key);
+                    frame.writeLong(world.getMostSignificantBits());
+                    frame.writeLong(world.getLeastSignificantBits());
+                    break;
+                }
+                case STATE:
+                    states.put((int) key, (String) batch.objects[i]);
+                    frame.writeInt((int) key);
+                    frame.writeUTF((String) batch.objects[i]);
+                    break;
+                case BREAK:
+                    live.put(key, new Entry(batch.states[i], batch.deadlines[i]));
+                    frame.writeLong(key);
+                    frame.writeInt(batch.states[i]);
+                    frame.writeLong(batch.deadlines[i]);
+                    break;
+                case RESTORE:
+                    live.remove(key);
+                    frame.writeLong(key);
+                    break;
+                default:
+                    break;
+            }
+            batch.objects[i] = null;
+        }
+        appendedSinceCompaction += batch.count;
+        writeFrame();
+    }
+    
+    private void writeFrame() throws IOException {
+        frame.flush();
+        byte[] payload = frameBytes.toByteArray();
+        frameBytes.reset();
+        crc.reset();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    private boolean shouldCompact(boolean closing) {
+        if (appendedSinceCompaction < COMPACT_MIN_RECORDS || appendedSinceCompaction < live.size() * 2L) {
+            return false;
+        }
+        return closing || System.currentTimeMillis() - lastCompaction >= compactIntervalMillis;
+    }
+    
+    /**
+     * Rewrite the journal with only the outstanding records and swap it in atomically
+     */
+    private void compact() throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileChannel appendChannel = channel;
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel = out;
+            out.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+            
+            frame.writeByte(SESSION);
+            for (Map.Entry<Integer, UUID> world : worlds.entrySet()) {
+                frame.writeByte(WORLD);
+                frame.writeByte(world.getKey());
+                frame.writeLong(world.getValue().getMostSignificantBits());
+                frame.writeLong(world.getValue().getLeastSignificantBits());
+            }
+            for (Map.Entry<Integer, String> state : states.entrySet()) {
+                frame.writeByte(STATE);
+                frame.writeInt(state.getKey());
+                frame.writeUTF(state.getValue());
+            }
+            for (int slot = 0; slot < live.capacity(); slot++) {
+                long key = live.keyAt(slot);
+                if (key == BlockKey.EMPTY) {
+                    continue;
+                }
+                Entry entry = live.valueAt(slot);
+                frame.writeByte(BREAK);
+                frame.writeLong(key);
+                frame.writeInt(entry.state);
+                frame.writeLong(entry.deadline);
+            }
+            writeFrame();
+            out.force(true);
+        } finally {
+            channel = appendChannel;
+        }
+        
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        appendChannel.close();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        
+        appendedSinceCompaction = 0;
+        lastCompaction = System.currentTimeMillis();
+    }
+    
+    private static final class Entry {
+        final int state;
+        final long deadline;
+        
+        Entry(int state, long deadline) {
+            this.state = state;
+            this.deadline = deadline;
+        }
+    }
+    
+    private static final class Outstanding {
+        final String state;
+        final long deadline;
+        
+        Outstanding(String state, long deadline) {
+            this.state = state;
+            this.deadline = deadline;
+        }
+    }
+    
+    /**
+     * One tick of journal records in parallel primitive arrays
+     */
+    private static final class Batch {
+        byte[] types = new byte[64];
+        long[] keys = new long[64];
+        int[] states = new int[64];
+        long[] deadlines = new long[64];
+        Object[] objects = new Object[64];
+        int count;
+        
+        void add(byte type, long key, int state, long deadline, Object object) {
+            if (count == types.length) {
+                int capacity = count << 1;
+                types = Arrays.copyOf(types, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+                states = Arrays.copyOf(states, capacity);
+                deadlines = Arrays.copyOf(deadlines, capacity);
+                objects = Arrays.copyOf(objects, capacity);
+            }
+            types[count] = type;
+            keys[count] = key;
+            states[count] = state;
+            deadlines[count] = deadline;
+            objects[count] = object;
+            count++;
+        }
+    }
+}
@@ -1,324 +1,732 @@
-package com.actionglass.managers;
-
-import com.actionglass.ActionGlass;
-import org.bukkit.Location;
-import org.bukkit.Material;
-import org.bukkit.Particle;
-import org.bukkit.Sound;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
-import org.bukkit.block.data.BlockData;
-import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
-
-import java.util.HashMap;
+package com.actionglass.managers;
+
+import com.actionglass.ActionGlass;
+import com.actionglass.config.ConfigSnapshot;
+import com.actionglass.config.MaterialRegistry;
+import com.actionglass.debug.Subsystem;
+import com.actionglass.debug.TraceLevel;
+import com.actionglass.debug.Tracer;
+import com.actionglass.integrations.IntegrationManager;
+import com.actionglass.scheduler.TaskScheduler;
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.WorldIndex;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.Map;
-
-/**
- * Manages glass breaking and regeneration mechanics
- */
-public class GlassManager {
-    
-    private final ActionGlass plugin;
-    private final Map<Location, GlassData> brokenGlass = new ConcurrentHashMap<>();
-    private final Map<Location, Integer> regenerationTasks = new ConcurrentHashMap<>();
-    private Location normalizeLocation(Location location) {
-        return new Location(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
-    }
+import java.util.concurrent.atomic.AtomicInteger;
 
-    
-    // All 6 directions to check for thickness
-    private static final BlockFace[] ALL_FACES = {
-        BlockFace.NORTH, BlockFace.SOUTH, BlockFace.EAST, 
-        BlockFace.WEST, BlockFace.UP, BlockFace.DOWN
-    };
-    
-    public GlassManager(ActionGlass plugin) {
-        this.plugin = plugin;
-    }
-    
-    /**
-     * Data class to store glass information
-     */
-    private static class GlassData {
-        final Material material;
-        final BlockData blockData;
-        
-        GlassData(Material material, BlockData blockData) {
-            this.material = material;
-            this.blockData = blockData;
-        }
-    }
-    
-    /**
-     * Check if a material is breakable glass
-     */
-    public boolean isBreakableGlass(Material material) {
-        if (material == null) return false;
-        return material == Material.GLASS ||
-               material == Material.GLASS_PANE ||
-               material == Material.WHITE_STAINED_GLASS ||
-               material == Material.ORANGE_STAINED_GLASS ||
-               material == Material.MAGENTA_STAINED_GLASS ||
-               material == Material.LIGHT_BLUE_STAINED_GLASS ||
-               material == Material.YELLOW_STAINED_GLASS ||
-               material == Material.LIME_STAINED_GLASS ||
-               material == Material.PINK_STAINED_GLASS ||
-               material == Material.GRAY_STAINED_GLASS ||
-               material == Material.LIGHT_GRAY_STAINED_GLASS ||
-               material == Material.CYAN_STAINED_GLASS ||
-               material == Material.PURPLE_STAINED_GLASS ||
-               material == Material.BLUE_STAINED_GLASS ||
-               material == Material.BROWN_STAINED_GLASS ||
-               material == Material.GREEN_STAINED_GLASS ||
-               material == Material.RED_STAINED_GLASS ||
-               material == Material.BLACK_STAINED_GLASS ||
-               material == Material.WHITE_STAINED_GLASS_PANE ||
-               material == Material.ORANGE_STAINED_GLASS_PANE ||
-               material == Material.MAGENTA_STAINED_GLASS_PANE ||
-               material == Material.LIGHT_BLUE_STAINED_GLASS_PANE ||
-               material == Material.YELLOW_STAINED_GLASS_PANE ||
-               material == Material.LIME_STAINED_GLASS_PANE ||
-               material == Material.PINK_STAINED_GLASS_PANE ||
-               material == Material.GRAY_STAINED_GLASS_PANE ||
-               material == Material.LIGHT_GRAY_STAINED_GLASS_PANE ||
-               material == Material.CYAN_STAINED_GLASS_PANE ||
-               material == Material.PURPLE_STAINED_GLASS_PANE ||
-               material == Material.BLUE_STAINED_GLASS_PANE ||
-               material == Material.BROWN_STAINED_GLASS_PANE ||
-               material == Material.GREEN_STAINED_GLASS_PANE ||
-               material == Material.RED_STAINED_GLASS_PANE ||
-               material == Material.BLACK_STAINED_GLASS_PANE ||
-               material == Material.TINTED_GLASS;
-    }
-    
-    /**
-     * Check if glass structure is only 1 block thick in any direction
-     * A structure like 4x4x1 should be breakable, but 4x4x2 should not
-     */
-    private boolean isGlassSingleThickness(Block block) {
-        // For each direction, check if there are glass blocks 2 deep
-        for (BlockFace face : ALL_FACES) {
-            if (hasGlassDepth(block, face, 2)) {
-                plugin.debug("Glass at " + block.getLocation() + " is too thick in direction " + face);
-                return false;
-            }
-        }
-        
-        plugin.debug("Glass at " + block.getLocation() + " is single thickness - can break");
-        return true;
-    }
-    
-    /**
-     * Check if there are glass blocks at the specified depth in a direction
-     */
-    private boolean hasGlassDepth(Block startBlock, BlockFace direction, int depth) {
-        Block currentBlock = startBlock;
-        
-        for (int i = 0; i < depth; i++) {
-            currentBlock = currentBlock.getRelative(direction);
-            if (!isBreakableGlass(currentBlock.getType())) {
-                return false;
-            }
-        }
-        
-        return true;
-    }
-    
-    /**
-     * Check if glass can be broken at this location
-     */
-    public boolean canBreakGlass(Block block, Player player) {
-        // Check if already broken
-        if (brokenGlass.containsKey(block.getLocation())) {
-            plugin.debug("Glass at " + block.getLocation() + " already broken");
-            return false;
-        }
-        
-        // Check if glass is single thickness
-        if (!isGlassSingleThickness(block)) {
-            plugin.debug("Glass at " + block.getLocation() + " too thick to break");
-            return false;
-        }
-        
-        // Check integrations (WorldGuard, Towny, etc.)
-        if (plugin.getIntegrationManager() != null && player != null) {
-            boolean canBreak = plugin.getIntegrationManager().canBreakGlass(block.getLocation(), player);
-            if (!canBreak) {
-                plugin.debug("Integration manager denied glass breaking at " + block.getLocation());
-                return false;
-            }
-        }
-        
-        plugin.debug("Glass at " + block.getLocation() + " can be broken");
-        return true;
-    }
-    
-    /**
-     * Break glass at the specified location
-     */
-    public void breakGlass(Location location) {
+/**
+ * Manages glass breaking and regeneration mechanics
+ *
+ * The state of broken glass lives in {@link GlassPartition}s: a single one on
+ * Spigot and Paper, and one per region section on Folia. Calls about a block
+ * go to the partition covering it and must come from the thread owning that
+ * block, which is where Bukkit and Folia fire the events that lead to them.
+ */
+public class GlassManager {
+    
+    /**
+     * Receives the progress of {@link #restoreAllGlass(RestoreProgress)}, on
+     * the main thread or, on Folia, the global region thread
+     */
+    public interface RestoreProgress {
+        /**
+         * Called every few seconds while the restore runs
+         */
+        void progress(int handled, int total);
+        
+        /**
+         * Called once every block has been restored or deferred to its chunk loading
+         */
+        void complete(int restored, int deferred);
+    }
+    
+    /**
+     * State of a running restore of all broken glass, shared by the partitions taking part
+     */
+    static final class RestoreAll {
+        final RestoreProgress progress;
+        final AtomicInteger running;
+        final AtomicInteger total = new AtomicInteger();
+        final AtomicInteger restored = new AtomicInteger();
+        final AtomicInteger deferred = new AtomicInteger();
+        long reportedAt = -1;
+        
+        RestoreAll(RestoreProgress progress, int partitions) {
+            this.progress = progress;
+            this.running = new AtomicInteger(partitions);
+        }
+    }
+    
+    // Ticks between progress reports of a running restore all
+    private static final long RESTORE_PROGRESS_INTERVAL = 60L;
+    
+    private final ActionGlass plugin;
+    private final Tracer tracer;
+    private final TaskScheduler scheduler;
+    private final WorldIndex worlds = new WorldIndex();
+    private final BlockDataPalette palette = new BlockDataPalette();
+    private final NamespacedKey chunkDataKey;
+    private final int regionChunkShift;
+    private final GlassPartition single;
+    private final AsyncGlassFinder finder;
+    private final LoadGovernor governor;
+    private final Map<Long, GlassPartition> partitions = new ConcurrentHashMap<>();
+    private volatile GlassJournal journal;
+    private volatile RestoreAll restoreAll;
+    private TaskScheduler.Task tickTask;
+    private volatile long ticks;
+    
+    public GlassManager(ActionGlass plugin) {
+        this.plugin = plugin;
+        this.tracer = plugin.getTracer();
+        this.scheduler = plugin.getTaskScheduler();
+        this.chunkDataKey = new NamespacedKey(plugin, "broken-glass");
+        this.regionChunkShift = scheduler.getRegionChunkShift();
+        this.single = scheduler.isRegionized() ? null : new GlassPartition(this, plugin, worlds, palette, chunkDataKey, BlockKey.EMPTY);
+        this.finder = new AsyncGlassFinder(plugin, this, worlds);
+        this.governor = new LoadGovernor(plugin);
+        startTickTask();
+        openJournal();
+        
+        // Pick up glass saved in chunks that were already loaded before enable
+        for (World world : plugin.getServer().getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                scheduler.runAt(world, chunk.getX(), chunk.getZ(), () -> onChunkLoad(chunk));
+            }
+        }
+    }
+    
+    /**
+     * Start the repeating task that samples the server load, flushes the
+     * journal and reports on restores, and without region threading also
+     * drives the single partition
+     */
+    private void startTickTask() {
+        tickTask = scheduler.runGlobalTimer(() -> {
+            ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+            governor.tick(config);
+            if (single != null) {
+                single.tick(config);
+            }
+            GlassJournal journal = this.journal;
+            if (journal != null) {
+                synchronized (journal) {
+                    journal.flush();
+                }
+            }
+            reportRestoreAll();
+            ticks++;
+        }, 1L, 1L);
+    }
+    
+    /**
+     * Get the chunk key of the corner of the region section holding a chunk
+     */
+    private long originOf(int world, int chunkX, int chunkZ) {
+        return BlockKey.chunkKey(world, chunkX >> regionChunkShift << regionChunkShift, chunkZ >> regionChunkShift << regionChunkShift);
+    }
+    
+    /**
+     * Get the partition covering a chunk, creating it if needed
+     */
+    private GlassPartition partition(int world, int chunkX, int chunkZ) {
+        if (single != null) {
+            return single;
+        }
+        long origin = originOf(world, chunkX, chunkZ);
+        GlassPartition partition = partitions.get(origin);
+        return partition != null ? partition : partitions.computeIfAbsent(origin, this::startPartition);
+    }
+    
+    private GlassPartition partitionOf(long key) {
+        return partition(BlockKey.world(key), BlockKey.chunkX(key), BlockKey.chunkZ(key));
+    }
+    
+    /**
+     * Get the partition covering a chunk
+     *
+     * @return the partition, or null if the section has none
+     */
+    private GlassPartition findPartition(int world, int chunkX, int chunkZ) {
+        return single != null ? single : partitions.get(originOf(world, chunkX, chunkZ));
+    }
+    
+    private GlassPartition startPartition(long origin) {
+        GlassPartition partition = new GlassPartition(this, plugin, worlds, palette, chunkDataKey, origin);
+        World world = worlds.world(BlockKey.world(origin));
+        partition.setTask(scheduler.runRegionTimer(world, BlockKey.chunkX(origin), BlockKey.chunkZ(origin), () -> tickPartition(partition), 1L, 1L));
+        return partition;
+    }
+    
+    private void tickPartition(GlassPartition partition) {
+        partition.tick(plugin.getConfigManager().getSnapshot());
+        
+        // Drop partitions with nothing left, so every section visited once doesn't keep one
+        if (partition.isIdle()) {
+            partitions.remove(partition.getOrigin(), partition);
+            partition.stop();
+        }
+    }
+    
+    private Collection<GlassPartition> partitions() {
+        return single != null ? Collections.singletonList(single) : partitions.values();
+    }
+    
+    /**
+     * Run a task on the thread owning a partition
+     */
+    private void runOn(GlassPartition partition, Runnable task) {
+        long origin = partition.getOrigin();
+        World world = origin == BlockKey.EMPTY ? null : worlds.world(BlockKey.world(origin));
+        if (world == null) {
+            task.run();
+        } else {
+            scheduler.runAt(world, BlockKey.chunkX(origin), BlockKey.chunkZ(origin), task);
+        }
+    }
+    
+    /**
+     * Open the crash recovery journal and resume tracking everything it still
+     * lists as broken
+     */
+    private void openJournal() {
+        if (!plugin.getConfigManager().isJournalEnabled()) {
+            return;
+        }
+        
+        File file = new File(plugin.getDataFolder(), "broken-glass.journal");
+        journal = new GlassJournal(file, plugin.getLogger(), plugin.getConfigManager().getJournalCompactInterval() * 1000L);
+        int[] replayed = new int[2];
+        try {
+            journal.open((worldId, x, y, z, state, deadline) -> {
+                if (resumeJournaled(worldId, x, y, z, state, deadline)) {
+                    replayed[0]++;
+                } else {
+                    replayed[1]++;
+                }
+            });
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not open broken glass journal, crash recovery disabled: " + e.getMessage());
+            journal = null;
+            return;
+        }
+        
+        if (replayed[0] > 0 || replayed[1] > 0) {
+            plugin.getLogger().info("Recovered " + replayed[0] + " broken glass blocks from the journal"
+                    + (replayed[1] > 0 ? " (" + replayed[1] + " in unavailable worlds skipped)" : "") + ".");
+        }
+    }
+    
+    private boolean resumeJournaled(UUID worldId, int x, int y, int z, String state, long deadlineMillis) {
+        World world = worldId != null ? plugin.getServer().getWorld(worldId) : null;
+        if (world == null) {
+            return false;
+        }
+        BlockData blockData;
+        try {
+            blockData = plugin.getServer().createBlockData(state);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        long key = keyOf(world, x, y, z);
+        if (key == BlockKey.EMPTY) {
+            return false;
+        }
+        
+        // Overdue glass in loaded chunks is restored by the loaded chunk scan that follows
+        long remaining = Math.max(0, (deadlineMillis - System.currentTimeMillis() + 49) / 50);
+        scheduler.runAt(world, x >> 4, z >> 4, () -> partitionOf(key).trackIn(key, blockData, remaining));
+        return true;
+    }
+    
+    boolean isJournaling() {
+        return journal != null;
+    }
+    
+    /**
+     * Journal a broken block, defining its state and world first if needed
+     */
+    void journalBreak(long key, int state, BlockData blockData, long deadlineMillis) {
+        GlassJournal journal = this.journal;
+        if (journal == null) {
+            return;
+        }
+        // Partitions on several region threads share the journal
+        synchronized (journal) {
+            if (!journal.isStateDefined(state)) {
+                journal.defineState(state, blockData.getAsString());
+            }
+            int world = BlockKey.world(key);
+            if (!journal.isWorldDefined(world)) {
+                journal.defineWorld(world, worlds.uid(world));
+            }
+            journal.recordBreak(key, state, deadlineMillis);
+        }
+    }
+    
+    void journalRestore(long key) {
+        GlassJournal journal = this.journal;
+        if (journal != null && key != BlockKey.EMPTY) {
+            synchronized (journal) {
+                journal.recordRestore(key);
+            }
+        }
+    }
+    
+    /**
+     * Get the finder that looks for glass to break on an async thread
+     */
+    public AsyncGlassFinder getGlassFinder() {
+        return finder;
+    }
+    
+    /**
+     * Get the governor scaling glass breaking back under server load
+     */
+    public LoadGovernor getLoadGovernor() {
+        return governor;
+    }
+    
+    /**
+     * Get the number of ticks since the manager started, counted on the main
+     * thread or, on Folia, the global region thread
+     */
+    long currentTick() {
+        return ticks;
+    }
+    
+    /**
+     * Get the packed key of a block, assigning its world an index if needed
+     *
+     * @return the key, or {@link BlockKey#EMPTY} if the block cannot be tracked
+     */
+    long keyOf(World world, int x, int y, int z) {
+        if (!BlockKey.fits(x, y, z)) {
+            return BlockKey.EMPTY;
+        }
+        int index = worlds.indexOf(world);
+        if (index < 0) {
+            return BlockKey.EMPTY;
+        }
+        return BlockKey.pack(index, x, y, z);
+    }
+    
+    /**
+     * Get the index packed into the {@link BlockKey}s of a world, assigning one if needed
+     *
+     * @return the index, or -1 if every index is taken
+     */
+    public int getWorldIndex(World world) {
+        return worlds.indexOf(world);
+    }
+    
+    /**
+     * Get the packed {@link BlockKey} of a block
+     *
+     * @return the key, or {@link BlockKey#EMPTY} if the block cannot be tracked
+     */
+    public long getBlockKey(Block block) {
+        return keyOf(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+    
+    /**
+     * Check if a material is breakable glass
+     */
+    public boolean isBreakableGlass(Material material) {
+        return material != null && plugin.getConfigManager().getMaterialRegistry().isBreakable(material);
+    }
+    
+    /**
+     * Get the configured properties of a breakable material
+     *
+     * @return the profile, or null if the material cannot be broken
+     */
+    public MaterialRegistry.Profile getMaterialProfile(Material material) {
+        return material == null ? null : plugin.getConfigManager().getMaterialRegistry().getProfile(material);
+    }
+    
+    /**
+     * Check if glass can be broken at this location by a player, or without one if null
+     */
+    public boolean canBreakGlass(Block block, Player player) {
+        return canBreakGlass(block, player, false);
+    }
+    
+    /**
+     * Check if glass found by the {@link AsyncGlassFinder} can still be broken.
+     * Its thickness was already checked on a snapshot and protection is
+     * checked for the whole batch through {@link IntegrationManager#filter},
+     * so this only checks again that it is trackable and not broken yet.
+     */
+    public boolean canBreakFoundGlass(Block block) {
+        return canBreakGlass(block, null, true);
+    }
+    
+    private boolean canBreakGlass(Block block, Player player, boolean found) {
+        long key = keyOf(block.getWorld(), block.getX(), block.getY(), block.getZ());
+        if (key == BlockKey.EMPTY) {
+            if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.TRACE)) {
+                tracer.trace(Subsystem.BREAKING, "Glass at " + block.getLocation() + " is outside the trackable range");
+            }
+            return false;
+        }
+        GlassPartition partition = partitionOf(key);
+        
+        // Check if already broken
+        if (partition.isBroken(key)) {
+            if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.TRACE)) {
+                tracer.trace(Subsystem.BREAKING, "Glass at " + block.getLocation() + " already broken");
+            }
+            return false;
+        }
+        
+        // Check if glass is single thickness
+        if (!found && !partition.isSingleThickness(block, key)) {
+            if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.TRACE)) {
+                tracer.trace(Subsystem.BREAKING, "Glass at " + block.getLocation() + " too thick to break");
+            }
+            return false;
+        }
+        
+        // Check integrations (WorldGuard, Towny, etc.)
+        if (!found && plugin.getIntegrationManager() != null) {
+            boolean canBreak = plugin.getIntegrationManager().canBreakGlass(player, block.getWorld(), key);
+            if (!canBreak) {
+                if (tracer.isEnabled(Subsystem.INTEGRATIONS, TraceLevel.DEBUG)) {
+                    tracer.debug(Subsystem.INTEGRATIONS, "Integration manager denied glass breaking at " + block.getLocation());
+                }
+                return false;
+            }
+        }
+        
+        if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.TRACE)) {
+            tracer.trace(Subsystem.BREAKING, "Glass at " + block.getLocation() + " can be broken");
+        }
+        return true;
+    }
+    
+    /**
+     * Break glass at the specified location
+     */
+    public void breakGlass(Location location) {
         if (location == null || location.getWorld() == null) return;
-        location = normalizeLocation(location);
-        Block block = location.getBlock();
-        Material originalMaterial = block.getType();
-        
-        if (!isBreakableGlass(originalMaterial)) {
-            plugin.debug("Block at " + location + " is not breakable glass: " + originalMaterial);
-            return;
-        }
-        
-        // Store original material and block data for exact regeneration
-        BlockData originalBlockData = block.getBlockData().clone();
-        brokenGlass.put(location, new GlassData(originalMaterial, originalBlockData));
-        
-        // Break the glass (set to air)
-        block.setType(Material.AIR);
-        
-        // Play break effects
-        playBreakEffects(location);
-        
-        // Schedule regeneration
-        scheduleRegeneration(location, originalMaterial, originalBlockData);
-        
-        plugin.debug("Glass broken at " + location.toString() + " (was " + originalMaterial + ")");
-    }
-    
-    /**
-     * Play breaking effects
-     */
-    private void playBreakEffects(Location location) {
-        if (plugin.getConfigManager().isGlassBreakSoundEnabled()) {
-            location.getWorld().playSound(location, Sound.BLOCK_GLASS_BREAK,
-                    plugin.getConfigManager().getGlassBreakSoundVolume(),
-                    plugin.getConfigManager().getGlassBreakSoundPitch());
-        }
-        
-        if (plugin.getConfigManager().isGlassBreakParticlesEnabled()) {
-            Location particleLocation = location.clone().add(0.5, 0.5, 0.5);
-            location.getWorld().spawnParticle(Particle.BLOCK_CRACK,
-                    particleLocation,
-                    plugin.getConfigManager().getGlassBreakParticleCount(),
-                    0.3, 0.3, 0.3, 0.1,
-                    Material.GLASS.createBlockData());
-        }
-    }
-    
-    /**
-     * Schedule glass regeneration
-     */
-    private void scheduleRegeneration(Location location, Material originalMaterial, BlockData originalBlockData) {
-        int delay = plugin.getConfigManager().getGlassRestoreTime() * 20; // Convert to ticks
-        
-        int taskId = new BukkitRunnable() {
-            @Override
-            public void run() {
-                regenerateGlass(location, originalMaterial, originalBlockData);
-            }
-        }.runTaskLater(plugin, delay).getTaskId();
-        
-        regenerationTasks.put(location.clone(), taskId);
-    }
-    
-    /**
-     * Regenerate glass at exact location with exact block data
-     */
-    private void regenerateGlass(Location location, Material originalMaterial, BlockData originalBlockData) {
-        Block block = location.getBlock();
-        
-        // Only regenerate if still air
-        if (block.getType() == Material.AIR) {
-            // Set the exact block data to preserve orientation, properties, etc.
-            block.setBlockData(originalBlockData);
-            
-            // Play restore effects
-            playRestoreEffects(location);
-            
-            plugin.debug("Glass regenerated at " + location.toString() + " (restored to " + originalMaterial + ")");
-        }
-        
-        // Clean up tracking
-        brokenGlass.remove(location);
-        regenerationTasks.remove(location);
-    }
-    
-    /**
-     * Play restoration effects
-     */
-    private void playRestoreEffects(Location location) {
-        if (plugin.getConfigManager().isGlassRestoreSoundEnabled()) {
-            location.getWorld().playSound(location, Sound.BLOCK_GLASS_PLACE,
-                    plugin.getConfigManager().getGlassRestoreSoundVolume(),
-                    plugin.getConfigManager().getGlassRestoreSoundPitch());
-        }
-        
-        if (plugin.getConfigManager().isGlassRestoreParticlesEnabled()) {
-            Location particleLocation = location.clone().add(0.5, 0.5, 0.5);
-            location.getWorld().spawnParticle(Particle.VILLAGER_HAPPY,
-                    particleLocation,
-                    plugin.getConfigManager().getGlassRestoreParticleCount(),
-                    0.3, 0.3, 0.3, 0.1);
-        }
-    }
-    
-    /**
-     * Regenerate all broken glass immediately (used on plugin disable)
-     */
-    public void regenerateAllGlass() {
-        plugin.getLogger().info("Regenerating " + brokenGlass.size() + " broken glass blocks...");
-        
-        // Cancel all pending regeneration tasks
-        for (Integer taskId : regenerationTasks.values()) {
-            plugin.getServer().getScheduler().cancelTask(taskId);
-        }
-        regenerationTasks.clear();
-        
-        // Restore all broken glass with exact block data
-        for (Map.Entry<Location, GlassData> entry : brokenGlass.entrySet()) {
-            Location location = entry.getKey();
-            GlassData glassData = entry.getValue();
-            Block block = location.getBlock();
-            
-            if (block.getType() == Material.AIR) {
-                block.setBlockData(glassData.blockData);
-            }
-        }
-        
-        brokenGlass.clear();
-    }
-    
-    /**
-     * Restore all broken glass immediately (alias for regenerateAllGlass)
-     */
-    public void restoreAllGlass() {
-        regenerateAllGlass();
-    }
-    
-    /**
-     * Get the number of currently broken glass blocks
-     */
-    public int getBrokenGlassCount() {
-        return brokenGlass.size();
-    }
-    
-    /**
-     * Check if glass is currently broken at location
-     */
-    public boolean isGlassBroken(Location location) {
-        return brokenGlass.containsKey(location);
+        breakGlass(location.getWorld().getBlockAt(location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+    }
+    
+    /**
+     * Break a glass block
+     */
+    public void breakGlass(Block block) {
+        Material originalMaterial = block.getType();
+        MaterialRegistry.Profile profile = getMaterialProfile(originalMaterial);
+        
+        if (profile == null) {
+            if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.TRACE)) {
+                tracer.trace(Subsystem.BREAKING, "Block at " + block.getLocation() + " is not breakable glass: " + originalMaterial);
+            }
+            return;
+        }
+        
+        long key = keyOf(block.getWorld(), block.getX(), block.getY(), block.getZ());
+        if (key == BlockKey.EMPTY) {
+            if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.DEBUG)) {
+                tracer.debug(Subsystem.BREAKING, "Block at " + block.getLocation() + " is outside the trackable range, not breaking");
+            }
+            return;
+        }
+        
+        partitionOf(key).breakGlass(block, key, profile);
+    }
+    
+    /**
+     * Move the broken glass of an unloading chunk into its persistent data
+     */
+    public void onChunkUnload(Chunk chunk, boolean save) {
+        int index = worlds.find(chunk.getWorld());
+        if (index < 0) {
+            return;
+        }
+        GlassPartition partition = findPartition(index, chunk.getX(), chunk.getZ());
+        if (partition != null) {
+            partition.onChunkUnload(chunk, BlockKey.chunkKey(index, chunk.getX(), chunk.getZ()), save);
+        }
+    }
+    
+    /**
+     * Restore or resume tracking of the broken glass saved in a loading chunk,
+     * and apply any regenerations that came due while it was unloaded
+     */
+    public void onChunkLoad(Chunk chunk) {
+        if (!BlockKey.fits(chunk.getX() << 4, 0, chunk.getZ() << 4)) {
+            return;
+        }
+        int index = worlds.indexOf(chunk.getWorld());
+        if (index < 0) {
+            return;
+        }
+        partition(index, chunk.getX(), chunk.getZ()).onChunkLoad(chunk, BlockKey.chunkKey(index, chunk.getX(), chunk.getZ()));
+    }
+    
+    /**
+     * Start restoring all broken glass, a chunk at a time over as many ticks as
+     * the configured budget needs. Glass in unloaded chunks is not loaded but
+     * made overdue, so it is restored as soon as its chunk loads.
+     *
+     * @return false if a restore is already running
+     */
+    public synchronized boolean restoreAllGlass(RestoreProgress progress) {
+        if (restoreAll != null) {
+            return false;
+        }
+        List<GlassPartition> targets = new ArrayList<>(partitions());
+        RestoreAll job = new RestoreAll(progress, targets.size());
+        restoreAll = job;
+        for (GlassPartition partition : targets) {
+            runOn(partition, () -> partition.startRestore(job));
+        }
+        tracer.debug(Subsystem.REGENERATION, "Restoring all broken glass in {} partitions", targets.size());
+        return true;
+    }
+    
+    /**
+     * Report the progress of a running restore all, or its result once every
+     * partition is done
+     */
+    private void reportRestoreAll() {
+        RestoreAll job = restoreAll;
+        if (job == null) {
+            return;
+        }
+        if (job.running.get() == 0) {
+            restoreAll = null;
+            job.progress.complete(job.restored.get(), job.deferred.get());
+        } else if (job.reportedAt < 0) {
+            job.reportedAt = ticks;
+        } else if (ticks - job.reportedAt >= RESTORE_PROGRESS_INTERVAL) {
+            job.reportedAt = ticks;
+            job.progress.progress(job.restored.get() + job.deferred.get(), job.total.get());
+        }
+    }
+    
+    /**
+     * Check if a restore of all broken glass is running
+     */
+    public boolean isRestoringAll() {
+        return restoreAll != null;
+    }
+    
+    /**
+     * Regenerate all broken glass immediately (used on plugin disable)
+     *
+     * Glass in loaded chunks is restored synchronously. Glass in unloaded
+     * chunks stays in the journal and is restored after the next start, so
+     * shutdown loads no chunks unless the journal is disabled. On Folia the
+     * blocks belong to region threads that have stopped by now, so no block is
+     * changed: with the journal enabled everything is left to it, otherwise the
+     * broken glass is saved with its chunks like on an unload.
+     */
+    public void regenerateAllGlass() {
+        restoreAll = null;
+        int total = getBrokenGlassCount();
+        
+        if (scheduler.isRegionized() && journal != null) {
+            for (GlassPartition partition : partitions()) {
+                partition.clear();
+            }
+            plugin.getLogger().info("Left " + total + " broken glass blocks to the journal to be restored after the next start.");
+            return;
+        }
+        if (scheduler.isRegionized()) {
+            int saved = 0;
+            for (GlassPartition partition : partitions()) {
+                saved += partition.saveAll();
+            }
+            plugin.getLogger().info("Saved " + saved + " broken glass blocks with their chunks to be restored when they load again.");
+            return;
+        }
+        
+        plugin.getLogger().info("Regenerating " + total + " broken glass blocks...");
+        int deferred = 0;
+        for (GlassPartition partition : partitions()) {
+            deferred += partition.regenerateAll(journal != null);
+        }
+        if (deferred > 0) {
+            plugin.getLogger().info("Left " + deferred + " broken glass blocks in unloaded chunks to be restored after the next start.");
+        }
+    }
+    
+    /**
+     * Get the number of currently broken glass blocks; on Folia a close
+     * estimate, as the partitions change while they are counted
+     */
+    public int getBrokenGlassCount() {
+        int count = 0;
+        for (GlassPartition partition : partitions()) {
+            count += partition.getBrokenGlassCount();
+        }
+        return count;
+    }
+    
+    /**
+     * Get the number of overdue regenerations held back by the per tick limits
+     */
+    public int getRegenerationBacklog() {
+        int count = 0;
+        for (GlassPartition partition : partitions()) {
+            count += partition.getRegenerationBacklog();
+        }
+        return count;
+    }
+    
+    /**
+     * Get the number of breaks and restores waiting to be applied to the world
+     */
+    public int getQueuedMutationCount() {
+        int count = 0;
+        for (GlassPartition partition : partitions()) {
+            count += partition.getQueuedMutationCount();
+        }
+        return count;
+    }
+    
+    /**
+     * Check if glass is currently broken at location
+     */
+    public boolean isGlassBroken(Location location) {
+        World world = location.getWorld();
+        if (world == null) {
+            return false;
+        }
+        return isGlassBroken(world, location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+    
+    /**
+     * Check if glass is currently broken at a block
+     */
+    public boolean isGlassBroken(Block block) {
+        return isGlassBroken(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+    
+    /**
+     * Rebuild the glass presence index of every loaded chunk, e.g. after the
+     * breakable materials changed
+     */
+    public void reindexLoadedChunks() {
+        for (GlassPartition partition : partitions()) {
+            runOn(partition, partition::reindex);
+        }
+    }
+    
+    /**
+     * Keep the glass presence index up to date when a block becomes glass
+     * outside of regeneration, e.g. when a player places it
+     */
+    public void onGlassPlaced(Block block) {
+        long key = keyOf(block.getWorld(), block.getX(), block.getY(), block.getZ());
+        if (key != BlockKey.EMPTY) {
+            partitionOf(key).markGlass(key, block.getWorld().getMinHeight());
+        }
+    }
+    
+    /**
+     * Keep the glass presence index up to date when glass is removed other
+     * than by breaking it through this plugin
+     */
+    public void onGlassRemoved(Block block) {
+        int index = worlds.find(block.getWorld());
+        if (index < 0 || !BlockKey.fits(block.getX(), block.getY(), block.getZ())) {
+            return;
+        }
+        GlassPartition partition = findPartition(index, block.getX() >> 4, block.getZ() >> 4);
+        if (partition != null) {
+            partition.markRemoved(BlockKey.pack(index, block.getX(), block.getY(), block.getZ()));
+        }
+    }
+    
+    /**
+     * Check whether a block range may contain breakable glass, without looking
+     * at any blocks. False means the range certainly holds none.
+     */
+    public boolean mayContainGlass(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int index = worlds.find(world);
+        if (index < 0 || !BlockKey.fits(minX, 0, minZ) || !BlockKey.fits(maxX, 0, maxZ)) {
+            return true;
+        }
+        int minHeight = world.getMinHeight();
+        if (single != null) {
+            return single.mayContainGlass(index, minHeight, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        
+        // Ask each section the range overlaps about its part; one without a partition is unknown
+        int shift = regionChunkShift + 4;
+        for (int sectionX = minX >> shift; sectionX <= maxX >> shift; sectionX++) {
+            for (int sectionZ = minZ >> shift; sectionZ <= maxZ >> shift; sectionZ++) {
+                GlassPartition partition = partitions.get(BlockKey.chunkKey(index, sectionX << regionChunkShift, sectionZ << regionChunkShift));
+                if (partition == null || partition.mayContainGlass(index, minHeight,
+                        Math.max(minX, sectionX << shift), minY, Math.max(minZ, sectionZ << shift),
+                        Math.min(maxX, ((sectionX + 1) << shift) - 1), maxY, Math.min(maxZ, ((sectionZ + 1) << shift) - 1))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private boolean isGlassBroken(World world, int x, int y, int z) {
+        if (!BlockKey.fits(x, y, z)) {
+            return false;
+        }
+        int index = worlds.find(world);
+        if (index < 0) {
+            return false;
+        }
+        GlassPartition partition = findPartition(index, x >> 4, z >> 4);
+        return partition != null && partition.isBroken(BlockKey.pack(index, x, y, z));
     }
+    
     /**
      * Clean up all data structures to prevent memory leaks
      */
     public void cleanup() {
         // Cancel all scheduled regeneration tasks
-        plugin.getServer().getScheduler().cancelTasks(plugin);
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+        for (GlassPartition partition : partitions()) {
+            partition.stop();
+            partition.clear();
+        }
+        partitions.clear();
+        restoreAll = null;
+        scheduler.cancelAll();
         
-        // Clear all collections
-        brokenGlass.clear();
+        // Write out the last records and stop the journal writer
+        GlassJournal journal = this.journal;
+        if (journal != null) {
+            synchronized (journal) {
+                journal.close();
+            }
+            this.journal = null;
+        }
         
-        plugin.debug("GlassManager cleanup completed");
+        tracer.debug(Subsystem.GENERAL, "GlassManager cleanup completed");
     }
 
 }
@@ -0,0 +1,720 @@
+package com.actionglass.managers;
+
+import com.actionglass.ActionGlass;
+import com.actionglass.config.ConfigSnapshot;
+import com.actionglass.config.MaterialRegistry;
+import com.actionglass.debug.Subsystem;
+import com.actionglass.debug.TraceLevel;
+import com.actionglass.debug.Tracer;
+import com.actionglass.scheduler.TaskScheduler;
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.LongHashSet;
+import com.actionglass.util.LongRingQueue;
+import com.actionglass.util.TimingWheel;
+import com.actionglass.util.WorldIndex;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.MultipleFacing;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Broken glass, regeneration and effects of one area of the worlds
+ *
+ * Without region threading one partition covers every world. On Folia there
+ * is a partition per region section, an area that always belongs to exactly
+ * one region, so a partition is only ever used by the thread ticking that
+ * region and partitions never contend. Each partition is driven by its own
+ * repeating task on that thread.
+ */
+final class GlassPartition {
+    
+    // All 6 directions to check for thickness
+    private static final BlockFace[] ALL_FACES = {
+        BlockFace.NORTH, BlockFace.SOUTH, BlockFace.EAST,
+        BlockFace.WEST, BlockFace.UP, BlockFace.DOWN
+    };
+    
+    // Directions panes, bars and other connecting blocks connect in
+    private static final BlockFace[] HORIZONTAL_FACES = {
+        BlockFace.NORTH, BlockFace.SOUTH, BlockFace.EAST, BlockFace.WEST
+    };
+    
+    private final GlassManager manager;
+    private final ActionGlass plugin;
+    private final Tracer tracer;
+    private final WorldIndex worlds;
+    private final NamespacedKey chunkDataKey;
+    private final long origin;
+    private final BrokenGlassStore brokenGlass;
+    private final TimingWheel regenerations = new TimingWheel();
+    private final TimingWheel.Expiry regenerationExpiry = this::regenerateDue;
+    private final LongRingQueue overdue = new LongRingQueue();
+    private final GlassPresenceIndex presence;
+    private final ThicknessCache thickness = new ThicknessCache();
+    private final EffectBatcher effects;
+    private final BlockMutationQueue mutations;
+    private final LongHashSet loadedChunks = new LongHashSet();
+    private final BlockData air = Material.AIR.createBlockData();
+    private long[] chunkKeys = new long[64];
+    private TaskScheduler.Task task;
+    
+    // Chunks left to handle of a running restore all
+    private GlassManager.RestoreAll restoring;
+    private long[] restoreChunks;
+    private int restoreNext;
+    
+    GlassPartition(GlassManager manager, ActionGlass plugin, WorldIndex worlds, BlockDataPalette palette, NamespacedKey chunkDataKey, long origin) {
+        this.manager = manager;
+        this.plugin = plugin;
+        this.tracer = plugin.getTracer();
+        this.worlds = worlds;
+        this.chunkDataKey = chunkDataKey;
+        this.origin = origin;
+        this.brokenGlass = new BrokenGlassStore(palette);
+        this.presence = new GlassPresenceIndex(plugin, manager, worlds);
+        this.effects = new EffectBatcher(worlds);
+        this.mutations = new BlockMutationQueue(worlds, this::applyMutation);
+    }
+    
+    /**
+     * Get the chunk key of the corner of the area this partition covers, or
+     * {@link BlockKey#EMPTY} if it covers everything
+     */
+    long getOrigin() {
+        return origin;
+    }
+    
+    void setTask(TaskScheduler.Task task) {
+        this.task = task;
+    }
+    
+    /**
+     * Cancel the task driving this partition
+     */
+    void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+    
+    /**
+     * Advance regeneration and apply this tick's block changes and effects
+     */
+    void tick(ConfigSnapshot config) {
+        LoadLevel load = manager.getLoadGovernor().getLevel();
+        regenerations.advance(regenerationExpiry);
+        regenerateOverdue(config, load);
+        continueRestore(config);
+        mutations.drain(config.mutationBudgetMicros * 1000L);
+        presence.flush();
+        effects.flush(config, load);
+    }
+    
+    /**
+     * Check if the partition holds nothing and can be dropped
+     */
+    boolean isIdle() {
+        return loadedChunks.isEmpty() && brokenGlass.size() == 0 && mutations.size() == 0
+                && overdue.isEmpty() && restoring == null;
+    }
+    
+    /**
+     * Start tracking a broken block and schedule its regeneration
+     */
+    void track(long key, BlockData blockData, long due) {
+        due = Math.max(due, regenerations.now() + 1);
+        brokenGlass.put(key, blockData, due);
+        regenerations.schedule(key, due);
+        
+        if (manager.isJournaling()) {
+            int state = brokenGlass.stateAt(brokenGlass.indexOf(key));
+            manager.journalBreak(key, state, blockData, System.currentTimeMillis() + (due - regenerations.now()) * 50);
+        }
+    }
+    
+    /**
+     * Start tracking a broken block, due a number of ticks from now
+     */
+    void trackIn(long key, BlockData blockData, long ticks) {
+        track(key, blockData, regenerations.now() + ticks);
+    }
+    
+    /**
+     * Stop tracking a block for good, e.g. once it has been restored
+     */
+    private void untrack(long key) {
+        brokenGlass.remove(key);
+        manager.journalRestore(key);
+    }
+    
+    boolean isBroken(long key) {
+        return brokenGlass.size() != 0 && brokenGlass.contains(key);
+    }
+    
+    /**
+     * Check if glass structure is only 1 block thick in any direction
+     * A structure like 4x4x1 should be breakable, but 4x4x2 should not
+     */
+    boolean isSingleThickness(Block block, long key) {
+        long now = regenerations.now();
+        if (key != BlockKey.EMPTY) {
+            int cached = thickness.get(key, now);
+            if (cached != ThicknessCache.UNKNOWN) {
+                return cached == ThicknessCache.SINGLE;
+            }
+        }
+        
+        boolean single = probeSingleThickness(block);
+        if (key != BlockKey.EMPTY) {
+            thickness.put(key, single, now);
+        }
+        return single;
+    }
+    
+    private boolean probeSingleThickness(Block block) {
+        // For each direction, check if there are glass blocks 2 deep
+        for (BlockFace face : ALL_FACES) {
+            if (hasGlassDepth(block, face, 2)) {
+                if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.TRACE)) {
+                    tracer.trace(Subsystem.BREAKING, "Glass at " + block.getLocation() + " is too thick in direction " + face);
+                }
+                return false;
+            }
+        }
+        
+        if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.TRACE)) {
+            tracer.trace(Subsystem.BREAKING, "Glass at " + block.getLocation() + " is single thickness - can break");
+        }
+        return true;
+    }
+    
+    /**
+     * Check if there are glass blocks at the specified depth in a direction
+     */
+    private boolean hasGlassDepth(Block startBlock, BlockFace direction, int depth) {
+        Block currentBlock = startBlock;
+        
+        for (int i = 0; i < depth; i++) {
+            currentBlock = currentBlock.getRelative(direction);
+            if (!manager.isBreakableGlass(currentBlock.getType())) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Break a glass block
+     */
+    void breakGlass(Block block, long key, MaterialRegistry.Profile profile) {
+        // Store original block data for exact regeneration
+        BlockData originalBlockData = block.getBlockData();
+        long due = regenerations.now() + profile.getRestoreTime() * 20L; // Convert to ticks
+        int jitter = plugin.getConfigManager().getRestoreJitterTicks();
+        if (jitter > 0) {
+            // Spread the restores of one break over a few ticks
+            due += ThreadLocalRandom.current().nextInt(jitter + 1);
+        }
+        track(key, originalBlockData, due);
+        
+        // Set to air by the mutation queue; being tracked already keeps it from breaking twice
+        mutations.queueBreak(key, originalBlockData);
+        
+        if (tracer.isEnabled(Subsystem.BREAKING, TraceLevel.DEBUG)) {
+            tracer.debug(Subsystem.BREAKING, "Glass broken at " + BlockKey.toString(key) + " (was " + originalBlockData.getMaterial() + ")");
+        }
+    }
+    
+    /**
+     * Apply a break or restore taken from the mutation queue
+     */
+    private void applyMutation(World world, long key, BlockData original, boolean restore) {
+        Block block = world.getBlockAt(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key));
+        if (restore) {
+            // Only regenerate if still air
+            if (block.getType() == Material.AIR) {
+                // Set the exact block data to preserve orientation, properties, etc.
+                place(block, original);
+                presence.markGlass(key, world.getMinHeight());
+                thickness.invalidate(key);
+                
+                // Queue restore effects; materials dropped from the registry since they broke keep the default sound
+                MaterialRegistry.Profile profile = manager.getMaterialProfile(original.getMaterial());
+                effects.addRestore(key, original.getMaterial(), profile != null ? profile.getRestoreSound() : Sound.BLOCK_GLASS_PLACE);
+                
+                if (tracer.isEnabled(Subsystem.REGENERATION, TraceLevel.DEBUG)) {
+                    tracer.debug(Subsystem.REGENERATION, "Glass regenerated at " + BlockKey.toString(key) + " (restored to " + original.getMaterial() + ")");
+                }
+            }
+            
+            // Clean up tracking
+            untrack(key);
+            return;
+        }
+        
+        // Something else replaced the glass while the break was queued
+        if (block.getType() != original.getMaterial()) {
+            untrack(key);
+            return;
+        }
+        place(block, air);
+        thickness.invalidate(key);
+        
+        // Queue break effects, played coalesced with the rest of the tick
+        MaterialRegistry.Profile profile = manager.getMaterialProfile(original.getMaterial());
+        effects.addBreak(key, original, profile != null ? profile.getBreakSound() : null);
+    }
+    
+    /**
+     * Set a block, without physics if configured. Connecting neighbours such
+     * as panes and bars are then updated directly instead of through a
+     * neighbour update; nothing else around the block is.
+     */
+    private void place(Block block, BlockData data) {
+        if (!plugin.getConfigManager().isPhysicsSuppressed()) {
+            block.setBlockData(data);
+            return;
+        }
+        block.setBlockData(data, false);
+        
+        boolean solid = !data.getMaterial().isAir();
+        for (BlockFace face : HORIZONTAL_FACES) {
+            Block neighbour = block.getRelative(face);
+            BlockData neighbourData = neighbour.getBlockData();
+            if (!(neighbourData instanceof MultipleFacing)) {
+                continue;
+            }
+            MultipleFacing facing = (MultipleFacing) neighbourData;
+            BlockFace towards = face.getOppositeFace();
+            if (!facing.getAllowedFaces().contains(towards)) {
+                continue;
+            }
+            // Connections are mutual between connecting blocks, so a restored pane says
+            // whether its neighbour connected to it; anything else solid is connected to
+            boolean connect = data instanceof MultipleFacing ? ((MultipleFacing) data).hasFace(face) : solid;
+            if (facing.hasFace(towards) != connect) {
+                facing.setFace(towards, connect);
+                neighbour.setBlockData(facing, false);
+            }
+        }
+    }
+    
+    /**
+     * Called by the regeneration wheel when an entry comes due
+     */
+    private void regenerateDue(long key, long due) {
+        int slot = brokenGlass.indexOf(key);
+        
+        // Skip entries that were restored early or re-broken with a later due tick
+        if (slot < 0 || brokenGlass.dueAt(slot) != due) {
+            return;
+        }
+        
+        overdue.add(key);
+    }
+    
+    /**
+     * Start regenerating overdue blocks, oldest first, until the per tick cap
+     * or time budget is reached; the rest carry over to the following ticks.
+     * Under load both shrink, down to nothing at all.
+     */
+    private void regenerateOverdue(ConfigSnapshot config, LoadLevel load) {
+        if (overdue.isEmpty() || load.getRestoreScale() <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        long budget = (long) (config.restoreBudgetMicros * 1000L * load.getRestoreScale());
+        int limit = config.maxRestoresPerTick > 0
+                ? Math.max(1, (int) (config.maxRestoresPerTick * load.getRestoreScale())) : Integer.MAX_VALUE;
+        long now = regenerations.now();
+        int started = 0;
+        while (!overdue.isEmpty() && started < limit) {
+            if ((started & 7) == 7 && System.nanoTime() - start >= budget) {
+                break;
+            }
+            long key = overdue.poll();
+            int slot = brokenGlass.indexOf(key);
+            
+            // Skip entries restored while they waited, e.g. with their chunk
+            if (slot < 0 || brokenGlass.dueAt(slot) > now) {
+                continue;
+            }
+            
+            // Never force a chunk load; overdue records are restored when the chunk loads
+            World world = worlds.world(BlockKey.world(key));
+            if (world != null && !world.isChunkLoaded(BlockKey.chunkX(key), BlockKey.chunkZ(key))) {
+                continue;
+            }
+            
+            regenerateGlass(key, slot);
+            started++;
+        }
+        
+        if (!overdue.isEmpty()) {
+            if (tracer.isEnabled(Subsystem.REGENERATION, TraceLevel.TRACE)) {
+                tracer.trace(Subsystem.REGENERATION, "Regeneration backlog of " + overdue.size() + " blocks carried over");
+            }
+        }
+    }
+    
+    /**
+     * Move the broken glass of an unloading chunk into its persistent data
+     */
+    void onChunkUnload(Chunk chunk, long chunkKey, boolean save) {
+        presence.onChunkUnload(chunk);
+        loadedChunks.remove(chunkKey);
+        
+        // Apply queued changes while the chunk is still loaded
+        mutations.flushChunk(chunk.getWorld(), chunkKey);
+        LongHashSet keys = brokenGlass.chunk(chunkKey);
+        if (keys == null) {
+            return;
+        }
+        
+        int count = keys.size();
+        chunkKeys = keys.toArray(chunkKeys);
+        
+        // The chunk won't be written to disk, so restore everything while it is still loaded
+        if (!save) {
+            for (int i = 0; i < count; i++) {
+                regenerateGlass(chunkKeys[i], brokenGlass.indexOf(chunkKeys[i]));
+            }
+            mutations.flushChunk(chunk.getWorld(), chunkKey);
+            return;
+        }
+        
+        if (!saveChunkData(chunk, count)) {
+            return;
+        }
+        
+        // Pending wheel entries are dropped lazily once the records are gone; the
+        // journal keeps them as outstanding until the chunk loads again
+        for (int i = 0; i < count; i++) {
+            brokenGlass.remove(chunkKeys[i]);
+        }
+        if (tracer.isEnabled(Subsystem.CHUNKS, TraceLevel.DEBUG)) {
+            tracer.debug(Subsystem.CHUNKS, "Saved " + count + " broken glass blocks with chunk " + chunk.getX() + "," + chunk.getZ());
+        }
+    }
+    
+    /**
+     * Write the first count blocks of {@link #chunkKeys} into the persistent data of their chunk
+     *
+     * @return false if the data could not be written
+     */
+    private boolean saveChunkData(Chunk chunk, int count) {
+        long now = regenerations.now();
+        long nowMillis = System.currentTimeMillis();
+        ChunkGlassCodec.Writer writer = new ChunkGlassCodec.Writer();
+        try {
+            for (int i = 0; i < count; i++) {
+                long key = chunkKeys[i];
+                int slot = brokenGlass.indexOf(key);
+                long deadline = nowMillis + Math.max(0, brokenGlass.dueAt(slot) - now) * 50;
+                writer.add(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key), brokenGlass.blockDataAt(slot), deadline);
+            }
+            chunk.getPersistentDataContainer().set(chunkDataKey, PersistentDataType.BYTE_ARRAY, writer.toByteArray());
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save broken glass for chunk " + chunk.getX() + "," + chunk.getZ() + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Restore or resume tracking of the broken glass saved in a loading chunk,
+     * and apply any regenerations that came due while it was unloaded
+     */
+    void onChunkLoad(Chunk chunk, long chunkKey) {
+        World world = chunk.getWorld();
+        long now = regenerations.now();
+        int[] restored = new int[1];
+        if (chunkKey != BlockKey.EMPTY) {
+            loadedChunks.add(chunkKey);
+        }
+        
+        PersistentDataContainer container = chunk.getPersistentDataContainer();
+        byte[] data = container.get(chunkDataKey, PersistentDataType.BYTE_ARRAY);
+        if (data != null) {
+            container.remove(chunkDataKey);
+            long nowMillis = System.currentTimeMillis();
+            try {
+                ChunkGlassCodec.decode(data, (localX, y, localZ, blockData, deadline) -> {
+                    Block block = chunk.getBlock(localX, y, localZ);
+                    long key = manager.keyOf(world, block.getX(), y, block.getZ());
+                    if (block.getType() != Material.AIR) {
+                        manager.journalRestore(key);
+                        return;
+                    }
+                    long remaining = (deadline - nowMillis + 49) / 50;
+                    if (remaining <= 0 || key == BlockKey.EMPTY) {
+                        block.setBlockData(blockData);
+                        presence.markGlass(key, world.getMinHeight());
+                        thickness.invalidate(key);
+                        manager.journalRestore(key);
+                        restored[0]++;
+                        return;
+                    }
+                    track(key, blockData, now + remaining);
+                });
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to read broken glass for chunk " + chunk.getX() + "," + chunk.getZ() + ": " + e.getMessage());
+            }
+        }
+        
+        LongHashSet keys = chunkKey == BlockKey.EMPTY ? null : brokenGlass.chunk(chunkKey);
+        if (keys != null) {
+            int count = keys.size();
+            chunkKeys = keys.toArray(chunkKeys);
+            for (int i = 0; i < count; i++) {
+                int slot = brokenGlass.indexOf(chunkKeys[i]);
+                if (brokenGlass.dueAt(slot) <= now) {
+                    regenerateGlass(chunkKeys[i], slot);
+                    restored[0]++;
+                }
+            }
+            if (restored[0] > 0) {
+                mutations.flushChunk(world, chunkKey);
+            }
+        }
+        
+        if (restored[0] > 0) {
+            if (tracer.isEnabled(Subsystem.CHUNKS, TraceLevel.DEBUG)) {
+                tracer.debug(Subsystem.CHUNKS, "Restored " + restored[0] + " broken glass blocks on load of chunk " + chunk.getX() + "," + chunk.getZ());
+            }
+        }
+        
+        // Index after the restores above so the snapshot already contains them
+        presence.onChunkLoad(chunk);
+    }
+    
+    /**
+     * Regenerate glass at exact location with exact block data
+     */
+    private void regenerateGlass(long key, int slot) {
+        if (worlds.world(BlockKey.world(key)) == null) {
+            untrack(key);
+            return;
+        }
+        // Tracking ends once the mutation queue has applied the restore
+        mutations.queueRestore(key, brokenGlass.blockDataAt(slot));
+    }
+    
+    /**
+     * Take part in a restore of all broken glass, see {@link GlassManager#restoreAllGlass}
+     */
+    void startRestore(GlassManager.RestoreAll job) {
+        restoring = job;
+        restoreChunks = brokenGlass.chunkKeys();
+        restoreNext = 0;
+        job.total.addAndGet(brokenGlass.size());
+        if (restoreChunks.length == 0) {
+            finishRestore();
+        }
+    }
+    
+    /**
+     * Work through the chunks of a running restore all until the budget is used up
+     */
+    private void continueRestore(ConfigSnapshot config) {
+        if (restoring == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        long budget = config.restoreAllBudgetMicros * 1000L;
+        long now = regenerations.now();
+        
+        // Always handle at least one chunk so the restore finishes however small the budget
+        do {
+            restoreChunk(restoreChunks[restoreNext++], now);
+        } while (restoreNext < restoreChunks.length && System.nanoTime() - start < budget);
+        
+        if (restoreNext == restoreChunks.length) {
+            finishRestore();
+        }
+    }
+    
+    private void finishRestore() {
+        GlassManager.RestoreAll job = restoring;
+        restoring = null;
+        restoreChunks = null;
+        job.running.decrementAndGet();
+    }
+    
+    private void restoreChunk(long chunkKey, long now) {
+        // Gone if the chunk unloaded or everything in it regenerated since the restore started
+        LongHashSet keys = brokenGlass.chunk(chunkKey);
+        if (keys == null) {
+            return;
+        }
+        int count = keys.size();
+        chunkKeys = keys.toArray(chunkKeys);
+        
+        World world = worlds.world(BlockKey.world(chunkKey));
+        if (world != null && !world.isChunkLoaded(BlockKey.chunkX(chunkKey), BlockKey.chunkZ(chunkKey))) {
+            // Never force a chunk load; overdue records are restored when the chunk loads
+            for (int i = 0; i < count; i++) {
+                int slot = brokenGlass.indexOf(chunkKeys[i]);
+                if (brokenGlass.dueAt(slot) > now) {
+                    track(chunkKeys[i], brokenGlass.blockDataAt(slot), now);
+                }
+            }
+            restoring.deferred.addAndGet(count);
+            return;
+        }
+        
+        for (int i = 0; i < count; i++) {
+            regenerateGlass(chunkKeys[i], brokenGlass.indexOf(chunkKeys[i]));
+        }
+        if (world != null) {
+            mutations.flushChunk(world, chunkKey);
+        }
+        restoring.restored.addAndGet(count);
+    }
+    
+    /**
+     * Restore all broken glass of the partition synchronously and stop tracking it
+     *
+     * @param keepUnloaded leave glass in unloaded chunks to the journal instead of loading them
+     * @return the number of blocks left in unloaded chunks
+     */
+    int regenerateAll(boolean keepUnloaded) {
+        if (restoring != null) {
+            finishRestore();
+        }
+        
+        // Apply queued breaks and restores first so the loop below sees their result
+        mutations.flushAll();
+        
+        // Restore exact block data; pending wheel entries are dropped with the records
+        int kept = 0;
+        for (long chunkKey : brokenGlass.chunkKeys()) {
+            World world = worlds.world(BlockKey.world(chunkKey));
+            if (world == null) {
+                continue;
+            }
+            LongHashSet keys = brokenGlass.chunk(chunkKey);
+            int count = keys.size();
+            if (keepUnloaded && !world.isChunkLoaded(BlockKey.chunkX(chunkKey), BlockKey.chunkZ(chunkKey))) {
+                kept += count;
+                continue;
+            }
+            
+            chunkKeys = keys.toArray(chunkKeys);
+            for (int i = 0; i < count; i++) {
+                long key = chunkKeys[i];
+                Block block = world.getBlockAt(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key));
+                if (block.getType() == Material.AIR) {
+                    block.setBlockData(brokenGlass.blockDataAt(brokenGlass.indexOf(key)));
+                    presence.markGlass(key, world.getMinHeight());
+                    thickness.invalidate(key);
+                }
+                manager.journalRestore(key);
+            }
+        }
+        
+        brokenGlass.clear();
+        regenerations.clear();
+        overdue.clear();
+        return kept;
+    }
+    
+    /**
+     * Save all broken glass of the partition into the persistent data of its
+     * chunks, to be restored when they load again, and stop tracking it.
+     * Changes no blocks, so queued breaks and restores are dropped; loading
+     * the chunk sorts out both.
+     *
+     * @return the number of blocks saved
+     */
+    int saveAll() {
+        int saved = 0;
+        for (long chunkKey : brokenGlass.chunkKeys()) {
+            World world = worlds.world(BlockKey.world(chunkKey));
+            int cx = BlockKey.chunkX(chunkKey);
+            int cz = BlockKey.chunkZ(chunkKey);
+            if (world == null || !world.isChunkLoaded(cx, cz)) {
+                continue;
+            }
+            LongHashSet keys = brokenGlass.chunk(chunkKey);
+            int count = keys.size();
+            chunkKeys = keys.toArray(chunkKeys);
+            if (saveChunkData(world.getChunkAt(cx, cz), count)) {
+                saved += count;
+            }
+        }
+        clear();
+        return saved;
+    }
+    
+    /**
+     * Rebuild the glass presence index of every loaded chunk of the partition
+     */
+    void reindex() {
+        thickness.clear();
+        int count = loadedChunks.size();
+        chunkKeys = loadedChunks.toArray(chunkKeys);
+        for (int i = 0; i < count; i++) {
+            World world = worlds.world(BlockKey.world(chunkKeys[i]));
+            int cx = BlockKey.chunkX(chunkKeys[i]);
+            int cz = BlockKey.chunkZ(chunkKeys[i]);
+            if (world != null && world.isChunkLoaded(cx, cz)) {
+                presence.onChunkLoad(world.getChunkAt(cx, cz));
+            }
+        }
+    }
+    
+    void markGlass(long key, int worldMinY) {
+        presence.markGlass(key, worldMinY);
+        thickness.invalidate(key);
+    }
+    
+    void markRemoved(long key) {
+        presence.markRemoved(key);
+        thickness.invalidate(key);
+    }
+    
+    boolean mayContainGlass(int worldIndex, int worldMinY, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return presence.mayContainGlass(worldIndex, worldMinY, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+    
+    int getBrokenGlassCount() {
+        return brokenGlass.size();
+    }
+    
+    int getRegenerationBacklog() {
+        return overdue.size();
+    }
+    
+    int getQueuedMutationCount() {
+        return mutations.size();
+    }
+    
+    /**
+     * Drop all state without touching the world
+     */
+    void clear() {
+        brokenGlass.clear();
+        regenerations.clear();
+        overdue.clear();
+        presence.clear();
+        thickness.clear();
+        effects.clear();
+        mutations.clear();
+        loadedChunks.clear();
+        restoring = null;
+        restoreChunks = null;
+    }
+}
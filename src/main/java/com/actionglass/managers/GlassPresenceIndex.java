@@ -0,0 +1,241 @@
+package com.actionglass.managers;
+
+import com.actionglass.ActionGlass;
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.LongHashSet;
+import com.actionglass.util.LongLongHashMap;
+import com.actionglass.util.LongObjectHashMap;
+import com.actionglass.util.WorldIndex;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Per chunk section index of where breakable glass may be, so area scans can
+ * skip chunks and sections that hold none without touching a single block
+ *
+ * Every loaded chunk gets a bitmask with one bit per 16 block section, built
+ * from a snapshot on an async thread. Bits are only ever set between builds:
+ * placed or restored glass sets its bit immediately, while removed glass marks
+ * the chunk for a rebuild. A chunk that has not been indexed yet reports every
+ * section as possibly holding glass. Only used by the thread owning its
+ * partition, except for the scan.
+ */
+class GlassPresenceIndex {
+    
+    private static final long UNKNOWN = -1L;
+    private static final int REBUILD_INTERVAL = 20;
+    
+    private final ActionGlass plugin;
+    private final GlassManager glassManager;
+    private final WorldIndex worlds;
+    private final LongLongHashMap sections = new LongLongHashMap();
+    private final LongObjectHashMap<Build> building = new LongObjectHashMap<>();
+    private final LongHashSet stale = new LongHashSet();
+    private final ConcurrentLinkedQueue<Build> built = new ConcurrentLinkedQueue<>();
+    private List<Build> captured = new ArrayList<>();
+    private long[] staleKeys = new long[64];
+    private int ticks;
+    
+    GlassPresenceIndex(ActionGlass plugin, GlassManager glassManager, WorldIndex worlds) {
+        this.plugin = plugin;
+        this.glassManager = glassManager;
+        this.worlds = worlds;
+    }
+    
+    /**
+     * A chunk snapshot waiting to be scanned, and the bits marked since it was taken
+     */
+    private static final class Build {
+        final long chunkKey;
+        final ChunkSnapshot snapshot;
+        final int minY;
+        final int maxY;
+        long marks;
+        long mask;
+        
+        Build(long chunkKey, ChunkSnapshot snapshot, int minY, int maxY) {
+            this.chunkKey = chunkKey;
+            this.snapshot = snapshot;
+            this.minY = minY;
+            this.maxY = maxY;
+        }
+    }
+    
+    private static long sectionBit(int section) {
+        return 1L << Math.min(section, 63);
+    }
+    
+    private long chunkKeyOf(Chunk chunk) {
+        if (!BlockKey.fits(chunk.getX() << 4, 0, chunk.getZ() << 4)) {
+            return BlockKey.EMPTY;
+        }
+        int index = worlds.indexOf(chunk.getWorld());
+        return index < 0 ? BlockKey.EMPTY : BlockKey.chunkKey(index, chunk.getX(), chunk.getZ());
+    }
+    
+    /**
+     * Snapshot a chunk for indexing on the next flush
+     */
+    void onChunkLoad(Chunk chunk) {
+        long chunkKey = chunkKeyOf(chunk);
+        if (chunkKey == BlockKey.EMPTY) {
+            return;
+        }
+        World world = chunk.getWorld();
+        Build build = new Build(chunkKey, chunk.getChunkSnapshot(false, false, false), world.getMinHeight(), world.getMaxHeight());
+        sections.remove(chunkKey);
+        stale.remove(chunkKey);
+        building.put(chunkKey, build);
+        captured.add(build);
+    }
+    
+    void onChunkUnload(Chunk chunk) {
+        int index = worlds.find(chunk.getWorld());
+        if (index < 0) {
+            return;
+        }
+        long chunkKey = BlockKey.chunkKey(index, chunk.getX(), chunk.getZ());
+        sections.remove(chunkKey);
+        building.remove(chunkKey);
+        stale.remove(chunkKey);
+    }
+    
+    /**
+     * Record that a block may now be glass
+     */
+    void markGlass(long key, int worldMinY) {
+        if (key == BlockKey.EMPTY) {
+            return;
+        }
+        long chunkKey = BlockKey.chunkKey(key);
+        long bit = sectionBit((BlockKey.y(key) - worldMinY) >> 4);
+        sections.orIfPresent(chunkKey, bit);
+        Build build = building.get(chunkKey);
+        if (build != null) {
+            build.marks |= bit;
+        }
+    }
+    
+    /**
+     * Record that glass was removed from a chunk, so its sections get rebuilt
+     */
+    void markRemoved(long key) {
+        long chunkKey = BlockKey.chunkKey(key);
+        if (sections.containsKey(chunkKey)) {
+            stale.add(chunkKey);
+        }
+    }
+    
+    /**
+     * Check whether any section overlapping a block range may hold glass
+     */
+    boolean mayContainGlass(int worldIndex, int worldMinY, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int low = Math.max(0, (minY - worldMinY) >> 4);
+        int high = Math.min(63, (maxY - worldMinY) >> 4);
+        if (high < low) {
+            return false;
+        }
+        long range = (-1L >>> (63 - high)) & (-1L << low);
+        
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                if ((sections.get(BlockKey.chunkKey(worldIndex, cx, cz), UNKNOWN) & range) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Publish finished builds, hand captured snapshots to an async scan and
+     * periodically rebuild chunks that lost glass. Called once per tick.
+     */
+    void flush() {
+        Build build;
+        while ((build = built.poll()) != null) {
+            // Chunks that unloaded or were captured again meanwhile are dropped
+            if (building.get(build.chunkKey) == build) {
+                building.remove(build.chunkKey);
+                sections.put(build.chunkKey, build.mask | build.marks);
+            }
+        }
+        
+        if (++ticks >= REBUILD_INTERVAL) {
+            ticks = 0;
+            rebuildStale();
+        }
+        
+        if (!captured.isEmpty()) {
+            List<Build> batch = captured;
+            captured = new ArrayList<>();
+            plugin.getTaskScheduler().runAsync(() -> {
+                for (Build b : batch) {
+                    b.mask = scan(b.snapshot, b.minY, b.maxY);
+                    built.add(b);
+                }
+            });
+        }
+    }
+    
+    private void rebuildStale() {
+        int count = stale.size();
+        if (count == 0) {
+            return;
+        }
+        staleKeys = stale.toArray(staleKeys);
+        stale.clear();
+        for (int i = 0; i < count; i++) {
+            long chunkKey = staleKeys[i];
+            World world = worlds.world(BlockKey.world(chunkKey));
+            int cx = BlockKey.chunkX(chunkKey);
+            int cz = BlockKey.chunkZ(chunkKey);
+            if (world != null && world.isChunkLoaded(cx, cz)) {
+                onChunkLoad(world.getChunkAt(cx, cz));
+            }
+        }
+    }
+    
+    /**
+     * Find the sections of a snapshot holding breakable glass. Runs on an async thread.
+     */
+    private long scan(ChunkSnapshot snapshot, int minY, int maxY) {
+        long mask = 0;
+        int count = (maxY - minY + 15) >> 4;
+        for (int section = 0; section < count; section++) {
+            if (snapshot.isSectionEmpty(section)) {
+                continue;
+            }
+            long bit = sectionBit(section);
+            if ((mask & bit) != 0) {
+                continue;
+            }
+            int top = Math.min(maxY, minY + (section + 1) * 16);
+            search:
+            for (int y = minY + section * 16; y < top; y++) {
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        if (glassManager.isBreakableGlass(snapshot.getBlockType(x, y, z))) {
+                            mask |= bit;
+                            break search;
+                        }
+                    }
+                }
+            }
+        }
+        return mask;
+    }
+    
+    void clear() {
+        sections.clear();
+        building.clear();
+        stale.clear();
+        captured.clear();
+        built.clear();
+    }
+}
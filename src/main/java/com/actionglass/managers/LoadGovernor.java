@@ -0,0 +1,147 @@
+package com.actionglass.managers;
+
+import com.actionglass.ActionGlass;
+import com.actionglass.config.ConfigSnapshot;
+import org.bukkit.Server;
+
+import java.lang.reflect.Method;
+
+/**
+ * Picks the {@link LoadLevel} from how long recent ticks took
+ *
+ * The tick time is Paper's average over the last 100 ticks where the server
+ * has it. Elsewhere it is the time between two ticks of the plugin, which
+ * reads 50 ms for every tick that finished in time, so there the thresholds
+ * are raised to start above that. Either is smoothed. The level goes up as
+ * soon as the smoothed time crosses a threshold but only comes down one level
+ * at a time, after staying well below the threshold of the current level for
+ * a while, so it does not flap around a threshold.
+ * Sampled on the main thread or, on Folia, the global region thread.
+ */
+public final class LoadGovernor {
+    
+    // Weight of a new sample in the smoothed tick time
+    private static final double SMOOTHING = 0.1;
+    
+    // Longest tick a single sample counts as, so one hiccup such as a world save is not mistaken for overload
+    private static final double MAX_SAMPLE = 250.0;
+    
+    // Time between ticks of a server keeping up
+    private static final double TICK_MILLIS = 50.0;
+    
+    private final ActionGlass plugin;
+    private final Server server;
+    private Method averageTickTime;
+    private long lastTick;
+    private double mspt;
+    private int calmTicks;
+    private volatile double reportedMspt;
+    private volatile LoadLevel level = LoadLevel.NORMAL;
+    
+    LoadGovernor(ActionGlass plugin) {
+        this.plugin = plugin;
+        this.server = plugin.getServer();
+        try {
+            averageTickTime = server.getClass().getMethod("getAverageTickTime");
+        } catch (NoSuchMethodException e) {
+            averageTickTime = null;
+        }
+    }
+    
+    /**
+     * Take a sample and move between levels. Called once per tick.
+     */
+    void tick(ConfigSnapshot config) {
+        double sample = sample();
+        if (sample < 0) {
+            return;
+        }
+        mspt = mspt == 0 ? sample : mspt + (sample - mspt) * SMOOTHING;
+        reportedMspt = mspt;
+        
+        if (!config.loadSheddingEnabled) {
+            setLevel(LoadLevel.NORMAL);
+            return;
+        }
+        
+        // Go up right away, as far as the tick time reaches
+        LoadLevel[] levels = LoadLevel.values();
+        int current = level.ordinal();
+        int target = current;
+        while (target < levels.length - 1 && mspt >= threshold(config, target)) {
+            target++;
+        }
+        if (target > current) {
+            calmTicks = 0;
+            setLevel(levels[target]);
+            return;
+        }
+        
+        // Come down one level once the tick time has stayed clear of this level's threshold
+        if (current > 0 && mspt < threshold(config, current - 1) - config.loadSheddingRecoverMargin) {
+            if (++calmTicks >= config.loadSheddingRecoverTicks) {
+                calmTicks = 0;
+                setLevel(levels[current - 1]);
+            }
+        } else {
+            calmTicks = 0;
+        }
+    }
+    
+    /**
+     * Get the tick time at which the level above a level starts
+     */
+    private double threshold(ConfigSnapshot config, int level) {
+        double threshold = config.loadSheddingThreshold(level);
+        if (averageTickTime == null) {
+            // Leave each level room to recover above the 50 ms every tick on time reads as
+            threshold = Math.max(threshold, TICK_MILLIS + config.loadSheddingRecoverMargin * (level + 2));
+        }
+        return threshold;
+    }
+    
+    /**
+     * Get the duration of the last tick in milliseconds
+     *
+     * @return the duration, or -1 if there is nothing to measure yet
+     */
+    private double sample() {
+        long now = System.nanoTime();
+        long last = lastTick;
+        lastTick = now;
+        
+        if (averageTickTime != null) {
+            try {
+                return Math.min(MAX_SAMPLE, ((Number) averageTickTime.invoke(server)).doubleValue());
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Not available on this server after all, e.g. on Folia; measure between ticks instead
+                averageTickTime = null;
+            }
+        }
+        return last == 0 ? -1 : Math.min(MAX_SAMPLE, (now - last) / 1_000_000.0);
+    }
+    
+    private void setLevel(LoadLevel next) {
+        LoadLevel previous = level;
+        if (next == previous) {
+            return;
+        }
+        level = next;
+        plugin.getLogger().info("Load level " + previous.getKey() + " -> " + next.getKey()
+                + String.format(" at %.1f ms per tick", mspt));
+    }
+    
+    /**
+     * Get the current level, from any thread
+     */
+    public LoadLevel getLevel() {
+        return level;
+    }
+    
+    /**
+     * Get the smoothed tick time in milliseconds the level is based on
+     */
+    public double getTickTime() {
+        return reportedMspt;
+    }
+}
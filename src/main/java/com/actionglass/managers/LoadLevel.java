@@ -0,0 +1,71 @@
+package com.actionglass.managers;
+
+import java.util.Locale;
+
+/**
+ * How far glass breaking is scaled back to take load off a struggling server
+ */
+public enum LoadLevel {
+    
+    NORMAL(1.0, 1.0, 1.0, 1.0, false),
+    ELEVATED(0.75, 0.5, 0.75, 0.5, false),
+    HIGH(0.5, 0.25, 0.5, 0.0, false),
+    CRITICAL(0.5, 0.0, 0.25, 0.0, true);
+    
+    private final double radiusScale;
+    private final double particleScale;
+    private final double volumeScale;
+    private final double restoreScale;
+    private final boolean movementPaused;
+    
+    LoadLevel(double radiusScale, double particleScale, double volumeScale, double restoreScale, boolean movementPaused) {
+        this.radiusScale = radiusScale;
+        this.particleScale = particleScale;
+        this.volumeScale = volumeScale;
+        this.restoreScale = restoreScale;
+        this.movementPaused = movementPaused;
+    }
+    
+    /**
+     * Name used for this level in messages and trace output
+     */
+    public String getKey() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Factor applied to the break radius of movement
+     */
+    public double getRadiusScale() {
+        return radiusScale;
+    }
+    
+    /**
+     * Factor applied to particle counts and the particle budget
+     */
+    public double getParticleScale() {
+        return particleScale;
+    }
+    
+    /**
+     * Factor applied to the volume of break and restore sounds
+     */
+    public double getVolumeScale() {
+        return volumeScale;
+    }
+    
+    /**
+     * Factor applied to the regeneration budget; at 0 overdue regenerations
+     * wait until the level drops again
+     */
+    public double getRestoreScale() {
+        return restoreScale;
+    }
+    
+    /**
+     * Check if movement no longer breaks glass at all
+     */
+    public boolean isMovementPaused() {
+        return movementPaused;
+    }
+}
@@ -1,118 +1,253 @@
 package com.actionglass.managers;
 
 import com.actionglass.ActionGlass;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
+import com.actionglass.debug.Subsystem;
+import com.actionglass.debug.TraceLevel;
+import com.actionglass.scheduler.TaskScheduler;
+import com.actionglass.storage.BinaryStatisticsStore;
+import com.actionglass.storage.StatisticsStore;
+import com.actionglass.storage.YamlStatisticsStore;
+import com.actionglass.util.Leaderboard;
+import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages player statistics for glass breaking
+ * 
+ * Counts are read from the {@link StatisticsStore} on load into a
+ * {@link Leaderboard}, which keeps players ranked and the server total up to
+ * date as breaks are added. Changed players are tracked as dirty. Saving
+ * copies just their counts on the main thread and hands them to a background
+ * writer, which stores them as one batch. Counts are updated from every region
+ * thread on Folia, so access to the leaderboard is synchronized; the
+ * breakdown by cause, world and material is striped and takes no lock.
  */
 public class StatisticsManager {
     
     private final ActionGlass plugin;
-    private final Map<UUID, Integer> playerGlassBreaks = new ConcurrentHashMap<>();
-    private final File statsFile;
-    private FileConfiguration statsConfig;
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final BreakCounters counters = new BreakCounters();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private volatile boolean resetPending;
+    private final ExecutorService writer;
+    private TaskScheduler.Task autosaveTask;
+    private StatisticsStore store;
     
     public StatisticsManager(ActionGlass plugin) {
         this.plugin = plugin;
-        this.statsFile = new File(plugin.getDataFolder(), "statistics.yml");
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ActionGlass-Statistics");
+            thread.setDaemon(true);
+            return thread;
+        });
         loadStatistics();
+        startAutosave();
     }
     
     /**
-     * Load statistics from file
+     * Save dirty statistics in the background at the configured interval
      */
-    public void loadStatistics() {
-        if (!statsFile.exists()) {
-            try {
-                plugin.getDataFolder().mkdirs();
-                statsFile.createNewFile();
-            } catch (IOException e) {
-                plugin.getLogger().severe("Could not create statistics file: " + e.getMessage());
-            }
+    private void startAutosave() {
+        long interval = plugin.getConfigManager().getStatisticsAutosaveInterval() * 20L;
+        if (interval <= 0) {
+            return;
         }
+        autosaveTask = plugin.getTaskScheduler().runGlobalTimer(this::saveStatisticsAsync, interval, interval);
+    }
+    
+    /**
+     * Open the configured statistics store, migrating statistics.yml to the
+     * binary store the first time it is used
+     */
+    public synchronized void loadStatistics() {
+        plugin.getDataFolder().mkdirs();
+        File yamlFile = new File(plugin.getDataFolder(), "statistics.yml");
+        File binaryFile = new File(plugin.getDataFolder(), "statistics.dat");
+        boolean migrate = false;
         
-        statsConfig = YamlConfiguration.loadConfiguration(statsFile);
+        if ("yaml".equals(plugin.getConfigManager().getStatisticsStorage())) {
+            store = new YamlStatisticsStore(yamlFile, plugin.getLogger());
+        } else {
+            migrate = yamlFile.exists() && !binaryFile.exists();
+            store = new BinaryStatisticsStore(binaryFile, plugin.getLogger());
+        }
         
-        // Load player statistics
-        if (statsConfig.contains("players")) {
-            for (String uuidString : statsConfig.getConfigurationSection("players").getKeys(false)) {
-                try {
-                    UUID uuid = UUID.fromString(uuidString);
-                    int breaks = statsConfig.getInt("players." + uuidString + ".glass-breaks", 0);
-                    playerGlassBreaks.put(uuid, breaks);
-                } catch (IllegalArgumentException e) {
-                    plugin.getLogger().warning("Invalid UUID in statistics: " + uuidString);
-                }
+        try {
+            if (migrate) {
+                migrate(yamlFile, binaryFile);
+            } else {
+                store.open();
+            }
+            // Ranks and the server total need every count, read in one sequential pass over the store
+            store.forEach(leaderboard::set);
+            plugin.getLogger().info("Loaded statistics for " + leaderboard.size() + " players.");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not open statistics, they will not be saved: " + e.getMessage());
+            store = null;
+        }
+    }
+    
+    /**
+     * Copy every player from statistics.yml into the new binary store and set
+     * the YAML file aside, so this only happens once
+     */
+    private void migrate(File yamlFile, File binaryFile) throws IOException {
+        YamlStatisticsStore source = new YamlStatisticsStore(yamlFile, plugin.getLogger());
+        Map<UUID, Integer> counts = new HashMap<>();
+        try {
+            source.open();
+            source.forEach(counts::put);
+            store.open();
+            store.saveBatch(counts, false);
+        } catch (IOException e) {
+            try {
+                store.close();
+            } catch (IOException ignored) {
             }
+            // Leave statistics.yml as it is for the next attempt
+            binaryFile.delete();
+            throw new IOException("Could not migrate statistics.yml: " + e.getMessage(), e);
         }
         
-        plugin.getLogger().info("Loaded statistics for " + playerGlassBreaks.size() + " players.");
+        File migrated = new File(yamlFile.getPath() + ".migrated");
+        if (!yamlFile.renameTo(migrated)) {
+            plugin.getLogger().warning("Could not rename statistics.yml to " + migrated.getName() + ", please remove it.");
+        }
+        plugin.getLogger().info("Migrated statistics for " + counts.size() + " players to " + binaryFile.getName() + ".");
+    }
+    
+    /**
+     * Copy the counts of every player changed since the last save
+     * 
+     * @return the changed counts, with null for players that were reset
+     */
+    private synchronized Map<UUID, Integer> takeDirty() {
+        Map<UUID, Integer> changes = new HashMap<>();
+        for (UUID uuid : dirty) {
+            dirty.remove(uuid);
+            int count = leaderboard.get(uuid);
+            changes.put(uuid, count == 0 ? null : count);
+        }
+        return changes;
+    }
+    
+    /**
+     * Queue the changed statistics for writing on the background thread
+     */
+    public void saveStatisticsAsync() {
+        boolean reset = resetPending;
+        resetPending = false;
+        Map<UUID, Integer> changes = takeDirty();
+        if (changes.isEmpty() && !reset) {
+            return;
+        }
+        writer.execute(() -> write(changes, reset));
     }
     
     /**
-     * Save statistics to file
+     * Save statistics to file and wait for the write to finish (used on plugin disable)
      */
     public void saveStatistics() {
+        if (autosaveTask != null) {
+            autosaveTask.cancel();
+            autosaveTask = null;
+        }
+        saveStatisticsAsync();
+        writer.shutdown();
         try {
-            // Clear existing player data
-            statsConfig.set("players", null);
-            
-            // Save player statistics
-            for (Map.Entry<UUID, Integer> entry : playerGlassBreaks.entrySet()) {
-                String uuidString = entry.getKey().toString();
-                statsConfig.set("players." + uuidString + ".glass-breaks", entry.getValue());
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Timed out waiting for statistics to be saved.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to close statistics: " + e.getMessage());
             }
-            
-            // Save last updated timestamp
-            statsConfig.set("last-updated", System.currentTimeMillis());
-            
-            statsConfig.save(statsFile);
-            plugin.debug("Statistics saved for " + playerGlassBreaks.size() + " players.");
-            
+        }
+    }
+    
+    /**
+     * Store a batch of changed counts. Runs on the writer thread.
+     */
+    private void write(Map<UUID, Integer> changes, boolean reset) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.saveBatch(changes, reset);
+            plugin.getTracer().debug(Subsystem.STATISTICS, "Statistics saved for {} changed players.", changes.size());
         } catch (IOException e) {
             plugin.getLogger().severe("Failed to save statistics: " + e.getMessage());
+            // Try these players again with the next save
+            dirty.addAll(changes.keySet());
+            if (reset) {
+                resetPending = true;
+            }
         }
     }
     
     /**
-     * Add a glass break for a player
+     * Add a glass break for a player, called once per broken block
      */
-    public void addGlassBreak(Player player) {
+    public void addGlassBreak(Player player, BreakCause cause, World world, Material material) {
         if (player == null) return;
         if (!plugin.getConfigManager().isStatisticsEnabled()) {
             return;
         }
         
+        // Only the leaderboard needs the monitor
         UUID uuid = player.getUniqueId();
-        int currentBreaks = playerGlassBreaks.getOrDefault(uuid, 0);
-        playerGlassBreaks.put(uuid, currentBreaks + 1);
+        counters.record(uuid, cause, world.getName(), material);
+        int breaks;
+        synchronized (this) {
+            breaks = leaderboard.add(uuid, 1);
+        }
+        // Marked dirty after the count changed, so a save in between picks it up next time
+        dirty.add(uuid);
         
-        plugin.debug("Added glass break for " + player.getName() + " (total: " + (currentBreaks + 1) + ")");
+        if (plugin.getTracer().isEnabled(Subsystem.STATISTICS, TraceLevel.TRACE)) {
+            plugin.getTracer().trace(Subsystem.STATISTICS, "Added " + cause.getKey() + " glass break for " + player.getName() + " (total: " + breaks + ")");
+        }
+    }
+    
+    /**
+     * Get the breaks of a player by cause, world and material since the server started
+     */
+    public BreakCounters.Breakdown getBreakdown(UUID uuid) {
+        return counters.read(uuid);
     }
     
     /**
      * Get glass breaks for a player
      */
-    public int getGlassBreaks(Player player) {
+    public synchronized int getGlassBreaks(Player player) {
         if (player == null) return 0;
-        return playerGlassBreaks.getOrDefault(player.getUniqueId(), 0);
+        return leaderboard.get(player.getUniqueId());
     }
     
     /**
      * Get glass breaks by UUID
      */
-    public int getGlassBreaks(UUID uuid) {
-        return playerGlassBreaks.getOrDefault(uuid, 0);
+    public synchronized int getGlassBreaks(UUID uuid) {
+        return leaderboard.get(uuid);
     }
     
     /**
@@ -121,7 +256,7 @@ public class StatisticsManager {
     public String getStats(Player player) {
         if (player == null) return "Player not found";
         int glassBreaks = getGlassBreaks(player);
-        int totalBreaks = getTotalGlassBreaks();
+        long totalBreaks = getTotalGlassBreaks();
         int trackedPlayers = getTrackedPlayerCount();
         
         StringBuilder stats = new StringBuilder();
@@ -143,40 +278,77 @@ public class StatisticsManager {
     /**
      * Get total glass breaks across all players
      */
-    public int getTotalGlassBreaks() {
-        return playerGlassBreaks.values().stream().mapToInt(Integer::intValue).sum();
+    public synchronized long getTotalGlassBreaks() {
+        return leaderboard.getTotal();
+    }
+    
+    /**
+     * Get top glass breakers, highest first
+     */
+    public synchronized Map<UUID, Integer> getTopGlassBreakers(int limit) {
+        Map<UUID, Integer> top = new LinkedHashMap<>();
+        leaderboard.forRange(0, limit, (rank, uuid, count) -> top.put(uuid, count));
+        return top;
+    }
+    
+    /**
+     * Visit a range of the leaderboard, starting at a 0-based position. The
+     * range is copied under the lock and visited once it is released, so the
+     * visitor may look up player names without holding up breaks on other threads.
+     */
+    public void forLeaderboardRange(int from, int limit, Leaderboard.Visitor visitor) {
+        int[] ranks;
+        UUID[] uuids;
+        int[] counts;
+        int[] size = new int[1];
+        synchronized (this) {
+            int length = Math.max(0, Math.min(limit, leaderboard.size() - from));
+            ranks = new int[length];
+            uuids = new UUID[length];
+            counts = new int[length];
+            leaderboard.forRange(from, length, (rank, uuid, count) -> {
+                ranks[size[0]] = rank;
+                uuids[size[0]] = uuid;
+                counts[size[0]++] = count;
+            });
+        }
+        for (int i = 0; i < size[0]; i++) {
+            visitor.accept(ranks[i], uuids[i], counts[i]);
+        }
     }
     
     /**
-     * Get top glass breakers
+     * Get the 1-based leaderboard rank of a player, or 0 if they have no breaks
      */
-    public Map<UUID, Integer> getTopGlassBreakers(int limit) {
-        return playerGlassBreaks.entrySet().stream()
-                .sorted(Map.Entry.<UUID, Integer>comparingByValue().reversed())
-                .limit(limit)
-                .collect(HashMap::new, (m, e) -> m.put(e.getKey(), e.getValue()), HashMap::putAll);
+    public synchronized int getRank(UUID uuid) {
+        return leaderboard.rank(uuid);
     }
     
     /**
      * Reset statistics for a player
      */
-    public void resetPlayerStats(UUID uuid) {
-        playerGlassBreaks.remove(uuid);
-        plugin.debug("Reset statistics for player: " + uuid);
+    public synchronized void resetPlayerStats(UUID uuid) {
+        leaderboard.remove(uuid);
+        counters.remove(uuid);
+        dirty.add(uuid);
+        plugin.getTracer().debug(Subsystem.STATISTICS, "Reset statistics for player: {}", uuid);
     }
     
     /**
      * Reset all statistics
      */
-    public void resetAllStats() {
-        playerGlassBreaks.clear();
+    public synchronized void resetAllStats() {
+        leaderboard.clear();
+        counters.clear();
+        dirty.clear();
+        resetPending = true;
         plugin.getLogger().info("All statistics have been reset.");
     }
     
     /**
      * Get the number of tracked players
      */
-    public int getTrackedPlayerCount() {
-        return playerGlassBreaks.size();
+    public synchronized int getTrackedPlayerCount() {
+        return leaderboard.size();
     }
 }
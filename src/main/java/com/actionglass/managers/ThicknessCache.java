@@ -0,0 +1,69 @@
+package com.actionglass.managers;
+
+import com.actionglass.util.BlockKey;
+import com.actionglass.util.LongLongHashMap;
+
+/**
+ * Remembers whether glass at a position is single thickness
+ *
+ * The answer depends on the blocks up to 2 away along each axis, so a change
+ * to any block invalidates the entries of those 12 neighbours. Entries also
+ * expire after a few seconds to cover changes made without any event, e.g.
+ * by pistons or other plugins. Only used by the thread owning its partition.
+ */
+final class ThicknessCache {
+    
+    static final int UNKNOWN = -1;
+    static final int THICK = 0;
+    static final int SINGLE = 1;
+    
+    private static final int MAX_ENTRIES = 1 << 16;
+    private static final long TTL_TICKS = 100;
+    private static final int REACH = 2;
+    
+    // Value is the tick the entry was stored shifted left by one, or'ed with the result
+    private final LongLongHashMap entries = new LongLongHashMap();
+    
+    /**
+     * Look up a position
+     *
+     * @return {@link #SINGLE}, {@link #THICK} or {@link #UNKNOWN}
+     */
+    int get(long key, long now) {
+        long entry = entries.get(key, -1L);
+        if (entry < 0 || now - (entry >>> 1) >= TTL_TICKS) {
+            return UNKNOWN;
+        }
+        return (int) (entry & 1);
+    }
+    
+    void put(long key, boolean single, long now) {
+        // Start over at the cap instead of evicting by age; entries are cheap to recompute
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+        entries.put(key, (now << 1) | (single ? SINGLE : THICK));
+    }
+    
+    /**
+     * Forget every entry whose answer may depend on the block at a position
+     */
+    void invalidate(long key) {
+        if (key == BlockKey.EMPTY || entries.isEmpty()) {
+            return;
+        }
+        entries.remove(key);
+        for (int d = 1; d <= REACH; d++) {
+            entries.remove(BlockKey.offset(key, d, 0, 0));
+            entries.remove(BlockKey.offset(key, -d, 0, 0));
+            entries.remove(BlockKey.offset(key, 0, d, 0));
+            entries.remove(BlockKey.offset(key, 0, -d, 0));
+            entries.remove(BlockKey.offset(key, 0, 0, d));
+            entries.remove(BlockKey.offset(key, 0, 0, -d));
+        }
+    }
+    
+    void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package com.actionglass.scheduler;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+
+/**
+ * Scheduler for Spigot and Paper, where everything runs on the main thread
+ */
+public final class BukkitTaskScheduler implements TaskScheduler {
+    
+    private final Plugin plugin;
+    private final BukkitScheduler scheduler;
+    
+    public BukkitTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+        this.scheduler = plugin.getServer().getScheduler();
+    }
+    
+    @Override
+    public boolean isRegionized() {
+        return false;
+    }
+    
+    @Override
+    public int getRegionChunkShift() {
+        return 0;
+    }
+    
+    @Override
+    public Task runGlobalTimer(Runnable task, long delay, long period) {
+        return scheduler.runTaskTimer(plugin, task, delay, period)::cancel;
+    }
+    
+    @Override
+    public Task runRegionTimer(World world, int chunkX, int chunkZ, Runnable task, long delay, long period) {
+        return runGlobalTimer(task, delay, period);
+    }
+    
+    @Override
+    public void runAt(World world, int chunkX, int chunkZ, Runnable task) {
+        if (plugin.getServer().isPrimaryThread()) {
+            task.run();
+        } else {
+            scheduler.runTask(plugin, task);
+        }
+    }
+    
+    @Override
+    public void runLater(Entity entity, Runnable task, long delay) {
+        scheduler.runTaskLater(plugin, () -> {
+            if (entity.isValid()) {
+                task.run();
+            }
+        }, delay);
+    }
+    
+    @Override
+    public void runGlobal(Runnable task) {
+        scheduler.runTask(plugin, task);
+    }
+    
+    @Override
+    public void runAsync(Runnable task) {
+        scheduler.runTaskAsynchronously(plugin, task);
+    }
+    
+    @Override
+    public boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ) {
+        return plugin.getServer().isPrimaryThread();
+    }
+    
+    @Override
+    public void cancelAll() {
+        scheduler.cancelTasks(plugin);
+    }
+}
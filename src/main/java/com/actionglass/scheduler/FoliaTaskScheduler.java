@@ -0,0 +1,176 @@
+package com.actionglass.scheduler;
+
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Consumer;
+
+/**
+ * Scheduler for Folia, sending work to the region, entity, global and async
+ * schedulers
+ *
+ * The plugin is built against the Spigot API, which has none of these, so
+ * they are looked up by reflection once when the plugin enables.
+ */
+public final class FoliaTaskScheduler implements TaskScheduler {
+    
+    private static final String PACKAGE = "io.papermc.paper.threadedregions";
+    private static final int DEFAULT_REGION_CHUNK_SHIFT = 4;
+    
+    /**
+     * Check if the server runs Folia
+     */
+    public static boolean isSupported() {
+        try {
+            Class.forName(PACKAGE + ".RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+    
+    private final Plugin plugin;
+    private final Server server;
+    private final int regionChunkShift;
+    
+    private final Object globalScheduler;
+    private final Method globalRun;
+    private final Method globalRunAtFixedRate;
+    private final Method globalCancelTasks;
+    
+    private final Object regionScheduler;
+    private final Method regionExecute;
+    private final Method regionRunAtFixedRate;
+    
+    private final Object asyncScheduler;
+    private final Method asyncRunNow;
+    private final Method asyncCancelTasks;
+    
+    private final Method entityGetScheduler;
+    private final Method entityExecute;
+    private final Method taskCancel;
+    private final Method isOwnedByCurrentRegion;
+    
+    public FoliaTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+        this.server = plugin.getServer();
+        try {
+            Class<?> global = Class.forName(PACKAGE + ".scheduler.GlobalRegionScheduler");
+            globalScheduler = Server.class.getMethod("getGlobalRegionScheduler").invoke(server);
+            globalRun = global.getMethod("run", Plugin.class, Consumer.class);
+            globalRunAtFixedRate = global.getMethod("runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class);
+            globalCancelTasks = global.getMethod("cancelTasks", Plugin.class);
+            
+            Class<?> region = Class.forName(PACKAGE + ".scheduler.RegionScheduler");
+            regionScheduler = Server.class.getMethod("getRegionScheduler").invoke(server);
+            regionExecute = region.getMethod("execute", Plugin.class, World.class, int.class, int.class, Runnable.class);
+            regionRunAtFixedRate = region.getMethod("runAtFixedRate", Plugin.class, World.class, int.class, int.class, Consumer.class, long.class, long.class);
+            
+            Class<?> async = Class.forName(PACKAGE + ".scheduler.AsyncScheduler");
+            asyncScheduler = Server.class.getMethod("getAsyncScheduler").invoke(server);
+            asyncRunNow = async.getMethod("runNow", Plugin.class, Consumer.class);
+            asyncCancelTasks = async.getMethod("cancelTasks", Plugin.class);
+            
+            Class<?> entity = Class.forName(PACKAGE + ".scheduler.EntityScheduler");
+            entityGetScheduler = Entity.class.getMethod("getScheduler");
+            entityExecute = entity.getMethod("execute", Plugin.class, Runnable.class, Runnable.class, long.class);
+            taskCancel = Class.forName(PACKAGE + ".scheduler.ScheduledTask").getMethod("cancel");
+            isOwnedByCurrentRegion = Server.class.getMethod("isOwnedByCurrentRegion", World.class, int.class, int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Folia scheduler API not found: " + e.getMessage(), e);
+        }
+        regionChunkShift = readRegionChunkShift();
+    }
+    
+    private static int readRegionChunkShift() {
+        try {
+            return (int) Class.forName(PACKAGE + ".TickRegions").getMethod("getRegionChunkShift").invoke(null);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return DEFAULT_REGION_CHUNK_SHIFT;
+        }
+    }
+    
+    @Override
+    public boolean isRegionized() {
+        return true;
+    }
+    
+    @Override
+    public int getRegionChunkShift() {
+        return regionChunkShift;
+    }
+    
+    @Override
+    public Task runGlobalTimer(Runnable task, long delay, long period) {
+        Consumer<Object> consumer = scheduled -> task.run();
+        return cancellable(invoke(globalRunAtFixedRate, globalScheduler, plugin, consumer, Math.max(1L, delay), period));
+    }
+    
+    @Override
+    public Task runRegionTimer(World world, int chunkX, int chunkZ, Runnable task, long delay, long period) {
+        Consumer<Object> consumer = scheduled -> task.run();
+        return cancellable(invoke(regionRunAtFixedRate, regionScheduler, plugin, world, chunkX, chunkZ, consumer, Math.max(1L, delay), period));
+    }
+    
+    @Override
+    public void runAt(World world, int chunkX, int chunkZ, Runnable task) {
+        if (isOwnedByCurrentThread(world, chunkX, chunkZ)) {
+            task.run();
+        } else {
+            invoke(regionExecute, regionScheduler, plugin, world, chunkX, chunkZ, task);
+        }
+    }
+    
+    @Override
+    public void runLater(Entity entity, Runnable task, long delay) {
+        invoke(entityExecute, invoke(entityGetScheduler, entity), plugin, task, null, Math.max(1L, delay));
+    }
+    
+    @Override
+    public void runGlobal(Runnable task) {
+        Consumer<Object> consumer = scheduled -> task.run();
+        invoke(globalRun, globalScheduler, plugin, consumer);
+    }
+    
+    @Override
+    public void runAsync(Runnable task) {
+        Consumer<Object> consumer = scheduled -> task.run();
+        invoke(asyncRunNow, asyncScheduler, plugin, consumer);
+    }
+    
+    @Override
+    public boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ) {
+        return (boolean) invoke(isOwnedByCurrentRegion, server, world, chunkX, chunkZ);
+    }
+    
+    @Override
+    public void cancelAll() {
+        invoke(globalCancelTasks, globalScheduler, plugin);
+        invoke(asyncCancelTasks, asyncScheduler, plugin);
+    }
+    
+    private Task cancellable(Object scheduled) {
+        return () -> invoke(taskCancel, scheduled);
+    }
+    
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.actionglass.scheduler;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+/**
+ * Runs plugin work on the thread that owns what it touches
+ *
+ * On Spigot and Paper that is always the main thread. On Folia every region
+ * of a world is ticked by its own thread, so work on blocks goes to the
+ * region owning them, work on an entity follows the entity, and work that
+ * touches no world runs on the global region.
+ */
+public interface TaskScheduler {
+    
+    /**
+     * A scheduled task that can be cancelled
+     */
+    interface Task {
+        void cancel();
+    }
+    
+    /**
+     * Check if worlds are ticked by several region threads
+     */
+    boolean isRegionized();
+    
+    /**
+     * Get the size of the areas regions are made of, as a shift of chunk
+     * coordinates. Such an area is always owned by exactly one region.
+     * Only meaningful if {@link #isRegionized()}.
+     */
+    int getRegionChunkShift();
+    
+    /**
+     * Run a task every period ticks, outside of any region
+     */
+    Task runGlobalTimer(Runnable task, long delay, long period);
+    
+    /**
+     * Run a task every period ticks on the thread owning a chunk
+     */
+    Task runRegionTimer(World world, int chunkX, int chunkZ, Runnable task, long delay, long period);
+    
+    /**
+     * Run a task on the thread owning a chunk, right away if that is the current thread
+     */
+    void runAt(World world, int chunkX, int chunkZ, Runnable task);
+    
+    /**
+     * Run a task on the thread owning an entity after a delay in ticks; it
+     * does not run if the entity is removed first
+     */
+    void runLater(Entity entity, Runnable task, long delay);
+    
+    /**
+     * Run a task on the next tick, outside of any region
+     */
+    void runGlobal(Runnable task);
+    
+    /**
+     * Run a task off the server threads
+     */
+    void runAsync(Runnable task);
+    
+    /**
+     * Check if the current thread may access a chunk
+     */
+    boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ);
+    
+    /**
+     * Cancel every task of the plugin
+     */
+    void cancelAll();
+}
@@ -0,0 +1,407 @@
+package com.actionglass.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Statistics kept in an append-only binary log
+ *
+ * Each save appends one fixed size record per changed player and forces the
+ * file once, so a batch costs a single write no matter how many players the
+ * file holds. Only an index from player to record offset is kept in memory,
+ * to tell the live record of each player from superseded ones; visiting
+ * every player streams the log once from start to end. A torn
+ * record at the end, left by a crash during a write, is cut off on open.
+ * The log is rewritten through a temp file and an atomic rename once most of
+ * its records are superseded.
+ */
+public class BinaryStatisticsStore implements StatisticsStore {
+    
+    private static final int MAGIC = 0x41475354; // "AGST"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    
+    // [type][uuid msb][uuid lsb][count]
+    private static final int RECORD_SIZE = 1 + 8 + 8 + 4;
+    private static final byte UPSERT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte RESET = 3;
+    
+    private static final int COMPACT_SLACK = 1024;
+    private static final int SCAN_RECORDS = 4096;
+    
+    private final File file;
+    private final Logger logger;
+    private final Index index = new Index();
+    private FileChannel channel;
+    private long end;
+    private long records;
+    
+    public BinaryStatisticsStore(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+    
+    @Override
+    public synchronized void open() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_SIZE) {
+            writeHeader(channel);
+            end = HEADER_SIZE;
+            return;
+        }
+        
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        int magic = header.getInt();
+        int version = header.getInt();
+        if (magic != MAGIC || version != VERSION) {
+            channel.close();
+            throw new IOException("Unrecognised statistics file " + file.getName() + " (version " + version + ")");
+        }
+        
+        scan();
+    }
+    
+    /**
+     * Replay the log into the index, truncating anything after the last whole record
+     */
+    private void scan() throws IOException {
+        long size = channel.size();
+        long position = HEADER_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * SCAN_RECORDS);
+        scan:
+        while (position + RECORD_SIZE <= size) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), (size - position) / RECORD_SIZE * RECORD_SIZE));
+            readFully(channel, buffer, position);
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_SIZE) {
+                byte type = buffer.get();
+                long msb = buffer.getLong();
+                long lsb = buffer.getLong();
+                buffer.getInt();
+                if (type == UPSERT) {
+                    index.put(msb, lsb, position);
+                } else if (type == REMOVE) {
+                    index.remove(msb, lsb);
+                } else if (type == RESET) {
+                    index.clear();
+                } else {
+                    break scan;
+                }
+                records++;
+                position += RECORD_SIZE;
+            }
+        }
+        
+        if (position < size) {
+            logger.warning("Discarding " + (size - position) + " bytes of incomplete statistics records from " + file.getName());
+            channel.truncate(position);
+            channel.force(true);
+        }
+        end = position;
+    }
+    
+    /**
+     * Read the log front to back in large chunks, visiting only the records
+     * the index still points at, instead of one small read per player
+     */
+    @Override
+    public synchronized void forEach(Visitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * SCAN_RECORDS);
+        long position = HEADER_SIZE;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            readFully(channel, buffer, position);
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_SIZE) {
+                byte type = buffer.get();
+                long msb = buffer.getLong();
+                long lsb = buffer.getLong();
+                int value = buffer.getInt();
+                if (type == UPSERT && index.get(msb, lsb) == position) {
+                    visitor.accept(new UUID(msb, lsb), value);
+                }
+                position += RECORD_SIZE;
+            }
+        }
+    }
+    
+    @Override
+    public synchronized void saveBatch(Map<UUID, Integer> changes, boolean resetAll) throws IOException {
+        int count = changes.size() + (resetAll ? 1 : 0);
+        if (count == 0) {
+            return;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(count * RECORD_SIZE);
+        if (resetAll) {
+            putRecord(buffer, RESET, 0L, 0L, 0);
+        }
+        for (Map.Entry<UUID, Integer> entry : changes.entrySet()) {
+            UUID uuid = entry.getKey();
+            Integer value = entry.getValue();
+            putRecord(buffer, value == null ? REMOVE : UPSERT, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), value == null ? 0 : value);
+        }
+        buffer.flip();
+        
+        long start = end;
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, start + buffer.position());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Leave the index as it was; a torn tail is cut off on the next open
+            channel.truncate(start);
+            throw e;
+        }
+        
+        // Only index the batch once it is on disk
+        long position = start;
+        if (resetAll) {
+            index.clear();
+            position += RECORD_SIZE;
+        }
+        for (Map.Entry<UUID, Integer> entry : changes.entrySet()) {
+            UUID uuid = entry.getKey();
+            if (entry.getValue() == null) {
+                index.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            } else {
+                index.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), position);
+            }
+            position += RECORD_SIZE;
+        }
+        end = position;
+        records += count;
+        
+        if (records > 2L * index.size + COMPACT_SLACK) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // The batch is already safe in the log, compaction can wait for the next one
+                logger.warning("Failed to compact " + file.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private static void putRecord(ByteBuffer buffer, byte type, long msb, long lsb, int value) {
+        buffer.put(type).putLong(msb).putLong(lsb).putInt(value);
+    }
+    
+    /**
+     * Rewrite the log with one record per player and swap it in
+     */
+    private void compact() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        long[] newOffsets = new long[index.offsets.length];
+        long newEnd;
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(out);
+            
+            // Copy the live records across in log order, reading and writing in large chunks
+            ByteBuffer in = ByteBuffer.allocate(RECORD_SIZE * SCAN_RECORDS);
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * SCAN_RECORDS);
+            long position = HEADER_SIZE;
+            long read = HEADER_SIZE;
+            while (read < end) {
+                in.clear();
+                in.limit((int) Math.min(in.capacity(), end - read));
+                readFully(channel, in, read);
+                in.flip();
+                while (in.remaining() >= RECORD_SIZE) {
+                    byte type = in.get();
+                    long msb = in.getLong();
+                    long lsb = in.getLong();
+                    int value = in.getInt();
+                    int slot = type == UPSERT ? index.indexOf(msb, lsb) : -1;
+                    if (slot >= 0 && index.offsets[slot] == read) {
+                        if (buffer.remaining() < RECORD_SIZE) {
+                            position += drain(out, buffer, position);
+                        }
+                        newOffsets[slot] = position + buffer.position();
+                        putRecord(buffer, UPSERT, msb, lsb, value);
+                    }
+                    read += RECORD_SIZE;
+                }
+            }
+            position += drain(out, buffer, position);
+            out.force(true);
+            newEnd = position;
+        }
+        
+        channel.close();
+        try {
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        
+        // Slots are unchanged, only the offsets moved
+        index.offsets = newOffsets;
+        records = index.size;
+        end = newEnd;
+    }
+    
+    private static int drain(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        int written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            out.write(buffer, position + buffer.position());
+        }
+        buffer.clear();
+        return written;
+    }
+    
+    private static void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            out.write(header, header.position());
+        }
+        out.force(true);
+    }
+    
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        long read = 0;
+        while (buffer.hasRemaining()) {
+            int count = in.read(buffer, position + read);
+            if (count < 0) {
+                throw new IOException("Unexpected end of statistics file");
+            }
+            read += count;
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+    
+    /**
+     * Open-addressing map from a UUID, as its two halves, to a record offset.
+     * An offset of 0 marks a free slot, since records start after the header.
+     */
+    private static final class Index {
+        
+        long[] msbs;
+        long[] lsbs;
+        long[] offsets;
+        int size;
+        private int mask;
+        
+        Index() {
+            allocate(64);
+        }
+        
+        private void allocate(int capacity) {
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            offsets = new long[capacity];
+            mask = capacity - 1;
+        }
+        
+        private int home(long msb, long lsb) {
+            long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+        
+        private int indexOf(long msb, long lsb) {
+            int slot = home(msb, lsb);
+            while (offsets[slot] != 0) {
+                if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+        
+        long get(long msb, long lsb) {
+            int slot = indexOf(msb, lsb);
+            return slot < 0 ? 0 : offsets[slot];
+        }
+        
+        void put(long msb, long lsb, long offset) {
+            int slot = home(msb, lsb);
+            while (offsets[slot] != 0) {
+                if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                    offsets[slot] = offset;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            msbs[slot] = msb;
+            lsbs[slot] = lsb;
+            offsets[slot] = offset;
+            if (++size * 2 >= offsets.length) {
+                rehash(offsets.length << 1);
+            }
+        }
+        
+        void remove(long msb, long lsb) {
+            int slot = indexOf(msb, lsb);
+            if (slot < 0) {
+                return;
+            }
+            size--;
+            int gap = slot;
+            int next = (gap + 1) & mask;
+            while (offsets[next] != 0) {
+                int home = home(msbs[next], lsbs[next]);
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    msbs[gap] = msbs[next];
+                    lsbs[gap] = lsbs[next];
+                    offsets[gap] = offsets[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            offsets[gap] = 0;
+        }
+        
+        private void rehash(int capacity) {
+            long[] oldMsbs = msbs;
+            long[] oldLsbs = lsbs;
+            long[] oldOffsets = offsets;
+            allocate(capacity);
+            for (int i = 0; i < oldOffsets.length; i++) {
+                if (oldOffsets[i] == 0) {
+                    continue;
+                }
+                int slot = home(oldMsbs[i], oldLsbs[i]);
+                while (offsets[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                msbs[slot] = oldMsbs[i];
+                lsbs[slot] = oldLsbs[i];
+                offsets[slot] = oldOffsets[i];
+            }
+        }
+        
+        void clear() {
+            Arrays.fill(offsets, 0L);
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.actionglass.storage;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Persistent storage of per player glass break counts
+ * 
+ * Implementations must be safe to call from the main thread and the
+ * statistics writer thread at the same time.
+ */
+public interface StatisticsStore {
+    
+    /**
+     * Receives stored players, see {@link #forEach(Visitor)}
+     */
+    interface Visitor {
+        void accept(UUID uuid, int glassBreaks);
+    }
+    
+    /**
+     * Open the store, creating it if needed
+     */
+    void open() throws IOException;
+    
+    /**
+     * Visit every stored player. The statistics manager reads every count
+     * this way once at startup, as ranks and the server total need them all.
+     */
+    void forEach(Visitor visitor) throws IOException;
+    
+    /**
+     * Write a batch of changes in one go
+     * 
+     * @param changes new counts by player, null to remove a player
+     * @param resetAll remove every player before applying the changes
+     */
+    void saveBatch(Map<UUID, Integer> changes, boolean resetAll) throws IOException;
+    
+    void close() throws IOException;
+}
@@ -0,0 +1,89 @@
+package com.actionglass.storage;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Statistics kept in a YAML file, read in full on open and rewritten in full
+ * on every save through a temp file and an atomic rename
+ */
+public class YamlStatisticsStore implements StatisticsStore {
+    
+    private final File file;
+    private final Logger logger;
+    private final Map<UUID, Integer> counts = new HashMap<>();
+    private FileConfiguration yaml;
+    
+    public YamlStatisticsStore(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+    
+    @Override
+    public synchronized void open() throws IOException {
+        yaml = YamlConfiguration.loadConfiguration(file);
+        
+        ConfigurationSection players = yaml.getConfigurationSection("players");
+        if (players != null) {
+            for (String uuidString : players.getKeys(false)) {
+                try {
+                    counts.put(UUID.fromString(uuidString), players.getInt(uuidString + ".glass-breaks", 0));
+                } catch (IllegalArgumentException e) {
+                    logger.warning("Invalid UUID in statistics: " + uuidString);
+                }
+            }
+        }
+    }
+    
+    @Override
+    public synchronized void forEach(Visitor visitor) {
+        for (Map.Entry<UUID, Integer> entry : counts.entrySet()) {
+            visitor.accept(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    @Override
+    public synchronized void saveBatch(Map<UUID, Integer> changes, boolean resetAll) throws IOException {
+        if (resetAll) {
+            counts.clear();
+            yaml.set("players", null);
+        }
+        for (Map.Entry<UUID, Integer> entry : changes.entrySet()) {
+            String uuidString = entry.getKey().toString();
+            if (entry.getValue() == null) {
+                counts.remove(entry.getKey());
+                yaml.set("players." + uuidString, null);
+            } else {
+                counts.put(entry.getKey(), entry.getValue());
+                yaml.set("players." + uuidString + ".glass-breaks", entry.getValue());
+            }
+        }
+        
+        // Save last updated timestamp
+        yaml.set("last-updated", System.currentTimeMillis());
+        
+        File temp = new File(file.getPath() + ".tmp");
+        Files.write(temp.toPath(), yaml.saveToString().getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,113 @@
+package com.actionglass.util;
+
+/**
+ * Packs a block position and a world index into a single long
+ *
+ * Layout (high to low bits): world index (8), y + 2048 (12), x (22), z (22).
+ * This covers 256 worlds, the full datapack height range and +/- 2,097,151
+ * blocks on each horizontal axis. World index 0 is never assigned, so a
+ * packed key is never 0 and 0 can be used as the empty marker in primitive
+ * hash tables.
+ */
+public final class BlockKey {
+    
+    public static final long EMPTY = 0L;
+    public static final int MAX_WORLDS = 256;
+    
+    private static final int XZ_BITS = 22;
+    private static final int Y_BITS = 12;
+    private static final int XZ_LIMIT = 1 << (XZ_BITS - 1);
+    private static final int Y_OFFSET = 1 << (Y_BITS - 1);
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+    
+    private static final int Z_SHIFT = 0;
+    private static final int X_SHIFT = XZ_BITS;
+    private static final int Y_SHIFT = XZ_BITS * 2;
+    private static final int WORLD_SHIFT = XZ_BITS * 2 + Y_BITS;
+    private static final long CHUNK_MASK = ~((Y_MASK << Y_SHIFT) | (0xFL << X_SHIFT) | (0xFL << Z_SHIFT));
+    
+    private BlockKey() {
+    }
+    
+    /**
+     * Check if a position can be represented by a packed key
+     */
+    public static boolean fits(int x, int y, int z) {
+        return x > -XZ_LIMIT && x < XZ_LIMIT
+                && z > -XZ_LIMIT && z < XZ_LIMIT
+                && y >= -Y_OFFSET && y < Y_OFFSET;
+    }
+    
+    /**
+     * Pack a world index and block position, see {@link #fits(int, int, int)}
+     */
+    public static long pack(int world, int x, int y, int z) {
+        return ((long) world << WORLD_SHIFT)
+                | (((long) (y + Y_OFFSET) & Y_MASK) << Y_SHIFT)
+                | (((long) x & XZ_MASK) << X_SHIFT)
+                | (((long) z & XZ_MASK) << Z_SHIFT);
+    }
+    
+    public static int world(long key) {
+        return (int) (key >>> WORLD_SHIFT);
+    }
+    
+    public static int x(long key) {
+        return signExtend((key >>> X_SHIFT) & XZ_MASK);
+    }
+    
+    public static int y(long key) {
+        return (int) ((key >>> Y_SHIFT) & Y_MASK) - Y_OFFSET;
+    }
+    
+    public static int z(long key) {
+        return signExtend((key >>> Z_SHIFT) & XZ_MASK);
+    }
+    
+    /**
+     * Key shared by every block of a chunk, see {@link #chunkKey(int, int, int)}
+     */
+    public static long chunkKey(long key) {
+        return key & CHUNK_MASK;
+    }
+    
+    /**
+     * Pack a world index and chunk position into a key that never collides
+     * with another chunk of any world
+     */
+    public static long chunkKey(int world, int chunkX, int chunkZ) {
+        return pack(world, chunkX << 4, -Y_OFFSET, chunkZ << 4);
+    }
+    
+    public static int chunkX(long key) {
+        return x(key) >> 4;
+    }
+    
+    public static int chunkZ(long key) {
+        return z(key) >> 4;
+    }
+    
+    /**
+     * Return the key of the block offset by the given amount in the same world
+     */
+    public static long offset(long key, int dx, int dy, int dz) {
+        return pack(world(key), x(key) + dx, y(key) + dy, z(key) + dz);
+    }
+    
+    /**
+     * Spread the bits of a key for use as a hash table index
+     */
+    public static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    public static String toString(long key) {
+        return "[" + world(key) + "] " + x(key) + "," + y(key) + "," + z(key);
+    }
+    
+    private static int signExtend(long value) {
+        return (int) (value << (64 - XZ_BITS) >> (64 - XZ_BITS));
+    }
+}
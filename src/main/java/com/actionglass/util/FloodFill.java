@@ -0,0 +1,72 @@
+package com.actionglass.util;
+
+/**
+ * Breadth-first flood fill over face-connected blocks, on packed {@link BlockKey} longs
+ *
+ * Positions are marked visited as they are queued, so each one is offered to
+ * the filter at most once. The queue, visited set and result buffer are kept
+ * between calls, so a fill allocates nothing once they have grown to fit.
+ * Not thread safe.
+ */
+public final class FloodFill {
+    
+    /**
+     * Decides whether a block belongs to the filled region
+     */
+    public interface Filter {
+        boolean accept(long key);
+    }
+    
+    private final LongHashSet visited = new LongHashSet(256);
+    private final LongRingQueue queue = new LongRingQueue();
+    private long[] filled = new long[64];
+    private int count;
+    
+    /**
+     * Fill from a start block, stopping once the limit is reached
+     *
+     * @return the number of blocks filled, see {@link #keyAt(int)}
+     */
+    public int fill(long start, int limit, Filter filter) {
+        visited.clear();
+        queue.clear();
+        count = 0;
+        
+        visited.add(start);
+        queue.add(start);
+        while (!queue.isEmpty() && count < limit) {
+            long key = queue.poll();
+            
+            if (!filter.accept(key)) {
+                continue;
+            }
+            if (count == filled.length) {
+                long[] grown = new long[count << 1];
+                System.arraycopy(filled, 0, grown, 0, count);
+                filled = grown;
+            }
+            filled[count++] = key;
+            
+            visit(BlockKey.offset(key, 0, 1, 0));
+            visit(BlockKey.offset(key, 0, -1, 0));
+            visit(BlockKey.offset(key, 1, 0, 0));
+            visit(BlockKey.offset(key, -1, 0, 0));
+            visit(BlockKey.offset(key, 0, 0, 1));
+            visit(BlockKey.offset(key, 0, 0, -1));
+        }
+        return count;
+    }
+    
+    private void visit(long key) {
+        if (visited.add(key)) {
+            queue.add(key);
+        }
+    }
+    
+    /**
+     * Get a block filled by the last call, in visiting order
+     */
+    public long keyAt(int index) {
+        return filled[index];
+    }
+}
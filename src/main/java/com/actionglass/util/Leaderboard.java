@@ -0,0 +1,260 @@
+package com.actionglass.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Players ordered by count, highest first, with a running total
+ *
+ * Backed by a treap that tracks subtree sizes, so updates, rank lookups and
+ * finding the start of a page are O(log n), and reading k entries from there
+ * is O(k). Equal counts are ordered by UUID to keep the order stable.
+ * Players with a count of 0 are not kept. Not thread safe.
+ */
+public final class Leaderboard {
+    
+    /**
+     * Receives leaderboard entries, see {@link #forRange(int, int, Visitor)}
+     */
+    public interface Visitor {
+        void accept(int rank, UUID uuid, int count);
+    }
+    
+    private static final class Node {
+        final UUID uuid;
+        final int count;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+        
+        Node(UUID uuid, int count, int priority) {
+            this.uuid = uuid;
+            this.count = count;
+            this.priority = priority;
+        }
+    }
+    
+    private final Map<UUID, Node> nodes = new HashMap<>();
+    private Node root;
+    private long total;
+    private int seed = 0x2545F491;
+    
+    // Results of split, kept in fields to avoid allocating a pair
+    private Node splitBefore;
+    private Node splitAfter;
+    
+    /**
+     * Get the count of a player, 0 if not on the leaderboard
+     */
+    public int get(UUID uuid) {
+        Node node = nodes.get(uuid);
+        return node == null ? 0 : node.count;
+    }
+    
+    /**
+     * Set the count of a player, removing them if it is 0 or less
+     */
+    public void set(UUID uuid, int count) {
+        Node old = nodes.remove(uuid);
+        if (old != null) {
+            root = remove(root, old.count, uuid);
+            total -= old.count;
+        }
+        if (count > 0) {
+            Node node = new Node(uuid, count, nextPriority());
+            nodes.put(uuid, node);
+            root = insert(root, node);
+            total += count;
+        }
+    }
+    
+    /**
+     * Add to the count of a player
+     *
+     * @return the new count
+     */
+    public int add(UUID uuid, int amount) {
+        int count = get(uuid) + amount;
+        set(uuid, count);
+        return Math.max(count, 0);
+    }
+    
+    public void remove(UUID uuid) {
+        set(uuid, 0);
+    }
+    
+    /**
+     * Get the 1-based rank of a player, or 0 if not on the leaderboard
+     */
+    public int rank(UUID uuid) {
+        Node node = nodes.get(uuid);
+        if (node == null) {
+            return 0;
+        }
+        int before = 0;
+        Node current = root;
+        while (current != null) {
+            int cmp = compare(node.count, uuid, current);
+            if (cmp < 0) {
+                current = current.left;
+            } else if (cmp > 0) {
+                before += size(current.left) + 1;
+                current = current.right;
+            } else {
+                return before + size(current.left) + 1;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Visit entries in order, starting at a 0-based position
+     */
+    public void forRange(int from, int limit, Visitor visitor) {
+        if (limit > 0 && from < size()) {
+            visit(root, 0, from, from + limit, visitor);
+        }
+    }
+    
+    private void visit(Node node, int base, int from, int to, Visitor visitor) {
+        if (node == null) {
+            return;
+        }
+        int index = base + size(node.left);
+        if (from < index) {
+            visit(node.left, base, from, to, visitor);
+        }
+        if (index >= from && index < to) {
+            visitor.accept(index + 1, node.uuid, node.count);
+        }
+        if (index + 1 < to) {
+            visit(node.right, index + 1, from, to, visitor);
+        }
+    }
+    
+    public int size() {
+        return nodes.size();
+    }
+    
+    /**
+     * Get the sum of all counts
+     */
+    public long getTotal() {
+        return total;
+    }
+    
+    public void clear() {
+        nodes.clear();
+        root = null;
+        total = 0;
+    }
+    
+    private int nextPriority() {
+        // xorshift, only needs to look random to keep the tree balanced
+        int x = seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed = x;
+        return x;
+    }
+    
+    /**
+     * Compare a count and player against a node
+     *
+     * @return negative if they come before the node, positive if after
+     */
+    private static int compare(int count, UUID uuid, Node node) {
+        if (count != node.count) {
+            return count > node.count ? -1 : 1;
+        }
+        return uuid.compareTo(node.uuid);
+    }
+    
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+    
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+    
+    private Node insert(Node tree, Node node) {
+        if (tree == null) {
+            return node;
+        }
+        if (node.priority > tree.priority) {
+            split(tree, node.count, node.uuid);
+            node.left = splitBefore;
+            node.right = splitAfter;
+            update(node);
+            return node;
+        }
+        if (compare(node.count, node.uuid, tree) < 0) {
+            tree.left = insert(tree.left, node);
+        } else {
+            tree.right = insert(tree.right, node);
+        }
+        update(tree);
+        return tree;
+    }
+    
+    private Node remove(Node tree, int count, UUID uuid) {
+        if (tree == null) {
+            return null;
+        }
+        int cmp = compare(count, uuid, tree);
+        if (cmp == 0) {
+            return merge(tree.left, tree.right);
+        }
+        if (cmp < 0) {
+            tree.left = remove(tree.left, count, uuid);
+        } else {
+            tree.right = remove(tree.right, count, uuid);
+        }
+        update(tree);
+        return tree;
+    }
+    
+    /**
+     * Split a tree into the nodes before a key and the rest, into
+     * {@link #splitBefore} and {@link #splitAfter}
+     */
+    private void split(Node tree, int count, UUID uuid) {
+        if (tree == null) {
+            splitBefore = null;
+            splitAfter = null;
+            return;
+        }
+        if (compare(count, uuid, tree) > 0) {
+            split(tree.right, count, uuid);
+            tree.right = splitBefore;
+            update(tree);
+            splitBefore = tree;
+        } else {
+            split(tree.left, count, uuid);
+            tree.left = splitAfter;
+            update(tree);
+            splitAfter = tree;
+        }
+    }
+    
+    private Node merge(Node before, Node after) {
+        if (before == null) {
+            return after;
+        }
+        if (after == null) {
+            return before;
+        }
+        if (before.priority > after.priority) {
+            before.right = merge(before.right, after);
+            update(before);
+            return before;
+        }
+        after.left = merge(before, after.left);
+        update(after);
+        return after;
+    }
+}
@@ -0,0 +1,152 @@
+package com.actionglass.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing set of packed {@link BlockKey} longs
+ *
+ * Uses {@link BlockKey#EMPTY} as the free-slot marker, so 0 cannot be stored.
+ * Linear probing with backward-shift deletion; never allocates except to grow.
+ * Not thread safe.
+ */
+public final class LongHashSet {
+    
+    private static final float LOAD_FACTOR = 0.5f;
+    
+    private long[] keys;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    
+    public LongHashSet() {
+        this(16);
+    }
+    
+    public LongHashSet(int expected) {
+        allocate(tableSizeFor(expected));
+    }
+    
+    private static int tableSizeFor(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(8, capacity);
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+    
+    public boolean contains(long key) {
+        int slot = BlockKey.hash(key) & mask;
+        long current;
+        while ((current = keys[slot]) != BlockKey.EMPTY) {
+            if (current == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+    
+    /**
+     * Add a key
+     * 
+     * @return true if the key was not already present
+     */
+    public boolean add(long key) {
+        int slot = BlockKey.hash(key) & mask;
+        long current;
+        while ((current = keys[slot]) != BlockKey.EMPTY) {
+            if (current == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+    
+    /**
+     * Remove a key
+     * 
+     * @return true if the key was present
+     */
+    public boolean remove(long key) {
+        int slot = BlockKey.hash(key) & mask;
+        long current;
+        while ((current = keys[slot]) != key) {
+            if (current == BlockKey.EMPTY) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        size--;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while ((current = keys[next]) != BlockKey.EMPTY) {
+            int home = BlockKey.hash(current) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = current;
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = BlockKey.EMPTY;
+        return true;
+    }
+    
+    private void rehash(int capacity) {
+        long[] old = keys;
+        allocate(capacity);
+        for (long key : old) {
+            if (key == BlockKey.EMPTY) {
+                continue;
+            }
+            int slot = BlockKey.hash(key) & mask;
+            while (keys[slot] != BlockKey.EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Copy every key into a buffer, growing it if needed
+     * 
+     * @return the buffer holding the keys in its first {@link #size()} entries
+     */
+    public long[] toArray(long[] buffer) {
+        if (buffer == null || buffer.length < size) {
+            buffer = new long[Math.max(size, 16)];
+        }
+        int count = 0;
+        for (long key : keys) {
+            if (key != BlockKey.EMPTY) {
+                buffer[count++] = key;
+            }
+        }
+        return buffer;
+    }
+    
+    /**
+     * Remove every key, keeping the current table
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, BlockKey.EMPTY);
+            size = 0;
+        }
+    }
+}
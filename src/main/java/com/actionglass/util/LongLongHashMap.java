@@ -0,0 +1,146 @@
+package com.actionglass.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from packed {@link BlockKey} or chunk key longs to longs
+ *
+ * Uses {@link BlockKey#EMPTY} as the free-slot marker, so 0 cannot be used as a
+ * key. Linear probing with backward-shift deletion. Not thread safe.
+ */
+public final class LongLongHashMap {
+    
+    private static final float LOAD_FACTOR = 0.5f;
+    
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    
+    public LongLongHashMap() {
+        allocate(16);
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+    
+    private int indexOf(long key) {
+        int slot = BlockKey.hash(key) & mask;
+        long current;
+        while ((current = keys[slot]) != BlockKey.EMPTY) {
+            if (current == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    /**
+     * Get the value of a key, or a default if it is not present
+     */
+    public long get(long key, long defaultValue) {
+        int slot = indexOf(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+    
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+    
+    public void put(long key, long value) {
+        int slot = BlockKey.hash(key) & mask;
+        long current;
+        while ((current = keys[slot]) != BlockKey.EMPTY) {
+            if (current == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+    }
+    
+    /**
+     * OR bits into the value of a key that is already present
+     * 
+     * @return false if the key is not present
+     */
+    public boolean orIfPresent(long key, long bits) {
+        int slot = indexOf(key);
+        if (slot < 0) {
+            return false;
+        }
+        values[slot] |= bits;
+        return true;
+    }
+    
+    /**
+     * Remove a key
+     * 
+     * @return true if the key was present
+     */
+    public boolean remove(long key) {
+        int slot = indexOf(key);
+        if (slot < 0) {
+            return false;
+        }
+        size--;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        long current;
+        while ((current = keys[next]) != BlockKey.EMPTY) {
+            int home = BlockKey.hash(current) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = current;
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = BlockKey.EMPTY;
+        return true;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == BlockKey.EMPTY) {
+                continue;
+            }
+            int slot = BlockKey.hash(key) & mask;
+            while (keys[slot] != BlockKey.EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, BlockKey.EMPTY);
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.actionglass.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from packed {@link BlockKey} or chunk key longs to objects
+ *
+ * Uses {@link BlockKey#EMPTY} as the free-slot marker, so 0 cannot be used as a
+ * key. Linear probing with backward-shift deletion. Not thread safe.
+ */
+public final class LongObjectHashMap<V> {
+    
+    private static final float LOAD_FACTOR = 0.5f;
+    
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    
+    public LongObjectHashMap() {
+        allocate(16);
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+    
+    private int indexOf(long key) {
+        int slot = BlockKey.hash(key) & mask;
+        long current;
+        while ((current = keys[slot]) != BlockKey.EMPTY) {
+            if (current == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = indexOf(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+    
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+    
+    /**
+     * Associate a value with a key
+     * 
+     * @return the previous value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        int slot = BlockKey.hash(key) & mask;
+        long current;
+        while ((current = keys[slot]) != BlockKey.EMPTY) {
+            if (current == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+    
+    /**
+     * Remove a key
+     * 
+     * @return the removed value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = indexOf(key);
+        if (slot < 0) {
+            return null;
+        }
+        V removed = (V) values[slot];
+        size--;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        long current;
+        while ((current = keys[next]) != BlockKey.EMPTY) {
+            int home = BlockKey.hash(current) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = current;
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = BlockKey.EMPTY;
+        values[gap] = null;
+        return removed;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == BlockKey.EMPTY) {
+                continue;
+            }
+            int slot = BlockKey.hash(key) & mask;
+            while (keys[slot] != BlockKey.EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Number of slots, for iterating with {@link #keyAt(int)} and {@link #valueAt(int)}
+     */
+    public int capacity() {
+        return keys.length;
+    }
+    
+    /**
+     * Get the key in a slot, or {@link BlockKey#EMPTY} if the slot is unused
+     */
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+    
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot) {
+        return (V) values[slot];
+    }
+    
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, BlockKey.EMPTY);
+            Arrays.fill(values, null);
+            size = 0;
+        }
+    }
+}
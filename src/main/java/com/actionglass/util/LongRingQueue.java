@@ -0,0 +1,50 @@
+package com.actionglass.util;
+
+/**
+ * First-in first-out queue of longs in a growable ring buffer
+ *
+ * Never allocates once it has grown to fit. Not thread safe.
+ */
+public final class LongRingQueue {
+    
+    private long[] elements = new long[64];
+    private int head;
+    private int size;
+    
+    public void add(long value) {
+        if (size == elements.length) {
+            // Unwrap into a buffer twice the size
+            long[] grown = new long[elements.length << 1];
+            int first = elements.length - head;
+            System.arraycopy(elements, head, grown, 0, first);
+            System.arraycopy(elements, 0, grown, first, head);
+            elements = grown;
+            head = 0;
+        }
+        elements[(head + size) & (elements.length - 1)] = value;
+        size++;
+    }
+    
+    /**
+     * Remove and return the oldest value; the queue must not be empty
+     */
+    public long poll() {
+        long value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return value;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,137 @@
+package com.actionglass.util;
+
+/**
+ * Enumerates the blocks swept by a sphere moving along a segment (a capsule)
+ *
+ * Walks the segment voxel by voxel with a 3D DDA. The first voxel contributes
+ * the full cube of candidate cells around it, and every following step only
+ * contributes the slab on its leading face. The walk never reverses on any
+ * axis, so each candidate cell is produced once and no visited set is needed.
+ * A block is part of the capsule when its centre is within the radius of the
+ * segment.
+ *
+ * Instances keep the current sweep in fields so sweeping never allocates;
+ * reuse one per thread.
+ */
+public final class SweptVolume {
+    
+    /**
+     * Receives each block of the swept volume exactly once
+     */
+    public interface Visitor {
+        void visit(int x, int y, int z);
+    }
+    
+    private double ax, ay, az;
+    private double dx, dy, dz;
+    private double lengthSquared;
+    private double radiusSquared;
+    private boolean skipStartCap;
+    private Visitor visitor;
+    private int visited;
+    
+    /**
+     * Visit every block whose centre lies within {@code radius} of the segment
+     * from a to b
+     * 
+     * @param skipStartCap skip blocks within the radius of a, because a
+     *                     previous sweep ending at a already covered them
+     * @return the number of blocks visited
+     */
+    public int sweep(double ax, double ay, double az, double bx, double by, double bz,
+                     double radius, boolean skipStartCap, Visitor visitor) {
+        this.ax = ax;
+        this.ay = ay;
+        this.az = az;
+        this.dx = bx - ax;
+        this.dy = by - ay;
+        this.dz = bz - az;
+        this.lengthSquared = dx * dx + dy * dy + dz * dz;
+        this.radiusSquared = radius * radius;
+        this.skipStartCap = skipStartCap;
+        this.visitor = visitor;
+        this.visited = 0;
+        
+        int reach = (int) Math.ceil(radius) + 1;
+        
+        int x = floor(ax);
+        int y = floor(ay);
+        int z = floor(az);
+        int endX = floor(bx);
+        int endY = floor(by);
+        int endZ = floor(bz);
+        
+        int stepX = Integer.signum(endX - x);
+        int stepY = Integer.signum(endY - y);
+        int stepZ = Integer.signum(endZ - z);
+        double tDeltaX = stepX != 0 ? 1.0 / Math.abs(bx - ax) : Double.POSITIVE_INFINITY;
+        double tDeltaY = stepY != 0 ? 1.0 / Math.abs(by - ay) : Double.POSITIVE_INFINITY;
+        double tDeltaZ = stepZ != 0 ? 1.0 / Math.abs(bz - az) : Double.POSITIVE_INFINITY;
+        double tMaxX = stepX != 0 ? (stepX > 0 ? x + 1 - ax : ax - x) * tDeltaX : Double.POSITIVE_INFINITY;
+        double tMaxY = stepY != 0 ? (stepY > 0 ? y + 1 - ay : ay - y) * tDeltaY : Double.POSITIVE_INFINITY;
+        double tMaxZ = stepZ != 0 ? (stepZ > 0 ? z + 1 - az : az - z) * tDeltaZ : Double.POSITIVE_INFINITY;
+        
+        visitBox(x - reach, x + reach, y - reach, y + reach, z - reach, z + reach);
+        
+        int steps = Math.abs(endX - x) + Math.abs(endY - y) + Math.abs(endZ - z);
+        for (int i = 0; i < steps; i++) {
+            // Axes that already reached the end voxel are never stepped again,
+            // so rounding can't carry the walk past the end
+            double nextX = x != endX ? tMaxX : Double.POSITIVE_INFINITY;
+            double nextY = y != endY ? tMaxY : Double.POSITIVE_INFINITY;
+            double nextZ = z != endZ ? tMaxZ : Double.POSITIVE_INFINITY;
+            
+            if (nextX <= nextY && nextX <= nextZ) {
+                x += stepX;
+                tMaxX += tDeltaX;
+                int face = x + stepX * reach;
+                visitBox(face, face, y - reach, y + reach, z - reach, z + reach);
+            } else if (nextY <= nextZ) {
+                y += stepY;
+                tMaxY += tDeltaY;
+                int face = y + stepY * reach;
+                visitBox(x - reach, x + reach, face, face, z - reach, z + reach);
+            } else {
+                z += stepZ;
+                tMaxZ += tDeltaZ;
+                int face = z + stepZ * reach;
+                visitBox(x - reach, x + reach, y - reach, y + reach, face, face);
+            }
+        }
+        
+        this.visitor = null;
+        return visited;
+    }
+    
+    private static int floor(double value) {
+        int floor = (int) value;
+        return value < floor ? floor - 1 : floor;
+    }
+    
+    private void visitBox(int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+        for (int x = minX; x <= maxX; x++) {
+            double px = x + 0.5 - ax;
+            for (int y = minY; y <= maxY; y++) {
+                double py = y + 0.5 - ay;
+                for (int z = minZ; z <= maxZ; z++) {
+                    double pz = z + 0.5 - az;
+                    
+                    double t = lengthSquared > 0 ? (px * dx + py * dy + pz * dz) / lengthSquared : 0;
+                    t = t < 0 ? 0 : (t > 1 ? 1 : t);
+                    double ex = px - t * dx;
+                    double ey = py - t * dy;
+                    double ez = pz - t * dz;
+                    if (ex * ex + ey * ey + ez * ez > radiusSquared) {
+                        continue;
+                    }
+                    if (skipStartCap && px * px + py * py + pz * pz <= radiusSquared) {
+                        continue;
+                    }
+                    
+                    visited++;
+                    visitor.visit(x, y, z);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.actionglass.util;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical timing wheel of long payloads keyed by due tick
+ *
+ * Four levels of 64 slots cover 64 ticks, 4096 ticks (~3.4 min), 262144 ticks
+ * (~3.6 h) and 16777216 ticks (~9.7 days). Entries further out are parked in
+ * the last level and re-placed when it cascades. Scheduling and firing are
+ * O(1) per entry and never allocate once the slot buffers have grown.
+ *
+ * There is no removal: owners cancel lazily by ignoring expiries whose due
+ * tick no longer matches their own record. Not thread safe.
+ */
+public final class TimingWheel {
+    
+    /**
+     * Receives entries as their due tick is reached
+     */
+    public interface Expiry {
+        void expire(long payload, long due);
+    }
+    
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long HORIZON = 1L << (SLOT_BITS * LEVELS);
+    
+    private final Bucket[][] levels = new Bucket[LEVELS][SLOTS];
+    private Bucket spare = new Bucket();
+    private long now;
+    private int size;
+    
+    public TimingWheel() {
+        for (Bucket[] level : levels) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Bucket();
+            }
+        }
+    }
+    
+    /**
+     * Current tick of the wheel
+     */
+    public long now() {
+        return now;
+    }
+    
+    /**
+     * Number of scheduled entries, including ones their owner has since cancelled
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Schedule a payload; due ticks at or before now fire on the next advance
+     */
+    public void schedule(long payload, long due) {
+        if (due <= now) {
+            due = now + 1;
+        }
+        place(payload, due);
+        size++;
+    }
+    
+    private void place(long payload, long due) {
+        long delta = Math.min(due - now, HORIZON - 1);
+        long slotTick = now + delta;
+        int level = 0;
+        while (delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) (slotTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+        levels[level][slot].add(payload, due);
+    }
+    
+    /**
+     * Advance the wheel by one tick and fire every entry due on it
+     */
+    public void advance(Expiry expiry) {
+        now++;
+        
+        // Pull entries down from higher levels whose window starts on this tick
+        for (int level = 1; level < LEVELS; level++) {
+            if ((now & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                break;
+            }
+            int slot = (int) (now >>> (SLOT_BITS * level)) & SLOT_MASK;
+            Bucket bucket = detach(level, slot);
+            for (int i = 0; i < bucket.count; i++) {
+                place(bucket.payloads[i], bucket.dues[i]);
+            }
+            bucket.count = 0;
+        }
+        
+        Bucket bucket = detach(0, (int) now & SLOT_MASK);
+        for (int i = 0; i < bucket.count; i++) {
+            long due = bucket.dues[i];
+            if (due > now) {
+                // Parked beyond the horizon, not due yet
+                place(bucket.payloads[i], due);
+                continue;
+            }
+            size--;
+            expiry.expire(bucket.payloads[i], due);
+        }
+        bucket.count = 0;
+    }
+    
+    /**
+     * Swap a slot's bucket with the empty spare so it can be drained while new
+     * entries are placed
+     */
+    private Bucket detach(int level, int slot) {
+        Bucket bucket = levels[level][slot];
+        levels[level][slot] = spare;
+        spare = bucket;
+        return bucket;
+    }
+    
+    /**
+     * Drop every entry without firing it
+     */
+    public void clear() {
+        for (Bucket[] level : levels) {
+            for (Bucket bucket : level) {
+                bucket.count = 0;
+            }
+        }
+        size = 0;
+    }
+    
+    private static final class Bucket {
+        long[] payloads = new long[0];
+        long[] dues = new long[0];
+        int count;
+        
+        void add(long payload, long due) {
+            if (count == payloads.length) {
+                int capacity = Math.max(8, count << 1);
+                payloads = Arrays.copyOf(payloads, capacity);
+                dues = Arrays.copyOf(dues, capacity);
+            }
+            payloads[count] = payload;
+            dues[count] = due;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.actionglass.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Assigns small, stable indices to worlds for use in packed block keys
+ *
+ * Indices are handed out on first use and never reused during a session.
+ * Lookups don't lock; handing out an index does, since on Folia every region
+ * thread shares one index.
+ */
+public final class WorldIndex {
+    
+    private final Map<UUID, Integer> indices = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<UUID> worlds = new AtomicReferenceArray<>(BlockKey.MAX_WORLDS);
+    private int next = 1;
+    
+    /**
+     * Get the index of a world, assigning one if needed
+     * 
+     * @return the index, or -1 if every index is in use
+     */
+    public int indexOf(World world) {
+        UUID uid = world.getUID();
+        Integer index = indices.get(uid);
+        return index != null ? index : assign(uid);
+    }
+    
+    private synchronized int assign(UUID uid) {
+        Integer index = indices.get(uid);
+        if (index != null) {
+            return index;
+        }
+        if (next >= worlds.length()) {
+            return -1;
+        }
+        int assigned = next++;
+        worlds.set(assigned, uid);
+        indices.put(uid, assigned);
+        return assigned;
+    }
+    
+    /**
+     * Get the index of a world without assigning one
+     * 
+     * @return the index, or -1 if the world has never been indexed
+     */
+    public int find(World world) {
+        Integer index = indices.get(world.getUID());
+        return index != null ? index : -1;
+    }
+    
+    /**
+     * Get the unique id of the world behind an index, or null if unassigned
+     */
+    public UUID uid(int index) {
+        return index > 0 && index < worlds.length() ? worlds.get(index) : null;
+    }
+    
+    /**
+     * Resolve an index back to a loaded world
+     * 
+     * @return the world, or null if it is not loaded
+     */
+    public World world(int index) {
+        UUID uid = uid(index);
+        return uid != null ? Bukkit.getWorld(uid) : null;
+    }
+}